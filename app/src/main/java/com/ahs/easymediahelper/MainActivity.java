@@ -11,6 +11,7 @@ import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
@@ -34,11 +35,19 @@ public class MainActivity extends AppCompatActivity {
 
         // Initialize the EasyMediaHelper
         mediaHelper = new EasyMediaHelper(this);
+        // Picks up a capture that was in progress when the process was killed
+        mediaHelper.onRestoreInstanceState(savedInstanceState);
 
         // Set up button click listeners
         setupButtonListeners();
     }
 
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        mediaHelper.onSaveInstanceState(outState);
+    }
+
     /**
      * Sets up click listeners for the camera, video, and browse buttons.
      */
@@ -101,16 +110,25 @@ public class MainActivity extends AppCompatActivity {
      * @param data The Intent containing the captured image data.
      */
     private void handleImageCaptureResult(@Nullable Intent data) {
-        String imagePath = mediaHelper.handleActivityResult(REQUEST_IMAGE_CAPTURE, Activity.RESULT_OK, data);
-        Log.d("MainActivity", "Captured Image Path: " + imagePath);
+        mediaHelper.handleActivityResultAsync(REQUEST_IMAGE_CAPTURE, Activity.RESULT_OK, data, new MediaResultCallback() {
+            @Override
+            public void onSuccess(@Nullable String imagePath) {
+                Log.d("MainActivity", "Captured Image Path: " + imagePath);
+
+                // Load and display the image in the ImageView
+                Bitmap bitmap = imagePath != null ? EasyMediaHelper.getBitmapFromPath(MainActivity.this, imagePath, binding.imageView) : null;
+                if (bitmap != null) {
+                    binding.imageView.setImageBitmap(bitmap);
+                } else {
+                    Log.e("MainActivity", "Failed to load captured image.");
+                }
+            }
 
-        // Load and display the image in the ImageView
-        Bitmap bitmap = mediaHelper.getBitmapFromPath(this, imagePath);
-        if (bitmap != null) {
-            binding.imageView.setImageBitmap(bitmap);
-        } else {
-            Log.e("MainActivity", "Failed to load captured image.");
-        }
+            @Override
+            public void onError(Exception error) {
+                Log.e("MainActivity", "Failed to process captured image.", error);
+            }
+        });
     }
 
     /**
@@ -119,16 +137,25 @@ public class MainActivity extends AppCompatActivity {
      * @param data The Intent containing the captured video data.
      */
     private void handleVideoCaptureResult(@Nullable Intent data) {
-        String videoPath = mediaHelper.handleActivityResult(REQUEST_VIDEO_CAPTURE, Activity.RESULT_OK, data);
-        Log.d("MainActivity", "Captured Video Path: " + videoPath);
+        mediaHelper.handleActivityResultAsync(REQUEST_VIDEO_CAPTURE, Activity.RESULT_OK, data, new MediaResultCallback() {
+            @Override
+            public void onSuccess(@Nullable String videoPath) {
+                Log.d("MainActivity", "Captured Video Path: " + videoPath);
+
+                // Generate and display the video thumbnail
+                Bitmap thumbnail = videoPath != null ? EasyMediaHelper.getVideoThumbnail(MainActivity.this, videoPath) : null;
+                if (thumbnail != null) {
+                    binding.videoThumbnail.setImageBitmap(thumbnail);
+                } else {
+                    Log.e("MainActivity", "Failed to generate video thumbnail.");
+                }
+            }
 
-        // Generate and display the video thumbnail
-        Bitmap thumbnail = mediaHelper.getVideoThumbnail(videoPath);
-        if (thumbnail != null) {
-            binding.videoThumbnail.setImageBitmap(thumbnail);
-        } else {
-            Log.e("MainActivity", "Failed to generate video thumbnail.");
-        }
+            @Override
+            public void onError(Exception error) {
+                Log.e("MainActivity", "Failed to process captured video.", error);
+            }
+        });
     }
 
     /**
@@ -137,14 +164,23 @@ public class MainActivity extends AppCompatActivity {
      * @param data The Intent containing the selected file data.
      */
     private void handleFileBrowseResult(@Nullable Intent data) {
-        String filePath = mediaHelper.handleActivityResult(REQUEST_BROWSE, Activity.RESULT_OK, data);
-        Log.d("MainActivity", "Browsed File Path: " + filePath);
+        mediaHelper.handleActivityResultAsync(REQUEST_BROWSE, Activity.RESULT_OK, data, new MediaResultCallback() {
+            @Override
+            public void onSuccess(@Nullable String filePath) {
+                Log.d("MainActivity", "Browsed File Path: " + filePath);
+
+                // Additional handling for the selected file (if needed)
+                if (filePath != null && !filePath.isEmpty()) {
+                    Log.d("MainActivity", "File successfully selected: " + filePath);
+                } else {
+                    Log.e("MainActivity", "Failed to retrieve file path.");
+                }
+            }
 
-        // Additional handling for the selected file (if needed)
-        if (filePath != null) {
-            Log.d("MainActivity", "File successfully selected: " + filePath);
-        } else {
-            Log.e("MainActivity", "Failed to retrieve file path.");
-        }
+            @Override
+            public void onError(Exception error) {
+                Log.e("MainActivity", "Failed to import selected file.", error);
+            }
+        });
     }
 }
@@ -0,0 +1,42 @@
+// JVM benchmarks for the pure-Java parts of the media pipeline (copy engine, file naming).
+// Run with: ./gradlew :benchmark:jmh
+plugins {
+    id("java-library")
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Compile the library's Android-free classes directly so they can run on a plain JVM
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../easymediahelper/src/main/java"))
+            include(
+                "com/ahs/easymediahelper/MediaCopier.java",
+                "com/ahs/easymediahelper/MediaFileNames.java",
+                "com/ahs/easymediahelper/PartialFile.java",
+                "com/ahs/easymediahelper/ChunkWriter.java",
+                "com/ahs/easymediahelper/ChunkListener.java",
+                "com/ahs/easymediahelper/UploadChunk.java",
+                "com/ahs/easymediahelper/UploadManifest.java",
+                "com/ahs/easymediahelper/ImportProgressListener.java",
+                "com/ahs/easymediahelper/FileTooLargeException.java"
+            )
+        }
+    }
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmhCore.get())
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Throughput plus sampled latency (p50/p90/p99), and allocation rate per operation
+    benchmarkMode.set(listOf("thrpt", "sample"))
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,115 @@
+package com.ahs.easymediahelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the copy strategies behind saveMedia and saveFileFromUri across file sizes:
+ * the seekable transferTo path, the pooled-buffer path used for pipes, and the two copy
+ * loops they replaced.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MediaCopierBenchmark {
+
+    @Param({"1048576", "16777216", "134217728"})
+    public int fileSize;
+
+    private File source;
+    private File target;
+
+    @Setup(Level.Trial)
+    public void createSource() throws IOException {
+        source = File.createTempFile("copier-source", ".bin");
+        target = File.createTempFile("copier-target", ".bin");
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(42).nextBytes(chunk);
+        try (RandomAccessFile file = new RandomAccessFile(source, "rw")) {
+            for (int written = 0; written < fileSize; written += chunk.length) {
+                file.write(chunk, 0, Math.min(chunk.length, fileSize - written));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        source.delete();
+        target.delete();
+    }
+
+    /**
+     * Seekable source, as when a provider hands out a ParcelFileDescriptor for a regular file.
+     */
+    @Benchmark
+    public long transferTo() throws IOException {
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(target)) {
+            return MediaCopier.copy(in, out.getChannel());
+        }
+    }
+
+    /**
+     * Non-seekable source, as when a provider only supports openInputStream.
+     */
+    @Benchmark
+    public long pooledBuffer() throws IOException {
+        try (FileInputStream file = new FileInputStream(source);
+             InputStream in = Channels.newInputStream(file.getChannel());
+             FileOutputStream out = new FileOutputStream(target)) {
+            return MediaCopier.copy(in, out.getChannel());
+        }
+    }
+
+    /**
+     * The 1KB byte[] loop saveMedia used before the shared copy engine.
+     */
+    @Benchmark
+    public long legacyKilobyteLoop() throws IOException {
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[1024];
+            long copied = 0;
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+                copied += length;
+            }
+            return copied;
+        }
+    }
+
+    /**
+     * The whole-file byte[] saveFileFromUri allocated before the shared copy engine.
+     */
+    @Benchmark
+    public long legacyWholeFileBuffer() throws IOException {
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[fileSize];
+            long copied = 0;
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+                copied += length;
+            }
+            return copied;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.ahs.easymediahelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the file name helpers that run once per capture and import.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MediaFileNamesBenchmark {
+
+    public String displayName = "Holiday photo (1) - copy.final.jpeg";
+
+    @Benchmark
+    public String generateFileName() {
+        return MediaFileNames.generateFileName("IMG_", ".jpg");
+    }
+
+    @Benchmark
+    public String sanitizeFileName() {
+        return MediaFileNames.sanitizeFileName(displayName);
+    }
+
+    @Benchmark
+    public boolean hasExtension() {
+        return MediaFileNames.hasExtension(displayName);
+    }
+}
@@ -0,0 +1,74 @@
+package com.ahs.easymediahelper;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MediaJobQueue.Environment} backed by the system clock, the battery and power
+ * services and a daemon timer thread. Charging means plugged into any power source; idle means
+ * the screen is off or the device is dozing, the same signals JobScheduler uses.
+ */
+final class AndroidJobEnvironment implements MediaJobQueue.Environment {
+
+    private final Context context;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EasyMediaHelper-jobs");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> scheduled;
+
+    AndroidJobEnvironment(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public boolean isCharging() {
+        // Sticky broadcast, registering a null receiver just returns the last battery state
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    @Override
+    public boolean isIdle() {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null && (!powerManager.isInteractive() || powerManager.isDeviceIdleMode());
+    }
+
+    @Override
+    public synchronized void schedule(Runnable pump, long delayMillis) {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        scheduled = timer.schedule(pump, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void watchConstraints(Runnable pump) {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_POWER_CONNECTED);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED);
+        // Only lives as long as the process, jobs left waiting are re-checked when the queue is recreated
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                timer.execute(pump);
+            }
+        }, filter);
+    }
+}
@@ -0,0 +1,25 @@
+package com.ahs.easymediahelper;
+
+/**
+ * Receives the results of a multi-select import. All methods are invoked on the main thread.
+ */
+public interface BatchImportCallback {
+
+    /**
+     * Called each time one item of the batch has finished, successfully or not.
+     *
+     * @param completed The number of items finished so far.
+     * @param total     The number of items in the batch.
+     */
+    void onItemImported(ImportResult result, int completed, int total);
+
+    /**
+     * Called once all items have finished.
+     */
+    void onComplete(BatchImportResult result);
+
+    /**
+     * Called if the batch could not be started or was interrupted.
+     */
+    void onError(Exception error);
+}
@@ -0,0 +1,56 @@
+package com.ahs.easymediahelper;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a multi-select import: one {@link ImportResult} per picked item, in pick order,
+ * plus aggregate statistics.
+ */
+public class BatchImportResult {
+
+    private final List<ImportResult> results;
+    private final long elapsedMs;
+
+    BatchImportResult(List<ImportResult> results, long elapsedMs) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedMs = elapsedMs;
+    }
+
+    public List<ImportResult> getResults() {
+        return results;
+    }
+
+    public int getSuccessCount() {
+        int count = 0;
+        for (ImportResult result : results) {
+            if (result.isSuccessful()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return The total number of bytes written by all successful imports.
+     */
+    public long getTotalBytes() {
+        long total = 0;
+        for (ImportResult result : results) {
+            total += result.getBytes();
+        }
+        return total;
+    }
+
+    /**
+     * @return The wall-clock time of the whole batch.
+     */
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    /**
+     * @return The aggregate throughput of the batch in bytes per second.
+     */
+    public double getThroughputBytesPerSecond() {
+        return elapsedMs > 0 ? getTotalBytes() * 1000.0 / elapsedMs : 0;
+    }
+}
@@ -0,0 +1,116 @@
+package com.ahs.easymediahelper;
+
+import android.net.Uri;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports a list of Uris in parallel. Copies are I/O-bound and run on up to
+ * {@code workerCount} threads; CPU-bound work such as image compression is additionally
+ * limited to one task per core through {@link #runCpuBound}.
+ */
+final class BatchImporter {
+
+    interface ItemImporter {
+        /**
+         * Imports a single item.
+         *
+         * @return The path of the imported file, or null/empty if it was rejected.
+         */
+        String importItem(BatchImporter importer, Uri uri, int index) throws Exception;
+    }
+
+    interface ItemListener {
+        void onItemImported(ImportResult result, int completed, int total);
+    }
+
+    interface CpuTask<T> {
+        T run() throws Exception;
+    }
+
+    private final int workerCount;
+    private final String batchId = MediaFileNames.newBatchId();
+    private final Semaphore cpuPermits = new Semaphore(Runtime.getRuntime().availableProcessors());
+
+    BatchImporter(int workerCount) {
+        this.workerCount = Math.max(1, workerCount);
+    }
+
+    /**
+     * @return A prefix for the output name of item {@code index} that no other item of this or
+     * any other batch uses, so items with the same display name do not overwrite each other.
+     */
+    String itemPrefix(int index) {
+        return batchId + "_" + index + "_";
+    }
+
+    /**
+     * Runs {@code task} once a CPU permit is available, so that no more compressions than
+     * cores run at the same time regardless of the number of I/O workers.
+     */
+    <T> T runCpuBound(CpuTask<T> task) throws Exception {
+        cpuPermits.acquire();
+        try {
+            return task.run();
+        } finally {
+            cpuPermits.release();
+        }
+    }
+
+    /**
+     * Imports all {@code uris} and blocks until every item has finished.
+     * Interrupting the calling thread cancels the items that are still running.
+     */
+    BatchImportResult importAll(List<Uri> uris, ItemImporter importer, ItemListener listener)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        int total = uris.size();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(workerCount, Math.max(1, total)));
+        AtomicInteger completed = new AtomicInteger();
+        List<Future<ImportResult>> futures = new ArrayList<>(total);
+        try {
+            for (int i = 0; i < total; i++) {
+                final Uri uri = uris.get(i);
+                final int index = i;
+                futures.add(workers.submit(() -> {
+                    long itemStart = System.nanoTime();
+                    String path = null;
+                    Exception error = null;
+                    try {
+                        path = importer.importItem(this, uri, index);
+                    } catch (Exception e) {
+                        error = e;
+                    }
+                    long bytes = path != null && !path.isEmpty() ? new File(path).length() : 0;
+                    ImportResult result = new ImportResult(uri, path, bytes, (System.nanoTime() - itemStart) / 1_000_000, error);
+                    if (listener != null) {
+                        listener.onItemImported(result, completed.incrementAndGet(), total);
+                    }
+                    return result;
+                }));
+            }
+
+            List<ImportResult> results = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    results.add(new ImportResult(uris.get(i), null, 0, 0, cause));
+                }
+            }
+            return new BatchImportResult(results, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            // Interrupts items still copying if the batch itself was cancelled
+            workers.shutdownNow();
+        }
+    }
+}
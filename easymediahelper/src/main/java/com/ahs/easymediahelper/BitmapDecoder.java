@@ -0,0 +1,235 @@
+package com.ahs.easymediahelper;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes images in two passes: first only the bounds, then the pixels with a
+ * power-of-two {@code inSampleSize}, so that peak memory depends on the requested
+ * size rather than the size of the source image. Pixels are decoded into a bitmap taken from
+ * the {@link BitmapPool} whenever one of a suitable size is available.
+ */
+final class BitmapDecoder {
+
+    private interface Source {
+        Bitmap decode(BitmapFactory.Options options) throws IOException;
+    }
+
+    private BitmapDecoder() {
+    }
+
+    /**
+     * Calculates the largest power-of-two sample size that keeps both decoded
+     * dimensions at or above the requested ones.
+     *
+     * @return The sample size to use for {@link BitmapFactory.Options#inSampleSize}, at least 1.
+     */
+    static int calculateInSampleSize(int srcWidth, int srcHeight, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) return inSampleSize;
+
+        if (srcHeight > reqHeight || srcWidth > reqWidth) {
+            final int halfHeight = srcHeight / 2;
+            final int halfWidth = srcWidth / 2;
+            while ((halfHeight / inSampleSize) >= reqHeight && (halfWidth / inSampleSize) >= reqWidth) {
+                inSampleSize *= 2;
+            }
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Returns the size in bytes of the bitmap BitmapFactory allocates for a source of the
+     * given dimensions decoded with {@code inSampleSize}.
+     */
+    static long estimateDecodedBytes(int srcWidth, int srcHeight, int inSampleSize, int bytesPerPixel) {
+        long width = (srcWidth + inSampleSize - 1) / inSampleSize;
+        long height = (srcHeight + inSampleSize - 1) / inSampleSize;
+        return width * height * bytesPerPixel;
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        return 4;
+    }
+
+    /**
+     * Reads only the image header.
+     *
+     * @return Options with {@code outWidth}/{@code outHeight}/{@code outMimeType} set,
+     * or null if the stream could not be opened or is not an image.
+     */
+    @Nullable
+    static BitmapFactory.Options decodeBounds(ContentResolver resolver, Uri uri) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            if (inputStream == null) return null;
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        return options.outWidth > 0 && options.outHeight > 0 ? options : null;
+    }
+
+    /**
+     * Decodes the image at {@code uri} subsampled so that it is no smaller than, and at most
+     * twice as large as, {@code reqWidth} x {@code reqHeight}.
+     *
+     * @param config The preferred pixel format, e.g. {@link Bitmap.Config#RGB_565} to halve memory.
+     * @return The decoded bitmap, or null if the source could not be decoded.
+     */
+    @Nullable
+    static Bitmap decodeSampled(ContentResolver resolver, Uri uri, int reqWidth, int reqHeight,
+                                Bitmap.Config config) throws IOException {
+        BitmapFactory.Options options = decodeBounds(resolver, uri);
+        if (options == null) return null;
+        return decodeSampled(resolver, uri, options, reqWidth, reqHeight, config);
+    }
+
+    /**
+     * Variant of {@link #decodeSampled(ContentResolver, Uri, int, int, Bitmap.Config)} for
+     * callers that already read the header.
+     *
+     * @param options The result of {@link #decodeBounds}; it is reused for the decode.
+     */
+    @Nullable
+    static Bitmap decodeSampled(ContentResolver resolver, Uri uri, BitmapFactory.Options options,
+                                int reqWidth, int reqHeight, Bitmap.Config config) throws IOException {
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inPreferredConfig = config;
+        options.inJustDecodeBounds = false;
+        return decodePooled(options, decodeOptions -> {
+            try (InputStream inputStream = resolver.openInputStream(uri)) {
+                if (inputStream == null) return null;
+                return BitmapFactory.decodeStream(inputStream, null, decodeOptions);
+            }
+        });
+    }
+
+    /**
+     * File variant of {@link #decodeSampled(ContentResolver, Uri, int, int, Bitmap.Config)}.
+     */
+    @Nullable
+    static Bitmap decodeSampledFile(String filePath, int reqWidth, int reqHeight, Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(filePath, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inPreferredConfig = config;
+        options.inJustDecodeBounds = false;
+        try {
+            return decodePooled(options, decodeOptions -> BitmapFactory.decodeFile(filePath, decodeOptions));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes into a pooled bitmap when one large enough is available. BitmapFactory rejects
+     * {@code inBitmap} candidates it cannot reuse (e.g. some formats or configs), by returning
+     * null or, on some versions, throwing; the candidate then goes back to the pool and the
+     * image is decoded once more into a new allocation.
+     * {@code options} must already carry the final sample size and config.
+     */
+    private static Bitmap decodePooled(BitmapFactory.Options options, Source source) throws IOException {
+        BitmapPool pool = BitmapPool.getInstance();
+        long requiredBytes = estimateDecodedBytes(options.outWidth, options.outHeight, options.inSampleSize,
+                bytesPerPixel(options.inPreferredConfig));
+        options.inMutable = true;
+        options.inBitmap = pool.getForDecode(requiredBytes);
+        if (options.inBitmap == null) {
+            return source.decode(options);
+        }
+        Bitmap candidate = options.inBitmap;
+        Bitmap bitmap;
+        try {
+            bitmap = source.decode(options);
+        } catch (IllegalArgumentException e) {
+            bitmap = null;
+        }
+        if (bitmap != null) {
+            return bitmap;
+        }
+        // decodeStream and decodeFile report a rejected inBitmap as a failed decode
+        pool.release(candidate);
+        options.inBitmap = null;
+        return source.decode(options);
+    }
+
+    /**
+     * Decodes only {@code region} of the image file, subsampled to about
+     * {@code reqWidth} x {@code reqHeight}. Used for zoom and crop views where decoding the
+     * whole image would waste memory on pixels that are never shown.
+     *
+     * @param region The region in source pixel coordinates; it is clipped to the image bounds.
+     * @return The decoded region, or null if it is empty or the file cannot be decoded.
+     */
+    @Nullable
+    static Bitmap decodeRegion(String filePath, Rect region, int reqWidth, int reqHeight,
+                               Bitmap.Config config) throws IOException {
+        return decodeRegion(newRegionDecoder(filePath), region, reqWidth, reqHeight, config);
+    }
+
+    /**
+     * Stream variant of {@link #decodeRegion(String, Rect, int, int, Bitmap.Config)}.
+     *
+     * @throws IOException If the image cannot be read, or its format has no region decoder
+     *                     (e.g. GIF, or HEIF before Android 9).
+     */
+    @Nullable
+    static Bitmap decodeRegion(ContentResolver resolver, Uri uri, Rect region, int reqWidth, int reqHeight,
+                               Bitmap.Config config) throws IOException {
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            if (inputStream == null) return null;
+            return decodeRegion(newRegionDecoder(inputStream), region, reqWidth, reqHeight, config);
+        }
+    }
+
+    // The isShareable flag was ignored since API 21 and the overloads taking it are deprecated in API 31
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder newRegionDecoder(String filePath) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(filePath);
+        }
+        return BitmapRegionDecoder.newInstance(filePath, false);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder newRegionDecoder(InputStream inputStream) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(inputStream);
+        }
+        return BitmapRegionDecoder.newInstance(inputStream, false);
+    }
+
+    private static Bitmap decodeRegion(BitmapRegionDecoder decoder, Rect region, int reqWidth, int reqHeight,
+                                       Bitmap.Config config) throws IOException {
+        try {
+            Rect clipped = new Rect(region);
+            if (!clipped.intersect(0, 0, decoder.getWidth(), decoder.getHeight())) return null;
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.outWidth = clipped.width();
+            options.outHeight = clipped.height();
+            options.inSampleSize = calculateInSampleSize(clipped.width(), clipped.height(), reqWidth, reqHeight);
+            options.inPreferredConfig = config;
+            // No pooled inBitmap: the region decoder never resizes it, so a pooled bitmap of another
+            // size would keep that size and show an earlier image around the region
+            return decoder.decodeRegion(clipped, options);
+        } finally {
+            decoder.recycle();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import androidx.annotation.Nullable;
+import androidx.exifinterface.media.ExifInterface;
+
+import java.util.List;
+
+/**
+ * A capacity-bounded pool of mutable bitmaps, bucketed by allocation size, that the library
+ * decodes into through {@link android.graphics.BitmapFactory.Options#inBitmap} and scales into
+ * instead of allocating a new Bitmap for every capture.
+ * <p>
+ * Only intermediate bitmaps owned by the library are released into the pool; bitmaps returned
+ * to callers are never reused behind their back.
+ */
+public final class BitmapPool {
+
+    private static BitmapPool instance;
+
+    private final BitmapPoolBuckets<Bitmap> buckets;
+
+    BitmapPool(long maxBytes) {
+        buckets = new BitmapPoolBuckets<>(maxBytes);
+    }
+
+    /**
+     * Returns the process-wide pool, bounded to 1/16 of the heap by default.
+     */
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 16);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a pooled bitmap whose allocation can hold at least {@code requiredBytes},
+     * without reconfiguring it, or null if none is available. Suitable for {@code inBitmap}.
+     */
+    @Nullable
+    synchronized Bitmap getForDecode(long requiredBytes) {
+        return buckets.get(requiredBytes);
+    }
+
+    /**
+     * Returns a mutable bitmap of exactly the given size and config, reusing a pooled allocation
+     * when possible. Its pixels are undefined.
+     */
+    Bitmap getDirty(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = getForDecode((long) width * height * BitmapDecoder.bytesPerPixel(config));
+        if (bitmap != null) {
+            try {
+                bitmap.reconfigure(width, height, config);
+                return bitmap;
+            } catch (IllegalArgumentException e) {
+                release(bitmap);
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Scales {@code source} into a (possibly pooled) bitmap of the given size.
+     * Replaces {@link Bitmap#createScaledBitmap} on the library's internal paths.
+     */
+    Bitmap createScaledBitmap(Bitmap source, int width, int height) {
+        return createTransformedBitmap(source, null, width, height, ExifInterface.ORIENTATION_NORMAL);
+    }
+
+    /**
+     * @see #createTransformedBitmap(Bitmap, Rect, int, int, int)
+     */
+    Bitmap createTransformedBitmap(Bitmap source, int width, int height, int orientation) {
+        return createTransformedBitmap(source, null, width, height, orientation);
+    }
+
+    /**
+     * Rotates and mirrors {@code source} upright according to the EXIF {@code orientation} and
+     * scales it to {@code width} x {@code height}, the size of the upright result, in a single
+     * drawing pass into a (possibly pooled) bitmap.
+     *
+     * @param region The part of {@code source} to keep, in its own coordinates, or null for all of it.
+     */
+    Bitmap createTransformedBitmap(Bitmap source, @Nullable Rect region, int width, int height, int orientation) {
+        boolean oriented = ImageOrientation.isTransformed(orientation);
+        boolean cropped = region != null && (region.left > 0 || region.top > 0
+                || region.right < source.getWidth() || region.bottom < source.getHeight());
+        if (!oriented && !cropped && source.getWidth() == width && source.getHeight() == height) return source;
+
+        Bitmap.Config config = source.getConfig() != null ? source.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap target = getDirty(width, height, config);
+        target.eraseColor(0);
+        Canvas canvas = new Canvas(target);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        if (!oriented) {
+            canvas.drawBitmap(source, cropped ? region : null, new Rect(0, 0, width, height), paint);
+            return target;
+        }
+
+        // Orient around the origin, move the kept part back into view, then scale it to the target
+        Matrix matrix = new Matrix();
+        ImageOrientation.setOrientation(matrix, orientation);
+        RectF bounds = cropped ? new RectF(region) : new RectF(0, 0, source.getWidth(), source.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        matrix.postScale(width / bounds.width(), height / bounds.height());
+        canvas.drawBitmap(source, matrix, paint);
+        return target;
+    }
+
+    /**
+     * Gives a bitmap back to the pool. Immutable or recycled bitmaps, and bitmaps larger than the
+     * pool itself, are recycled instead. The caller must not use the bitmap afterwards.
+     */
+    public synchronized void release(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (buckets.contains(bitmap)) return;
+        if (!bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+        recycleAll(buckets.put(bitmap, bitmap.getAllocationByteCount()));
+    }
+
+    private static void recycleAll(List<Bitmap> bitmaps) {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Sets the maximum number of bytes kept in the pool, evicting the oldest bitmaps if needed.
+     * A size of 0 disables pooling.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        recycleAll(buckets.setMaxBytes(maxBytes));
+    }
+
+    /**
+     * Recycles every pooled bitmap, e.g. from {@code onTrimMemory}.
+     */
+    public synchronized void clear() {
+        recycleAll(buckets.trimToSize(0));
+    }
+
+    public synchronized long getMaxBytes() {
+        return buckets.getMaxBytes();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return buckets.getCurrentBytes();
+    }
+
+    public synchronized long getHitCount() {
+        return buckets.getHitCount();
+    }
+
+    public synchronized long getMissCount() {
+        return buckets.getMissCount();
+    }
+
+    public synchronized long getPutCount() {
+        return buckets.getPutCount();
+    }
+
+    public synchronized long getEvictionCount() {
+        return buckets.getEvictionCount();
+    }
+}
@@ -0,0 +1,145 @@
+package com.ahs.easymediahelper;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The bookkeeping of {@link BitmapPool}: pooled items bucketed by allocation size, the order
+ * they were released in for eviction, and the pool statistics. Items are told apart with
+ * {@code equals}, which {@link android.graphics.Bitmap} leaves at identity.
+ * <p>
+ * Not thread-safe, the pool synchronizes access. This class does not touch the items, so it can
+ * be exercised on the JVM.
+ */
+final class BitmapPoolBuckets<T> {
+
+    // A pooled item is only handed out if it wastes at most this factor of memory
+    static final int MAX_SIZE_MULTIPLE = 2;
+
+    private final TreeMap<Integer, ArrayDeque<T>> buckets = new TreeMap<>();
+    // Insertion order doubles as least-recently-released order for eviction
+    private final LinkedHashMap<T, Integer> releaseOrder = new LinkedHashMap<>();
+    private long maxBytes;
+    private long currentBytes;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long evictionCount;
+
+    BitmapPoolBuckets(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Takes the smallest pooled item whose allocation holds at least {@code requiredBytes} and
+     * at most {@link #MAX_SIZE_MULTIPLE} times that, or returns null if there is none.
+     */
+    @Nullable
+    T get(long requiredBytes) {
+        if (requiredBytes <= 0 || requiredBytes > Integer.MAX_VALUE) {
+            missCount++;
+            return null;
+        }
+        Map.Entry<Integer, ArrayDeque<T>> entry = buckets.ceilingEntry((int) requiredBytes);
+        if (entry == null || entry.getKey() > requiredBytes * MAX_SIZE_MULTIPLE) {
+            missCount++;
+            return null;
+        }
+        T item = entry.getValue().poll();
+        if (entry.getValue().isEmpty()) {
+            buckets.remove(entry.getKey());
+        }
+        releaseOrder.remove(item);
+        currentBytes -= entry.getKey();
+        hitCount++;
+        return item;
+    }
+
+    boolean contains(T item) {
+        return releaseOrder.containsKey(item);
+    }
+
+    /**
+     * Adds an item with an allocation of {@code size} bytes, evicting the oldest items if the
+     * pool grows past its maximum size. An item larger than the whole pool is not added.
+     *
+     * @return The items that left the pool, possibly {@code item} itself, for the caller to free.
+     */
+    List<T> put(T item, int size) {
+        if (size > maxBytes) return Collections.singletonList(item);
+        ArrayDeque<T> bucket = buckets.get(size);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(size, bucket);
+        }
+        bucket.push(item);
+        releaseOrder.put(item, size);
+        currentBytes += size;
+        putCount++;
+        return trimToSize(maxBytes);
+    }
+
+    /**
+     * Evicts the oldest items until the pool holds at most {@code size} bytes.
+     *
+     * @return The evicted items, for the caller to free.
+     */
+    List<T> trimToSize(long size) {
+        List<T> evicted = new ArrayList<>();
+        Iterator<Map.Entry<T, Integer>> iterator = releaseOrder.entrySet().iterator();
+        while (currentBytes > size && iterator.hasNext()) {
+            Map.Entry<T, Integer> oldest = iterator.next();
+            iterator.remove();
+            int bytes = oldest.getValue();
+            ArrayDeque<T> bucket = buckets.get(bytes);
+            if (bucket != null) {
+                bucket.remove(oldest.getKey());
+                if (bucket.isEmpty()) buckets.remove(bytes);
+            }
+            currentBytes -= bytes;
+            evictionCount++;
+            evicted.add(oldest.getKey());
+        }
+        return evicted;
+    }
+
+    /**
+     * @return The items evicted to fit the new maximum, for the caller to free.
+     */
+    List<T> setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return trimToSize(maxBytes);
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    long getHitCount() {
+        return hitCount;
+    }
+
+    long getMissCount() {
+        return missCount;
+    }
+
+    long getPutCount() {
+        return putCount;
+    }
+
+    long getEvictionCount() {
+        return evictionCount;
+    }
+}
@@ -0,0 +1,28 @@
+package com.ahs.easymediahelper;
+
+/**
+ * Receives a file in fixed-size chunks while the library is still writing it, e.g. to start a
+ * resumable upload before an import has finished. {@link ResumableUpload} is the ready-made
+ * implementation. All methods are invoked on the writing thread; blocking in them slows the
+ * write down.
+ */
+public interface ChunkListener {
+
+    /**
+     * Called for each chunk, in order, as soon as it has been written.
+     */
+    void onChunk(UploadChunk chunk);
+
+    /**
+     * Called once the file is complete and saved under its final name.
+     *
+     * @param manifest Describes every chunk; it is also saved next to the file, see {@link UploadManifest#read}.
+     */
+    void onComplete(UploadManifest manifest);
+
+    /**
+     * Called if writing the file failed or was cancelled; the chunks received so far belong to
+     * a file that does not exist.
+     */
+    void onFailure(Exception error);
+}
@@ -0,0 +1,20 @@
+package com.ahs.easymediahelper;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+
+/**
+ * Creates the {@link ChunkListener} of each file written with
+ * {@link EasyMediaHelper#setChunkedOutput chunked output}, e.g. a new {@link ResumableUpload}.
+ */
+public interface ChunkListenerFactory {
+
+    /**
+     * Called on the writing thread before the first byte of {@code file} is written.
+     *
+     * @return The listener of this file, or null to only write its manifest.
+     */
+    @Nullable
+    ChunkListener create(File file);
+}
@@ -0,0 +1,35 @@
+package com.ahs.easymediahelper;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * The transport of a {@link ResumableUpload}, e.g. a resumable multipart upload API. Calls are
+ * made from the upload's background thread; an {@link IOException} is treated as transient
+ * and the call is retried with backoff.
+ */
+public interface ChunkUploader {
+
+    /**
+     * Starts a new upload on the server.
+     *
+     * @return An id identifying the upload in the other calls, and across process restarts.
+     */
+    String createUpload() throws IOException;
+
+    /**
+     * @return The indices of the chunks the server already has, so a resumed upload skips them.
+     */
+    Set<Integer> getUploadedChunks(String uploadId) throws IOException;
+
+    /**
+     * Uploads one chunk. The server should verify {@link UploadChunk#getChecksum()}. Uploading
+     * a chunk the server already has must be harmless.
+     */
+    void uploadChunk(String uploadId, UploadChunk chunk) throws IOException;
+
+    /**
+     * Finishes the upload once every chunk has been uploaded.
+     */
+    void completeUpload(String uploadId, UploadManifest manifest) throws IOException;
+}
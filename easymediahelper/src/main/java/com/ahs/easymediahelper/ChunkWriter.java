@@ -0,0 +1,150 @@
+package com.ahs.easymediahelper;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits the bytes of a file into fixed-size chunks while the file is written, hashing each
+ * chunk and the whole file and handing complete chunks to a {@link ChunkListener}, so an
+ * upload never has to read the file back. Without a listener only the hashes are kept and
+ * the {@link UploadManifest} is written.
+ * <p>
+ * This class only depends on {@code java.io} and {@code java.nio} so it can be exercised on
+ * the JVM.
+ */
+final class ChunkWriter {
+
+    private final File file;
+    private final int chunkSize;
+    private final ChunkListener listener;
+    private final MessageDigest fileDigest = newDigest();
+    private final MessageDigest chunkDigest = newDigest();
+    private final List<String> chunkChecksums = new ArrayList<>();
+    private byte[] buffer;
+    private int buffered;
+    private long written;
+
+    /**
+     * @param file     The file being written, under its final name.
+     * @param listener Receives the chunks, may be null.
+     */
+    ChunkWriter(File file, int chunkSize, ChunkListener listener) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Consumes the remaining bytes of {@code data}.
+     */
+    void write(ByteBuffer data) {
+        while (data.hasRemaining()) {
+            int count = Math.min(data.remaining(), chunkSize - buffered);
+            ByteBuffer part = data.duplicate();
+            part.limit(part.position() + count);
+            fileDigest.update(part.duplicate());
+            chunkDigest.update(part.duplicate());
+            if (listener != null) {
+                if (buffer == null) buffer = new byte[chunkSize];
+                part.get(buffer, buffered, count);
+            }
+            data.position(data.position() + count);
+            buffered += count;
+            written += count;
+            if (buffered == chunkSize) {
+                emitChunk();
+            }
+        }
+    }
+
+    /**
+     * Wraps {@code out} so that everything written to it also goes through this writer.
+     */
+    OutputStream tee(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                ChunkWriter.this.write(ByteBuffer.wrap(new byte[]{(byte) b}));
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                ChunkWriter.this.write(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * Emits the last, possibly shorter chunk and saves the manifest. Called once everything
+     * has been written, before the file is moved to its final name.
+     */
+    UploadManifest finish() throws IOException {
+        if (buffered > 0) {
+            emitChunk();
+        }
+        UploadManifest manifest = new UploadManifest(file.getName(), written, chunkSize,
+                toHex(fileDigest.digest()), chunkChecksums);
+        manifest.writeFor(file);
+        return manifest;
+    }
+
+    /**
+     * Reports the finished file, after it has been moved to its final name.
+     */
+    void complete(UploadManifest manifest) {
+        if (listener != null) {
+            listener.onComplete(manifest);
+        }
+    }
+
+    /**
+     * Reports that the file will not be saved, and drops its manifest if one was written.
+     */
+    void abort(Exception cause) {
+        UploadManifest.fileFor(file).delete();
+        if (listener != null) {
+            listener.onFailure(cause);
+        }
+    }
+
+    private void emitChunk() {
+        String checksum = toHex(chunkDigest.digest());
+        int index = chunkChecksums.size();
+        chunkChecksums.add(checksum);
+        if (listener != null) {
+            // The chunk owns the buffer from now on, the next one gets a fresh one
+            listener.onChunk(new UploadChunk(index, (long) index * chunkSize, buffer, buffered, checksum));
+            buffer = null;
+        }
+        buffered = 0;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(String.format(Locale.US, "%02x", b));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package com.ahs.easymediahelper;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.view.Surface;
+
+/**
+ * Wraps an encoder's input {@link Surface} in an EGL window surface, so decoded frames can be
+ * drawn into the encoder with OpenGL ES and never leave graphics memory.
+ */
+final class CodecInputSurface {
+
+    // EGL_RECORDABLE_ANDROID, not exposed by EGL14
+    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
+
+    private final Surface surface;
+    private EGLDisplay display = EGL14.EGL_NO_DISPLAY;
+    private EGLContext context = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface eglSurface = EGL14.EGL_NO_SURFACE;
+
+    CodecInputSurface(Surface surface) {
+        this.surface = surface;
+        display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        if (display == EGL14.EGL_NO_DISPLAY) {
+            throw new IllegalStateException("Unable to get EGL display");
+        }
+        int[] version = new int[2];
+        if (!EGL14.eglInitialize(display, version, 0, version, 1)) {
+            throw new IllegalStateException("Unable to initialize EGL");
+        }
+
+        int[] configAttributes = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL_RECORDABLE_ANDROID, 1,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] count = new int[1];
+        if (!EGL14.eglChooseConfig(display, configAttributes, 0, configs, 0, 1, count, 0) || count[0] == 0) {
+            throw new IllegalStateException("No recordable EGL config");
+        }
+
+        int[] contextAttributes = {EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE};
+        context = EGL14.eglCreateContext(display, configs[0], EGL14.EGL_NO_CONTEXT, contextAttributes, 0);
+        checkEglError("eglCreateContext");
+        eglSurface = EGL14.eglCreateWindowSurface(display, configs[0], surface, new int[]{EGL14.EGL_NONE}, 0);
+        checkEglError("eglCreateWindowSurface");
+    }
+
+    void makeCurrent() {
+        if (!EGL14.eglMakeCurrent(display, eglSurface, eglSurface, context)) {
+            throw new IllegalStateException("eglMakeCurrent failed");
+        }
+    }
+
+    /**
+     * Sets the timestamp of the frame drawn next, which becomes its presentation time in the
+     * encoded stream.
+     */
+    void setPresentationTime(long timeNanos) {
+        EGLExt.eglPresentationTimeANDROID(display, eglSurface, timeNanos);
+    }
+
+    /**
+     * Submits the drawn frame to the encoder.
+     */
+    boolean swapBuffers() {
+        return EGL14.eglSwapBuffers(display, eglSurface);
+    }
+
+    void release() {
+        if (display != EGL14.EGL_NO_DISPLAY) {
+            EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+            EGL14.eglDestroySurface(display, eglSurface);
+            EGL14.eglDestroyContext(display, context);
+            EGL14.eglReleaseThread();
+            EGL14.eglTerminate(display);
+        }
+        surface.release();
+        display = EGL14.EGL_NO_DISPLAY;
+        context = EGL14.EGL_NO_CONTEXT;
+        eglSurface = EGL14.EGL_NO_SURFACE;
+    }
+
+    private static void checkEglError(String operation) {
+        int error = EGL14.eglGetError();
+        if (error != EGL14.EGL_SUCCESS) {
+            throw new IllegalStateException(operation + " failed: 0x" + Integer.toHexString(error));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.SurfaceTexture;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Surface;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Receives a decoder's output in an external OES texture and draws it into the current EGL
+ * surface, scaled to the viewport. Must be created and used on the thread that owns the
+ * {@link CodecInputSurface}'s EGL context.
+ */
+final class CodecOutputSurface {
+
+    private static final long FRAME_TIMEOUT_MS = 2500;
+
+    private static final String VERTEX_SHADER =
+            "uniform mat4 uTexMatrix;\n"
+                    + "attribute vec4 aPosition;\n"
+                    + "attribute vec4 aTextureCoord;\n"
+                    + "varying vec2 vTextureCoord;\n"
+                    + "void main() {\n"
+                    + "    gl_Position = aPosition;\n"
+                    + "    vTextureCoord = (uTexMatrix * aTextureCoord).xy;\n"
+                    + "}\n";
+
+    private static final String FRAGMENT_SHADER =
+            "#extension GL_OES_EGL_image_external : require\n"
+                    + "precision mediump float;\n"
+                    + "varying vec2 vTextureCoord;\n"
+                    + "uniform samplerExternalOES sTexture;\n"
+                    + "void main() {\n"
+                    + "    gl_FragColor = texture2D(sTexture, vTextureCoord);\n"
+                    + "}\n";
+
+    // Full-screen triangle strip: x, y, u, v
+    private static final float[] QUAD = {
+            -1f, -1f, 0f, 0f,
+            1f, -1f, 1f, 0f,
+            -1f, 1f, 0f, 1f,
+            1f, 1f, 1f, 1f,
+    };
+
+    private final HandlerThread callbackThread = new HandlerThread("EasyMediaHelper-frames");
+    private final Object frameLock = new Object();
+    private final float[] texMatrix = new float[16];
+    private final FloatBuffer quad;
+    private final int program;
+    private final int textureId;
+    private final int positionHandle;
+    private final int textureCoordHandle;
+    private final int texMatrixHandle;
+    private final SurfaceTexture surfaceTexture;
+    private final Surface surface;
+    private boolean frameAvailable;
+
+    CodecOutputSurface() {
+        quad = ByteBuffer.allocateDirect(QUAD.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        quad.put(QUAD).position(0);
+
+        program = createProgram();
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        textureCoordHandle = GLES20.glGetAttribLocation(program, "aTextureCoord");
+        texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
+
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        textureId = textures[0];
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        // Frame callbacks need a looper, the transcoding thread is busy waiting for them
+        callbackThread.start();
+        surfaceTexture = new SurfaceTexture(textureId);
+        surfaceTexture.setOnFrameAvailableListener(texture -> {
+            synchronized (frameLock) {
+                frameAvailable = true;
+                frameLock.notifyAll();
+            }
+        }, new Handler(callbackThread.getLooper()));
+        surface = new Surface(surfaceTexture);
+    }
+
+    /**
+     * @return The surface to configure the decoder with.
+     */
+    Surface getSurface() {
+        return surface;
+    }
+
+    /**
+     * Waits for the frame the decoder just released and latches it into the texture.
+     */
+    void awaitNewImage() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + FRAME_TIMEOUT_MS;
+        synchronized (frameLock) {
+            while (!frameAvailable) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Timed out waiting for a decoded frame");
+                }
+                frameLock.wait(remaining);
+            }
+            frameAvailable = false;
+        }
+        surfaceTexture.updateTexImage();
+    }
+
+    /**
+     * Draws the latest frame into the current EGL surface, filling a {@code width} x
+     * {@code height} viewport.
+     */
+    void drawImage(int width, int height) {
+        surfaceTexture.getTransformMatrix(texMatrix);
+        GLES20.glViewport(0, 0, width, height);
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+
+        quad.position(0);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 16, quad);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        quad.position(2);
+        GLES20.glVertexAttribPointer(textureCoordHandle, 2, GLES20.GL_FLOAT, false, 16, quad);
+        GLES20.glEnableVertexAttribArray(textureCoordHandle);
+        GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, texMatrix, 0);
+
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(textureCoordHandle);
+    }
+
+    void release() {
+        surface.release();
+        surfaceTexture.release();
+        GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
+        GLES20.glDeleteProgram(program);
+        callbackThread.quitSafely();
+    }
+
+    private static int createProgram() {
+        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+        if (status[0] != GLES20.GL_TRUE) {
+            String log = GLES20.glGetProgramInfoLog(program);
+            GLES20.glDeleteProgram(program);
+            throw new IllegalStateException("Unable to link program: " + log);
+        }
+        return program;
+    }
+
+    private static int loadShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            String log = GLES20.glGetShaderInfoLog(shader);
+            GLES20.glDeleteShader(shader);
+            throw new IllegalStateException("Unable to compile shader: " + log);
+        }
+        return shader;
+    }
+}
@@ -0,0 +1,107 @@
+package com.ahs.easymediahelper;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The keys and entries stored by {@link DedupIndex}. An entry holds the path of a written file
+ * with the length and modification time it had when it was recorded, so an entry whose file was
+ * deleted or overwritten since is recognized as stale, and the time it was recorded, so the
+ * index can be capped oldest first.
+ * <p>
+ * This class only depends on {@code java.io} so it can be exercised on the JVM.
+ */
+final class DedupEntries {
+
+    static final String SOURCE_PREFIX = "src:";
+    static final String HASH_PREFIX = "sha:";
+    /** The number of entries kept; each import adds up to two. */
+    static final int MAX_ENTRIES = 1000;
+
+    private DedupEntries() {
+    }
+
+    /**
+     * Returns the source key, or null if the provider reported too little metadata to
+     * safely identify unchanged content without hashing it.
+     */
+    @Nullable
+    static String sourceKey(String uri, long size, long lastModified) {
+        if (size < 0 || lastModified <= 0) return null;
+        return SOURCE_PREFIX + uri + "|" + size + "|" + lastModified;
+    }
+
+    static String hashKey(String hash) {
+        return HASH_PREFIX + hash;
+    }
+
+    /**
+     * @return The entry for {@code file} as it is now, recorded at {@code now}.
+     */
+    static String entryFor(File file, long now) {
+        return file.getPath() + "\n" + file.length() + "\n" + file.lastModified() + "\n" + now;
+    }
+
+    /**
+     * @return The path of the entry, or null if the entry is malformed or its file was deleted or
+     * changed since it was recorded.
+     */
+    @Nullable
+    static String pathOf(@Nullable String entry) {
+        if (entry == null) return null;
+        // Entries written before the recording time was added have three parts
+        String[] parts = entry.split("\n");
+        if (parts.length != 3 && parts.length != 4) return null;
+        File file = new File(parts[0]);
+        if (file.isFile() && String.valueOf(file.length()).equals(parts[1])
+                && String.valueOf(file.lastModified()).equals(parts[2])) {
+            return parts[0];
+        }
+        return null;
+    }
+
+    /**
+     * Picks the entries to remove so the index stops growing: every stale entry, then the
+     * oldest ones until at most {@code maxEntries} are left. Checks the file of every entry.
+     *
+     * @return The keys to remove.
+     */
+    static List<String> prune(Map<String, ?> entries, int maxEntries) {
+        List<String> removed = new ArrayList<>();
+        List<Map.Entry<String, Long>> valid = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            Object value = entry.getValue();
+            String key = entry.getKey();
+            if (!(key.startsWith(SOURCE_PREFIX) || key.startsWith(HASH_PREFIX))) continue;
+            if (!(value instanceof String) || pathOf((String) value) == null) {
+                removed.add(key);
+            } else {
+                valid.add(new AbstractMap.SimpleEntry<>(key, recordedAt((String) value)));
+            }
+        }
+        if (valid.size() > maxEntries) {
+            Collections.sort(valid, (a, b) -> Long.compare(a.getValue(), b.getValue()));
+            for (int i = 0; i < valid.size() - maxEntries; i++) {
+                removed.add(valid.get(i).getKey());
+            }
+        }
+        return removed;
+    }
+
+    // Entries from before the recording time count as the oldest
+    private static long recordedAt(String entry) {
+        String[] parts = entry.split("\n");
+        if (parts.length != 4) return 0;
+        try {
+            return Long.parseLong(parts[3]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.ahs.easymediahelper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Persistent index of files the library has already written, so that importing the same
+ * content again returns the existing copy instead of writing a new one.
+ * <p>
+ * Two lookups are kept: a fast pre-check keyed by source Uri, size and last-modified time,
+ * answered before anything is read, and a content hash (SHA-256) computed while copying.
+ * Each entry also stores the length and modification time of the written file; entries whose
+ * file was deleted or overwritten since are dropped on lookup and whenever a new import is
+ * recorded, and the index is capped at {@link DedupEntries#MAX_ENTRIES} entries.
+ */
+final class DedupIndex {
+
+    private static final String PREFS_NAME = "easymediahelper_dedup";
+
+    private static DedupIndex instance;
+
+    private final SharedPreferences preferences;
+
+    private DedupIndex(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    static synchronized DedupIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new DedupIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(String.format(Locale.US, "%02x", b));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the source key, or null if the provider reported too little metadata to
+     * safely identify unchanged content without hashing it.
+     */
+    @Nullable
+    static String sourceKey(Uri uri, long size, long lastModified) {
+        return DedupEntries.sourceKey(uri.toString(), size, lastModified);
+    }
+
+    /**
+     * @return The path previously imported from this source, or null if unknown or deleted.
+     */
+    @Nullable
+    String findBySource(@Nullable String sourceKey) {
+        return sourceKey != null ? find(sourceKey) : null;
+    }
+
+    /**
+     * @return The path of an existing file with the same content, or null.
+     */
+    @Nullable
+    String findByHash(String hash) {
+        return find(DedupEntries.hashKey(hash));
+    }
+
+    /**
+     * Records a written file under its content hash and, if known, its source key, and prunes
+     * stale entries and the oldest ones beyond the cap.
+     */
+    synchronized void record(@Nullable String sourceKey, String hash, String path) {
+        int added = sourceKey != null ? 2 : 1;
+        SharedPreferences.Editor editor = preferences.edit();
+        for (String key : DedupEntries.prune(preferences.getAll(), DedupEntries.MAX_ENTRIES - added)) {
+            editor.remove(key);
+        }
+        String entry = DedupEntries.entryFor(new File(path), System.currentTimeMillis());
+        editor.putString(DedupEntries.hashKey(hash), entry);
+        if (sourceKey != null) {
+            editor.putString(sourceKey, entry);
+        }
+        editor.apply();
+    }
+
+    @Nullable
+    private String find(String key) {
+        String entry = preferences.getString(key, null);
+        if (entry == null) return null;
+
+        String path = DedupEntries.pathOf(entry);
+        if (path == null) {
+            preferences.edit().remove(key).apply();
+        }
+        return path;
+    }
+}
@@ -1,83 +1,227 @@
 package com.ahs.easymediahelper;
 
 import android.app.Activity;
+import android.content.ClipData;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Matrix;
+import android.graphics.Rect;
 import android.media.ThumbnailUtils;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
 import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
 import android.provider.MediaStore;
 import android.provider.OpenableColumns;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Toast;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 import androidx.core.content.FileProvider;
+import androidx.exifinterface.media.ExifInterface;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class EasyMediaHelper {
 
+    private static final String TAG = "EasyMediaHelper";
+    // Resumable imports keep their synced part here, next to the folder they are copied into
+    private static final String PARTIAL_DIRECTORY = ".partial";
+    private static final long PARTIAL_MAX_AGE_MS = TimeUnit.DAYS.toMillis(7);
+
     // Constants
     public static final int REQUEST_IMAGE_CAPTURE = 1;
     public static final int REQUEST_VIDEO_CAPTURE = 2;
     public static final int REQUEST_BROWSE = 3;
 
+    /** The media folder of a new helper, also used by the static helpers that have no settings. */
+    public static final String DEFAULT_FOLDER_NAME = "MediaHelper";
+    private static final String STATE_SESSIONS = "com.ahs.easymediahelper.sessions";
+
+    // Job types run by the durable job queue
+    public static final String JOB_CAPTURE_IMAGE = "easymediahelper.capture_image";
+    public static final String JOB_CAPTURE_VIDEO = "easymediahelper.capture_video";
+    private static boolean jobWorkersRegistered;
+
     private int imageWidith = 800;
     private int imageHeight = 600;
     private int imageQuality = 80;
     private  int videoDuration = 60; // Seconds
-    private static String  folderName = "MediaHelper";
+    private Bitmap.Config bitmapConfig = Bitmap.Config.ARGB_8888;
+    private ResizeMode resizeMode = ResizeMode.FILL;
+    private boolean upscaleImages = true;
+    private OutputTarget outputTarget = OutputTarget.APP_STORAGE;
+    private ImageEncoder imageEncoder = ImageEncoders.JPEG;
+    private VideoTranscoder videoTranscoder;
+    private int chunkSize;
+    private ChunkListenerFactory chunkListeners;
+    private String folderName = DEFAULT_FOLDER_NAME;
 
     // Variables
     private final Context context;
     private final Activity activity;
     private int maxFileSizeMB = 10;
 
-    private Uri imageUri;
-    private Uri videoUri;
-    private String fileName;
+    // Captures and selections waiting for their Activity result, by request code
+    private final Map<Integer, MediaSession> sessions = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+    private ImportProgressListener importProgressListener;
+    private int batchWorkerCount = 4;
+    private boolean compressSelectedImages = false;
+    private boolean deduplicateImports = false;
+    private boolean durableCaptureProcessing = false;
+    private boolean videoJobsRequireCharging = false;
+    private boolean videoJobsRequireIdle = false;
+    private final Set<Future<?>> pendingTasks = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     public EasyMediaHelper(Activity activity) {
         this.context = activity.getApplicationContext();
         this.activity = activity;
+
+        // Pending background work is cancelled together with the Activity
+        if (activity instanceof LifecycleOwner) {
+            ((LifecycleOwner) activity).getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    cancelPendingTasks();
+                }
+            });
+        }
     }
 
     /**
      * Launches an intent to capture a video.
+     *
+     * @return The session the result will be processed with.
      */
-    public void captureVideo(String fileName) {
-        this.fileName = sanitizeFileName(fileName);
-        videoUri = createVideoUri();
+    public MediaSession captureVideo(String fileName) {
+        Uri videoUri = createVideoUri();
         //createMediaUri("videos", generateFileName("VID_", ".mp4"));
+        MediaSession session = MediaSession.create(REQUEST_VIDEO_CAPTURE, videoUri, sanitizeFileName(fileName),
+                snapshotConfig());
+        sessions.put(REQUEST_VIDEO_CAPTURE, session);
 
         Intent intent = new Intent(MediaStore.ACTION_VIDEO_CAPTURE);
         intent.putExtra(MediaStore.EXTRA_OUTPUT, videoUri);
         intent.putExtra(MediaStore.EXTRA_DURATION_LIMIT, getVideoDuration());
         intent.putExtra(MediaStore.EXTRA_VIDEO_QUALITY, 0); // Low quality
         activity.startActivityForResult(intent, REQUEST_VIDEO_CAPTURE);
+        return session;
     }
 
     /**
      * Launches an intent to capture an image.
+     *
+     * @return The session the result will be processed with.
      */
-    public void captureImage(String fileName) {
-        this.fileName = sanitizeFileName(fileName);
-        imageUri = createImageUri(); //createMediaUri("images", generateFileName("IMG_", ".jpg"));
+    public MediaSession captureImage(String fileName) {
+        Uri imageUri = createImageUri(); //createMediaUri("images", generateFileName("IMG_", ".jpg"));
+        MediaSession session = MediaSession.create(REQUEST_IMAGE_CAPTURE, imageUri, sanitizeFileName(fileName),
+                snapshotConfig());
+        sessions.put(REQUEST_IMAGE_CAPTURE, session);
 
         Intent intent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
         intent.putExtra(MediaStore.EXTRA_OUTPUT, imageUri);
         activity.startActivityForResult(intent, REQUEST_IMAGE_CAPTURE);
+        return session;
+    }
+
+    /**
+     * Saves the captures and selections that are waiting for their result. Call it from the
+     * Activity's {@code onSaveInstanceState}, so that a result delivered after the process was
+     * killed can still be processed.
+     */
+    public void onSaveInstanceState(Bundle outState) {
+        Bundle saved = new Bundle();
+        for (Map.Entry<Integer, MediaSession> entry : sessions.entrySet()) {
+            saved.putBundle(String.valueOf(entry.getKey()), entry.getValue().toBundle());
+        }
+        outState.putBundle(STATE_SESSIONS, saved);
+    }
+
+    /**
+     * Restores the sessions saved by {@link #onSaveInstanceState(Bundle)}. Call it from the
+     * Activity's {@code onCreate} after configuring the helper: settings that cannot be saved,
+     * such as a custom {@link ImageEncoder}, are taken from the helper.
+     */
+    public void onRestoreInstanceState(@Nullable Bundle savedInstanceState) {
+        Bundle saved = savedInstanceState != null ? savedInstanceState.getBundle(STATE_SESSIONS) : null;
+        if (saved == null) return;
+        MediaConfig defaults = snapshotConfig();
+        for (String key : saved.keySet()) {
+            Bundle session = saved.getBundle(key);
+            if (session != null) {
+                sessions.put(Integer.parseInt(key), MediaSession.fromBundle(session, defaults));
+            }
+        }
+    }
+
+    /**
+     * @return The capture or selection waiting for the result of {@code requestCode}, or null.
+     */
+    @Nullable
+    public MediaSession getPendingSession(int requestCode) {
+        return sessions.get(requestCode);
+    }
+
+    /**
+     * Removes the session of {@code requestCode}, whose result has arrived. File selections
+     * started without a session, e.g. by the app itself, use the current settings.
+     */
+    @Nullable
+    private MediaSession takeSession(int requestCode) {
+        MediaSession session = sessions.remove(requestCode);
+        if (session == null && requestCode == REQUEST_BROWSE) {
+            session = MediaSession.create(REQUEST_BROWSE, null, null, snapshotConfig());
+        }
+        return session;
     }
 
     private Uri createImageUri() {
@@ -100,25 +244,35 @@ public class EasyMediaHelper {
         return FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", mediaFile);
     }
     private String generateImageFileName() {
-        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        return "IMG_" + timeStamp + ".jpg";
+        return MediaFileNames.generateFileName("IMG_", ".jpg");
     }
 
     private String generateVideoFileName() {
-        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        return "VID_" + timeStamp + ".mp4";
+        return MediaFileNames.generateFileName("VID_", ".mp4");
     }
 
     /**
      * Launches a file selection intent.
      */
     public void selectFile() {
+        selectFile(false);
+    }
+
+    /**
+     * Launches a file selection intent.
+     *
+     * @param allowMultiple Whether the user may pick several files at once. Handle the result with
+     *                      {@link #handleBatchActivityResultAsync} to import all of them.
+     */
+    public void selectFile(boolean allowMultiple) {
         Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, allowMultiple);
         intent.setType("*/*");
         intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{
                 "image/*", "video/*", "application/pdf", "application/vnd.openxmlformats-officedocument.wordprocessingml.document", "text/plain"
         });
         intent.addCategory(Intent.CATEGORY_OPENABLE);
+        sessions.put(REQUEST_BROWSE, MediaSession.create(REQUEST_BROWSE, null, null, snapshotConfig()));
         activity.startActivityForResult(Intent.createChooser(intent, "Select File"), REQUEST_BROWSE);
     }
 
@@ -126,360 +280,1865 @@ public class EasyMediaHelper {
      * Handles the result from an activity.
      */
     public String handleActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
-        if (resultCode != Activity.RESULT_OK) return null;
+        MediaSession session = takeSession(requestCode);
+        if (resultCode != Activity.RESULT_OK || session == null) return null;
+        return processResult(session, data);
+    }
 
-        switch (requestCode) {
+    private String processResult(MediaSession session, @Nullable Intent data) {
+        switch (session.getRequestCode()) {
             case REQUEST_IMAGE_CAPTURE:
-                return processCapturedImage();
+                return processCapturedImage(session);
             case REQUEST_VIDEO_CAPTURE:
-                return processCapturedVideo();
+                return processCapturedVideo(session);
             case REQUEST_BROWSE:
-                return processSelectedFile(data);
+                return processSelectedFile(data, session.getConfig());
             default:
                 return null;
         }
     }
 
-    private String processCapturedImage() {
-        if (imageUri != null) {
-            return saveCompressedImage(imageUri, getImageWidth(), getImageHeight(), getImageQuality());
+    /**
+     * Handles the result from an activity on a background thread.
+     * Decoding, compressing and copying never block the main thread; the result is
+     * delivered to {@code callback} on the main thread. Work still running when the
+     * Activity is destroyed is cancelled and its callback is not invoked.
+     * <p>
+     * With {@link #setDurableCaptureProcessing(boolean) durable processing}, captured images and
+     * videos are processed by the {@link #getJobQueue(Context) job queue} instead: the work
+     * outlives the Activity and the process, and is retried if it fails. Cancelling the returned
+     * Future then only detaches {@code callback}.
+     *
+     * @return A Future that can be used to cancel the operation.
+     */
+    public Future<String> handleActivityResultAsync(int requestCode, int resultCode, @Nullable Intent data,
+                                                    MediaResultCallback callback) {
+        // The session carries everything the result is processed with, a new capture cannot change it
+        final MediaSession session = takeSession(requestCode);
+
+        if (durableCaptureProcessing && resultCode == Activity.RESULT_OK && session != null) {
+            MediaJob job = createCaptureJob(session);
+            if (job != null) {
+                return enqueueCaptureJob(job, callback);
+            }
         }
-        return null;
+
+        return submit(() -> {
+            if (resultCode != Activity.RESULT_OK || session == null) return null;
+            return processResult(session, data);
+        }, path -> {
+            if (callback != null) callback.onSuccess(path);
+        }, error -> {
+            if (callback != null) callback.onError(error);
+        });
     }
 
-    private String processCapturedVideo() {
-        if (videoUri != null) {
-            return saveMedia(videoUri, "videos");
+    /**
+     * Describes the post-processing of a capture result as a job, or returns null if there is
+     * nothing to process or the settings cannot be persisted, e.g. a custom encoder.
+     */
+    @Nullable
+    private MediaJob createCaptureJob(MediaSession session) {
+        if (session.getOutputUri() == null) return null;
+        // A job could not reach chunk listeners, which only exist in this process
+        if (session.getConfig().chunkListeners != null) return null;
+        Map<String, String> params = new HashMap<>();
+        boolean complete = session.getConfig().writeTo(params);
+        params.put("fileName", String.valueOf(session.getFileName()));
+        params.put("uri", session.getOutputUri().toString());
+        long now = System.currentTimeMillis();
+        switch (session.getRequestCode()) {
+            case REQUEST_IMAGE_CAPTURE:
+                return complete ? MediaJob.create(JOB_CAPTURE_IMAGE, params, false, false, now) : null;
+            case REQUEST_VIDEO_CAPTURE:
+                return MediaJob.create(JOB_CAPTURE_VIDEO, params, videoJobsRequireCharging, videoJobsRequireIdle, now);
+            default:
+                return null;
         }
-        return null;
     }
 
-  /*  private String processSelectedFile(Intent data) {
-        if (data == null || data.getData() == null) return null;
+    private Future<String> enqueueCaptureJob(MediaJob job, MediaResultCallback callback) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        // The queue outlives the Activity, so the listener must not reach the helper, and it is
+        // removed as soon as the future completes or is cancelled
+        JobResultListener listener = new JobResultListener(job.getId(), future);
+        AtomicReference<MediaJobQueue> registeredQueue = new AtomicReference<>();
+        future.whenComplete((path, error) -> {
+            MediaJobQueue queue = registeredQueue.getAndSet(null);
+            if (queue != null) queue.removeListener(listener);
+            pendingTasks.remove(future);
+            if (future.isCancelled()) return;
+            deliverResult(callback, path, error instanceof Exception ? (Exception) error : null);
+        });
 
-        Uri fileUri = data.getData();
+        pendingTasks.add(future);
+        final Context appContext = context.getApplicationContext();
         try {
-            long fileSize = getFileSize(fileUri);
-            if (fileSize > maxFileSizeMB * 1024 * 1024) {
-                Toast.makeText(context, "File size exceeds " + maxFileSizeMB + " MB.", Toast.LENGTH_LONG).show();
-                return null;
-            }
-            return saveMedia(fileUri, "selected_files");
-        } catch (IOException e) {
-            Log.e("MediaHelper", "Error processing selected file", e);
+            // Creating the queue and persisting the job touch the disk, keep both off the main thread
+            getExecutor().execute(() -> {
+                try {
+                    MediaJobQueue queue = getJobQueue(appContext);
+                    queue.addListener(listener);
+                    registeredQueue.set(queue);
+                    // Cancelled before the listener was registered, whenComplete has already run
+                    if (future.isDone() && registeredQueue.compareAndSet(queue, null)) {
+                        queue.removeListener(listener);
+                        return;
+                    }
+                    queue.enqueue(job);
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
         }
-        return null;
-    }*/
+        return future;
+    }
 
-    private String saveCompressedImage(Uri imageUri, int width, int height, int quality) {
-        try (InputStream inputStream = context.getContentResolver().openInputStream(imageUri)) {
-            Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-            Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, width, height, true);
+    /**
+     * Completes the future of one capture job. Static so that a listener left on the
+     * process-wide queue never keeps a helper or its Activity reachable.
+     */
+    private static final class JobResultListener implements MediaJobQueue.Listener {
+        private final String jobId;
+        private final CompletableFuture<String> future;
 
-            File imageFile = new File(createMediaDirectory("images"), generateFileName(fileName, ".jpg"));
-            try (FileOutputStream out = new FileOutputStream(imageFile)) {
-                resizedBitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
-                return imageFile.getAbsolutePath();
-            }
-        } catch (IOException e) {
-            Log.e("MediaHelper", "Error saving compressed image", e);
+        JobResultListener(String jobId, CompletableFuture<String> future) {
+            this.jobId = jobId;
+            this.future = future;
+        }
+
+        @Override
+        public void onJobSucceeded(MediaJob finished, @Nullable String result) {
+            if (finished.getId().equals(jobId)) future.complete(result);
+        }
+
+        @Override
+        public void onJobFailed(MediaJob failed, Exception error) {
+            if (failed.getId().equals(jobId)) future.completeExceptionally(error);
         }
-        return null;
     }
 
-    public String processSelectedFile(Intent data) {
-        if (data != null) {
-            Uri uri = data.getData();
-            if (uri != null) {
-                Cursor cursor = null;
-                try {
-                    // Query the content resolver for the file metadata
-                    cursor = activity.getContentResolver().query(uri, null, null, null, null);
-                    if (cursor != null && cursor.moveToFirst()) {
-                        // Get the display name (file name) from the metadata
-                        String displayName = cursor.getString(cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME));
-                        Log.i("TAG", "Display Name: " + displayName);
-
-                        // Get the file size from the metadata
-                        int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
-                        long fileSize = cursor.isNull(sizeIndex) ? -1 : cursor.getLong(sizeIndex);
-                        Log.d("TAG", "File Size: " + (fileSize != -1 ? fileSize + " bytes" : "Unknown"));
-
-                        // Check if the file size exceeds the maximum allowed size
-                        if (fileSize > maxFileSizeMB * 1024 * 1024) { // Convert MB to bytes
-                            Toast.makeText(context, "File size exceeds " + maxFileSizeMB + " MB limit. Please select a smaller file.", Toast.LENGTH_LONG).show();
-                            return "";
-                        }
-
-                        // Save the file to the app's local storage and return the path
-                        return saveFileFromUri(context, uri, displayName, (int) fileSize);
-                    }
-                } catch (Exception e) {
-                    Log.e("TAG", "Error reading file metadata: " + e.getMessage(), e);
-                } finally {
-                    // Close the cursor to release resources
-                    if (cursor != null) {
-                        cursor.close();
-                    }
-                }
+    /**
+     * Returns the application's durable job queue with the workers for captured images and
+     * videos registered. Add a {@link MediaJobQueue.Listener} to receive results of jobs that
+     * finish after the Activity that started them is gone.
+     */
+    public static MediaJobQueue getJobQueue(Context context) {
+        Context appContext = context.getApplicationContext();
+        MediaJobQueue queue = MediaJobQueue.getInstance(appContext);
+        synchronized (EasyMediaHelper.class) {
+            if (!jobWorkersRegistered) {
+                jobWorkersRegistered = true;
+                queue.registerWorker(JOB_CAPTURE_IMAGE, job -> runCaptureImageJob(appContext, job));
+                queue.registerWorker(JOB_CAPTURE_VIDEO, job -> runCaptureVideoJob(appContext, job));
             }
         }
-        return "";
+        return queue;
     }
 
-    public static String saveFileFromUri(Context context, Uri uri, String outputFileName, int size) {
-        String path = "";
-        InputStream inputStream = null;
-        OutputStream outputStream = null;
+    /**
+     * Resumes capture processing left unfinished when the process last ended. Called when a helper
+     * enables {@link #setDurableCaptureProcessing(boolean) durable processing}; call it from
+     * {@code Application.onCreate()} to resume without opening a screen.
+     */
+    public static void resumePendingJobs(Context context) {
         try {
-            // Open an InputStream from the Uri
-            inputStream = context.getContentResolver().openInputStream(uri);
-            if (inputStream != null) {
-                File directory = new File(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES), folderName);
-                File imageFolder = null;
-                if (!directory.exists()) {
-                    directory.mkdir();
-                    imageFolder = new File(directory, "images");
-                    if (!imageFolder.exists()) {
-                        imageFolder.mkdir();
-                    }
-                } else {
-                    imageFolder = new File(directory, "images");
-                    if (!imageFolder.exists()) {
-                        imageFolder.mkdir();
-                    }
-                }
-                File outputFile = null;
-                if (hasExtension(outputFileName)) {
-                    outputFile = new File(imageFolder, outputFileName);
-                } else {
-                    outputFile = new File(imageFolder, outputFileName + "" + System.currentTimeMillis());
-                    // Create directories if they do not exist
-                    outputFile.getParentFile().mkdirs();
-                }
-                // Open an OutputStream to the output file
-                outputStream = new FileOutputStream(outputFile);
-                // Read from the InputStream and write to the OutputStream
-                byte[] buffer = new byte[size];
-                int length;
-                while ((length = inputStream.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, length);
-                }
-                path = outputFile.getAbsolutePath();
-                Log.d("FileUtils", "File saved successfully at: " + outputFile.getAbsolutePath());
-            } else {
-                Log.e("FileUtils", "Failed to open InputStream from Uri");
-            }
-        } catch (Exception e) {
-            Log.e("FileUtils", "Error saving file: " + e.getMessage());
-        } finally {
-            // Close InputStream and OutputStream
-            try {
-                if (inputStream != null) {
-                    inputStream.close();
-                }
-                if (outputStream != null) {
-                    outputStream.close();
-                }
-            } catch (Exception e) {
-                Log.e("FileUtils", "Error closing streams: " + e.getMessage());
-            }
+            MediaExecutor.getDefault().execute(() -> getJobQueue(context));
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Unable to resume pending jobs now", e);
         }
-        return path;
     }
-    public static boolean hasExtension(String fileName) {
-        int dotIndex = fileName.lastIndexOf('.');
-        return dotIndex > 0 && dotIndex < fileName.length() - 1;
-    }
-
-    private String saveMedia(Uri mediaUri, String subDir) {
-        try (InputStream inputStream = context.getContentResolver().openInputStream(mediaUri)) {
-            File mediaFile = new File(createMediaDirectory(subDir), generateFileName(fileName, ""));
-            try (OutputStream outputStream = new FileOutputStream(mediaFile)) {
-                byte[] buffer = new byte[1024];
-                int length;
-                while ((length = inputStream.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, length);
-                }
-                return mediaFile.getAbsolutePath();
-            }
-        } catch (IOException e) {
-            Log.e("MediaHelper", "Error saving media", e);
+
+    private static String runCaptureImageJob(Context context, MediaJob job) throws IOException {
+        // Jobs persisted by older versions lack newer settings, the defaults keep their old behaviour
+        MediaConfig config = MediaConfig.readFrom(job.getParams(), MediaConfig.DEFAULTS);
+        String path = saveCompressedImage(context, Uri.parse(job.getParam("uri")), job.getParam("fileName"), config);
+        if (path == null) {
+            throw new IOException("Failed to process captured image " + job.getParam("uri"));
         }
-        return null;
+        return path;
     }
 
-    public String getFolderName() {
-        return folderName;
-    }
-    public void setFolderName(String folderName) {
-        this.folderName = folderName;
+    private static String runCaptureVideoJob(Context context, MediaJob job) throws IOException {
+        MediaConfig config = MediaConfig.readFrom(job.getParams(), MediaConfig.DEFAULTS);
+        String path = saveVideo(context, Uri.parse(job.getParam("uri")), job.getParam("fileName"), config);
+        if (path == null) {
+            throw new IOException("Failed to process captured video " + job.getParam("uri"));
+        }
+        return path;
     }
 
-    public int getImageWidth() {
-        return imageWidith;
+    private void deliverResult(MediaResultCallback callback, String path, Exception error) {
+        if (callback == null) return;
+        MediaExecutor.runOnMainThread(() -> {
+            if (activity.isFinishing() || activity.isDestroyed()) return;
+            if (error != null) {
+                callback.onError(error);
+            } else {
+                callback.onSuccess(path);
+            }
+        });
     }
 
-    public void setImageWidth(int imageWidth) {
-        this.imageWidith = imageWidth;
-    }
+    /**
+     * Runs {@code work} on the executor as a task that is cancelled together with the Activity,
+     * and delivers its result to {@code onSuccess} or its error to {@code onError} on the main
+     * thread. Nothing is delivered once the task is cancelled or the Activity is finishing.
+     */
+    private <T> Future<T> submit(Callable<T> work, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        FutureTask<T> task = new FutureTask<T>(work) {
+            @Override
+            protected void done() {
+                pendingTasks.remove(this);
+                if (isCancelled()) return;
 
-    public int getImageHeight() {
-        return imageHeight;
-    }
+                T result = null;
+                Exception error = null;
+                try {
+                    result = get();
+                } catch (Exception e) {
+                    error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                deliver(result, error, onSuccess, onError);
+            }
+        };
 
-    public void setImageHeight(int imageHeight) {
-        this.imageHeight = imageHeight;
+        pendingTasks.add(task);
+        try {
+            getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            pendingTasks.remove(task);
+            deliver(null, e, onSuccess, onError);
+        }
+        return task;
     }
 
-    public int getImageQuality() {
-        return imageQuality;
+    private <T> void deliver(@Nullable T result, @Nullable Exception error,
+                             Consumer<T> onSuccess, Consumer<Exception> onError) {
+        MediaExecutor.runOnMainThread(() -> {
+            if (activity.isFinishing() || activity.isDestroyed()) return;
+            if (error != null) {
+                onError.accept(error);
+            } else {
+                onSuccess.accept(result);
+            }
+        });
     }
 
-    public void setImageQuality(int imageQuality) {
-        this.imageQuality = imageQuality;
+    /**
+     * Cancels all background operations started by this helper that have not completed yet.
+     * Called automatically when a {@link LifecycleOwner} Activity is destroyed.
+     */
+    public void cancelPendingTasks() {
+        for (Future<?> task : pendingTasks) {
+            task.cancel(true);
+        }
+        pendingTasks.clear();
     }
 
-    public int getVideoDuration() {
-        return videoDuration;
+    /**
+     * Imports every file picked through {@link #selectFile(boolean)} on a background thread.
+     * Items are copied in parallel by up to {@link #setBatchWorkerCount(int) batch workers};
+     * when {@link #setCompressSelectedImages(boolean)} is enabled, images are compressed
+     * instead, at most one per CPU core at a time.
+     *
+     * @return A Future that can be used to cancel the remaining items.
+     */
+    public Future<BatchImportResult> handleBatchActivityResultAsync(int requestCode, int resultCode, @Nullable Intent data,
+                                                                    BatchImportCallback callback) {
+        final List<Uri> uris = resultCode == Activity.RESULT_OK && requestCode == REQUEST_BROWSE
+                ? getSelectedUris(data) : new ArrayList<>();
+        final int workers = batchWorkerCount;
+        final MediaSession session = requestCode == REQUEST_BROWSE ? takeSession(REQUEST_BROWSE) : null;
+        final MediaConfig config = session != null ? session.getConfig() : snapshotConfig();
+
+        return submit(() -> new BatchImporter(workers).importAll(uris,
+                (importer, uri, index) -> importBatchItem(importer, uri, index, config),
+                (result, completed, total) -> MediaExecutor.runOnMainThread(() -> {
+                    if (!activity.isFinishing() && !activity.isDestroyed()) {
+                        callback.onItemImported(result, completed, total);
+                    }
+                })), callback::onComplete, callback::onError);
     }
 
-    public void setVideoDuration(int videoDuration) {
-        this.videoDuration = videoDuration;
+    /**
+     * Saves several renditions of the image at {@code imageUri}, e.g. a thumbnail, a preview and
+     * a full-size upload. The image is decoded once, at the size the largest rendition needs;
+     * smaller renditions are downscaled from larger ones and all of them are encoded in parallel.
+     * Blocks, so it must not be called on the main thread; see {@link #saveRenditionsAsync}.
+     *
+     * @return The path of each rendition by name, in the order of {@code renditions}, or null if
+     * any of them failed, in which case none are kept. Paths are {@code content://} Uris with
+     * {@link OutputTarget#MEDIA_STORE}.
+     */
+    @Nullable
+    public Map<String, String> saveRenditions(Uri imageUri, String fileName, List<Rendition> renditions) {
+        try {
+            return saveRenditions(context, imageUri, sanitizeFileName(fileName), renditions, snapshotConfig());
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error saving renditions", e);
+        }
+        return null;
     }
 
-    private File createMediaDirectory(String subDir) {
-        File directory = new File(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES), folderName + "/" + subDir);
-        if (!directory.exists()) directory.mkdirs();
-        return directory;
+    /**
+     * Runs {@link #saveRenditions} on a background thread and delivers the result to
+     * {@code callback} on the main thread. Work still running when the Activity is destroyed is
+     * cancelled and its callback is not invoked.
+     *
+     * @return A Future that can be used to cancel the operation.
+     */
+    public Future<Map<String, String>> saveRenditionsAsync(Uri imageUri, String fileName, List<Rendition> renditions,
+                                                           RenditionCallback callback) {
+        final String safeFileName = sanitizeFileName(fileName);
+        final List<Rendition> specs = new ArrayList<>(renditions);
+        final MediaConfig config = snapshotConfig();
+        return submit(() -> saveRenditions(context, imageUri, safeFileName, specs, config),
+                callback::onSuccess, callback::onError);
     }
 
-    private Uri createMediaUri(String subDir, String fileName) {
-        File mediaFile = new File(createMediaDirectory(subDir), fileName);
-        return FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", mediaFile);
+    /**
+     * Extracts {@code frameCount} evenly spaced frames of a video for a scrubbing strip and delivers
+     * each to {@code callback} on the main thread as soon as it is ready, so a timeline fills in
+     * progressively. Frames are scaled to fit {@code frameWidth} x {@code frameHeight} while they
+     * are decoded and kept in the {@link ThumbnailCache}, on disk too in the helper's folder, so a
+     * strip that was shown before loads without touching the video.
+     *
+     * @param keyframesOnly Whether to take the nearest keyframe instead of the exact frame, which
+     *                      is much faster but less evenly spaced.
+     * @return A Future that can be used to cancel the extraction; no callbacks follow a cancellation.
+     */
+    public Future<Integer> getVideoFramesAsync(String videoPath, int frameCount, int frameWidth, int frameHeight,
+                                               boolean keyframesOnly, VideoFrameCallback callback) {
+        final Context appContext = context.getApplicationContext();
+        final String frameFolder = folderName;
+        // Frames are posted from the worker, so they check the task they belong to
+        final AtomicReference<Future<Integer>> self = new AtomicReference<>();
+        Future<Integer> task = submit(() ->
+                VideoFrameExtractor.extract(appContext, frameFolder, videoPath, frameCount, frameWidth, frameHeight, keyframesOnly,
+                        (index, frame) -> MediaExecutor.runOnMainThread(() -> {
+                            Future<Integer> future = self.get();
+                            if (future == null || future.isCancelled()
+                                    || activity.isFinishing() || activity.isDestroyed()) return;
+                            callback.onFrame(index, frame);
+                        })), callback::onComplete, callback::onError);
+        self.set(task);
+        return task;
     }
 
-    private long getFileSize(Uri uri) throws IOException {
-        try (Cursor cursor = context.getContentResolver().query(uri, null, null, null, null)) {
-            if (cursor != null && cursor.moveToFirst()) {
-                int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
-                return cursor.getLong(sizeIndex);
+    /**
+     * Returns all Uris contained in a file selection result, whether the user picked one
+     * file ({@code getData()}) or several ({@code getClipData()}).
+     */
+    public static List<Uri> getSelectedUris(@Nullable Intent data) {
+        List<Uri> uris = new ArrayList<>();
+        if (data == null) return uris;
+
+        ClipData clipData = data.getClipData();
+        if (clipData != null) {
+            for (int i = 0; i < clipData.getItemCount(); i++) {
+                Uri uri = clipData.getItemAt(i).getUri();
+                if (uri != null) uris.add(uri);
             }
+        } else if (data.getData() != null) {
+            uris.add(data.getData());
         }
-        try (InputStream inputStream = context.getContentResolver().openInputStream(uri)) {
-            return inputStream.available();
-        }
+        return uris;
     }
 
-    private String generateFileName(String prefix, String extension) {
-        return prefix + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + extension;
+    private String importBatchItem(BatchImporter importer, Uri uri, int index, MediaConfig config) throws Exception {
+        String mimeType = context.getContentResolver().getType(uri);
+        if (config.compressSelectedImages && mimeType != null && mimeType.startsWith("image/")) {
+            String path = importer.runCpuBound(() ->
+                    saveCompressedImage(context, uri, "IMG_" + importer.itemPrefix(index), config));
+            if (path == null) {
+                throw new IOException("Unable to compress image: " + uri);
+            }
+            return path;
+        }
+        return copySelectedFile(uri, null, config, importer.itemPrefix(index));
     }
 
-    private String sanitizeFileName(String fileName) {
-        return fileName.replaceAll("[^a-zA-Z0-9_.-]", "_");
+    public ExecutorService getExecutor() {
+        return executor != null ? executor : MediaExecutor.getDefault();
     }
 
-    public void setMaxFileSizeMB(int maxFileSizeMB) {
-        this.maxFileSizeMB = maxFileSizeMB;
-    }
     /**
-     * Retrieves a Bitmap from the specified file path.
-     * Corrects the orientation if required.
-     *
-     * @param context  The application context.
-     * @param filePath The absolute path of the image file.
-     * @return A Bitmap object or null if the file doesn't exist.
+     * Sets the executor used by {@link #handleActivityResultAsync}. Defaults to the
+     * library's shared, bounded {@link MediaExecutor#getDefault()} pool.
      */
-    public static Bitmap getBitmapFromPath(Context context, String filePath) {
-        File imgFile = new File(filePath);
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
 
-        // Check if the file exists
-        if (imgFile.exists()) {
-            Bitmap bitmap = BitmapFactory.decodeFile(imgFile.getAbsolutePath());
-            try {
-                // Correct the image orientation
-                bitmap = correctImageOrientation(context, bitmap, Uri.fromFile(imgFile));
-            } catch (IOException e) {
-                Log.e("MediaHelper", "Error correcting image orientation", e);
-            }
-            return bitmap;
-        } else {
-            Log.e("MediaHelper", "File not found: " + filePath);
-            return null;
+    private String processCapturedImage(MediaSession session) {
+        if (session.getOutputUri() != null) {
+            return saveCompressedImage(context, session.getOutputUri(), session.getFileName(), session.getConfig());
         }
+        return null;
     }
 
-    /**
-     * Generates a thumbnail for the specified video file.
-     *
-     * @param videoPath The absolute path of the video file.
-     * @return A Bitmap containing the video thumbnail, or null if generation fails.
-     */
-    public static Bitmap getVideoThumbnail(String videoPath) {
-        return ThumbnailUtils.createVideoThumbnail(videoPath, MediaStore.Images.Thumbnails.MINI_KIND);
+    private String processCapturedVideo(MediaSession session) {
+        if (session.getOutputUri() != null) {
+            return saveVideo(context, session.getOutputUri(), session.getFileName(), session.getConfig());
+        }
+        return null;
     }
 
     /**
-     * Saves a Bitmap to a file in the app's external pictures directory.
-     *
-     * @param context  The application context.
-     * @param bitmap   The Bitmap to save.
-     * @param fileName The desired file name (without extension).
-     * @return The absolute path of the saved file, or null if saving fails.
+     * Saves a captured video, transcoding it first if a {@link VideoTranscoder} is set and the
+     * video does not already fit its target. If transcoding fails the original is kept.
+     * Transcoded videos are muxed into a file and always kept in app storage.
      */
-    public static String saveBitmapToFile(Context context, Bitmap bitmap, String fileName, int imageQuality) {
-        FileOutputStream fos = null;
-        try {
-            // Create the directory if it doesn't exist
-            File directory = new File(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES), folderName + "/images");
-            if (!directory.exists() && !directory.mkdirs()) {
-                Log.e("MediaHelper", "Failed to create directories: " + directory.getAbsolutePath());
+    private static String saveVideo(Context context, Uri videoUri, String fileName, MediaConfig config) {
+        VideoTranscoder transcoder = config.transcoder;
+        if (transcoder != null) {
+            MediaTrace trace = MediaMetrics.begin(MediaOperationMetrics.OPERATION_TRANSCODE_VIDEO);
+            try {
+                trace.stage(MediaOperationMetrics.STAGE_TRANSCODE);
+                File videoFile = new File(createMediaDirectory(context, config.folderName, "videos"),
+                        MediaFileNames.generateFileName(fileName, ".mp4"));
+                if (transcoder.transcode(context, videoUri, videoFile)) {
+                    trace.addBytes(videoFile.length());
+                    StorageQuotaManager.getInstance(context, config.folderName).recordWrite(videoFile);
+                    return videoFile.getAbsolutePath();
+                }
+                Log.d(TAG, "Video already fits the target, keeping the original");
+            } catch (InterruptedIOException e) {
+                Log.d(TAG, "Transcode cancelled: " + videoUri);
+                trace.fail(e);
                 return null;
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error transcoding video, keeping the original", e);
+                trace.fail(e);
+            } finally {
+                trace.end();
             }
+        }
+        return saveMedia(context, videoUri, fileName, "videos", config);
+    }
 
-            // Sanitize the file name and add a timestamp
-            fileName = fileName.replaceAll("[/\\s]", "_"); // Replace invalid characters
-            String generatedFileName = fileName + "_" + System.currentTimeMillis() + ".png";
-            File imageFile = new File(directory, generatedFileName);
+  /*  private String processSelectedFile(Intent data) {
+        if (data == null || data.getData() == null) return null;
 
-            // Save the Bitmap to the file
-            fos = new FileOutputStream(imageFile);
-            if (!bitmap.compress(Bitmap.CompressFormat.PNG, imageQuality, fos)) {
-                Log.e("MediaHelper", "Failed to compress bitmap");
+        Uri fileUri = data.getData();
+        try {
+            long fileSize = getFileSize(fileUri);
+            if (fileSize > maxFileSizeMB * 1024 * 1024) {
+                Toast.makeText(context, "File size exceeds " + maxFileSizeMB + " MB.", Toast.LENGTH_LONG).show();
                 return null;
             }
-            fos.flush();
-
-            // Return the file path of the saved image
-            return imageFile.getAbsolutePath();
+            return saveMedia(fileUri, "selected_files");
         } catch (IOException e) {
-            Log.e("MediaHelper", "Error saving bitmap to file", e);
-        } finally {
-            // Close the FileOutputStream
-            if (fos != null) {
-                try {
-                    fos.close();
-                } catch (IOException e) {
-                    Log.e("MediaHelper", "Error closing FileOutputStream", e);
-                }
-            }
+            Log.e(TAG, "Error processing selected file", e);
         }
         return null;
-    }
+    }*/
 
+    private MediaConfig snapshotConfig() {
+        return new MediaConfig(getFolderName(), getImageWidth(), getImageHeight(), getImageQuality(), getBitmapConfig(),
+                getImageEncoder(), getResizeMode(), isUpscaleImages(), getOutputTarget(), isDeduplicateImports(),
+                isCompressSelectedImages(), maxFileSizeMB, getVideoTranscoder(), chunkSize, chunkListeners);
+    }
 
-    /**
-     * Corrects the orientation of an image based on EXIF data.
-     * (Implement this function as per your application's logic.)
-     *
+    private static String saveCompressedImage(Context context, Uri imageUri, String fileName, MediaConfig settings) {
+        MediaTrace trace = MediaMetrics.begin(MediaOperationMetrics.OPERATION_SAVE_COMPRESSED_IMAGE);
+        try {
+            // Subsampled decode keeps peak memory close to the target size instead of the camera's full resolution
+            trace.stage(MediaOperationMetrics.STAGE_DECODE);
+            ContentResolver resolver = context.getContentResolver();
+            BitmapFactory.Options bounds = BitmapDecoder.decodeBounds(resolver, imageUri);
+            int orientation = ImageOrientation.read(resolver, imageUri);
+            boolean sideways = ImageOrientation.isSideways(orientation);
+            ResizePlan plan = null;
+            Rect region = new Rect();
+            Bitmap bitmap = null;
+            if (bounds != null) {
+                // The output size follows from the upright size, known from the header alone
+                plan = ResizePlan.compute(sideways ? bounds.outHeight : bounds.outWidth,
+                        sideways ? bounds.outWidth : bounds.outHeight,
+                        settings.width, settings.height, settings.resizeMode, settings.upscale);
+                bitmap = decodeForResize(resolver, imageUri, bounds, plan, orientation, settings.config, region);
+            }
+            if (bitmap == null) {
+                Log.e(TAG, "Unable to decode image: " + imageUri);
+                trace.fail(new IOException("Unable to decode image"));
+                return null;
+            }
+            trace.recordBitmap(bitmap);
+
+            // Intermediate bitmaps go back to the pool so burst captures reuse the same allocations
+            trace.stage(MediaOperationMetrics.STAGE_SCALE);
+            BitmapPool pool = BitmapPool.getInstance();
+            // Rotating upright happens in the same pass as the resize, so it costs no extra bitmap
+            Bitmap resizedBitmap = pool.createTransformedBitmap(bitmap, region.isEmpty() ? null : region,
+                    plan.width, plan.height, orientation);
+            if (resizedBitmap != bitmap) {
+                trace.recordBitmap(resizedBitmap);
+                pool.release(bitmap);
+            }
+
+            trace.stage(MediaOperationMetrics.STAGE_ENCODE);
+            if (settings.outputTarget == OutputTarget.MEDIA_STORE && MediaStoreOutput.isSupported()) {
+                // Encoded straight into the shared collection, there is no private copy to move there
+                try {
+                    Uri published = writeToMediaStore(context,
+                            MediaFileNames.generateFileName(fileName, settings.encoder.getExtension()),
+                            resizedBitmap, settings.quality, settings.encoder, settings.folderName, trace);
+                    if (published == null) {
+                        Log.e(TAG, "Failed to compress bitmap");
+                        trace.fail(new IOException("Failed to compress bitmap"));
+                        return null;
+                    }
+                    return published.toString();
+                } finally {
+                    pool.release(resizedBitmap);
+                }
+            }
+            File imageFile = new File(createMediaDirectory(context, settings.folderName, "images"),
+                    MediaFileNames.generateFileName(fileName, settings.encoder.getExtension()));
+            try {
+                if (!writeAtomically(imageFile, resizedBitmap, settings.quality, settings.encoder,
+                        newChunkWriter(imageFile, settings.chunkSize, settings.chunkListeners))) {
+                    Log.e(TAG, "Failed to compress bitmap");
+                    trace.fail(new IOException("Failed to compress bitmap"));
+                    return null;
+                }
+            } finally {
+                pool.release(resizedBitmap);
+            }
+            trace.addBytes(imageFile.length());
+            StorageQuotaManager.getInstance(context, settings.folderName).recordWrite(imageFile);
+            return imageFile.getAbsolutePath();
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error saving compressed image", e);
+            trace.fail(e);
+        } finally {
+            trace.end();
+        }
+        return null;
+    }
+
+    private static Map<String, String> saveRenditions(Context context, Uri imageUri, String fileName,
+                                                      List<Rendition> renditions, MediaConfig config)
+            throws IOException {
+        int count = renditions.size();
+        Set<String> names = new HashSet<>();
+        for (Rendition rendition : renditions) {
+            if (!names.add(rendition.getName())) {
+                throw new IllegalArgumentException("Duplicate rendition name: " + rendition.getName());
+            }
+        }
+        if (count == 0) return new LinkedHashMap<>();
+        ContentResolver resolver = context.getContentResolver();
+        BitmapPool pool = BitmapPool.getInstance();
+        Bitmap decoded = null;
+        Bitmap[] bitmaps = new Bitmap[count];
+        String[] paths = new String[count];
+        List<RenditionTask> tasks = new ArrayList<>();
+        boolean saved = false;
+        MediaTrace trace = MediaMetrics.begin(MediaOperationMetrics.OPERATION_SAVE_RENDITIONS);
+        try {
+            trace.stage(MediaOperationMetrics.STAGE_DECODE);
+            BitmapFactory.Options bounds = BitmapDecoder.decodeBounds(resolver, imageUri);
+            if (bounds == null) {
+                throw new IOException("Unable to decode image: " + imageUri);
+            }
+            int storedWidth = bounds.outWidth;
+            int storedHeight = bounds.outHeight;
+            int orientation = ImageOrientation.read(resolver, imageUri);
+            boolean sideways = ImageOrientation.isSideways(orientation);
+            int uprightWidth = sideways ? storedHeight : storedWidth;
+            int uprightHeight = sideways ? storedWidth : storedHeight;
+            ResizePlan[] plans = new ResizePlan[count];
+            for (int i = 0; i < count; i++) {
+                Rendition rendition = renditions.get(i);
+                plans[i] = ResizePlan.compute(uprightWidth, uprightHeight, rendition.getWidth(), rendition.getHeight(),
+                        rendition.getResizeMode(), false);
+            }
+            RenditionPlan plan = new RenditionPlan(plans, uprightWidth, uprightHeight);
+
+            // One decode, sampled for the rendition that needs the most pixels
+            int reqWidth = (int) Math.ceil(uprightWidth * plan.decodeScaleX());
+            int reqHeight = (int) Math.ceil(uprightHeight * plan.decodeScaleY());
+            decoded = BitmapDecoder.decodeSampled(resolver, imageUri, bounds,
+                    sideways ? reqHeight : reqWidth, sideways ? reqWidth : reqHeight, config.config);
+            if (decoded == null) {
+                throw new IOException("Unable to decode image: " + imageUri);
+            }
+            trace.recordBitmap(decoded);
+
+            trace.stage(MediaOperationMetrics.STAGE_SCALE);
+            for (int index : plan.drawOrder()) {
+                ResizePlan resize = plan.get(index);
+                Rect crop = new Rect(resize.cropLeft, resize.cropTop, resize.cropRight, resize.cropBottom);
+                int source = plan.sourceOf(index);
+                if (source == RenditionPlan.DECODED) {
+                    Rect stored = ImageOrientation.toStoredRegion(crop, storedWidth, storedHeight, orientation);
+                    bitmaps[index] = pool.createTransformedBitmap(decoded,
+                            scaleRect(stored, (double) decoded.getWidth() / storedWidth,
+                                    (double) decoded.getHeight() / storedHeight),
+                            resize.width, resize.height, orientation);
+                } else {
+                    // Downscaling from the next larger rendition reads fewer pixels than the decoded image
+                    Bitmap larger = bitmaps[source];
+                    bitmaps[index] = pool.createTransformedBitmap(larger,
+                            scaleRect(crop, (double) larger.getWidth() / uprightWidth,
+                                    (double) larger.getHeight() / uprightHeight),
+                            resize.width, resize.height, ExifInterface.ORIENTATION_NORMAL);
+                }
+                trace.recordBitmap(bitmaps[index]);
+            }
+
+            trace.stage(MediaOperationMetrics.STAGE_ENCODE);
+            String baseName = MediaFileNames.generateFileName(fileName, "");
+            for (int i = 0; i < count; i++) {
+                final Rendition rendition = renditions.get(i);
+                final Bitmap bitmap = bitmaps[i];
+                final String name = baseName + "_" + MediaFileNames.sanitizeFileName(rendition.getName())
+                        + rendition.getEncoder().getExtension();
+                tasks.add(new RenditionTask(() -> writeRendition(context, name, bitmap, rendition, config)));
+            }
+            // Encodes run on the shared pool, and on this thread if the pool has not started them yet,
+            // so a saturated pool, possibly running this very call, cannot deadlock
+            for (int i = 1; i < count; i++) {
+                try {
+                    MediaExecutor.getDefault().execute(tasks.get(i));
+                } catch (RejectedExecutionException e) {
+                    // Runs on this thread below
+                }
+            }
+            IOException failure = null;
+            for (int i = 0; i < count; i++) {
+                RenditionTask task = tasks.get(i);
+                task.run();
+                try {
+                    paths[i] = task.get();
+                    if (!paths[i].startsWith("content:")) trace.addBytes(new File(paths[i]).length());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Saving renditions cancelled");
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof IOException
+                                ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) throw failure;
+
+            Map<String, String> result = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                result.put(renditions.get(i).getName(), paths[i]);
+            }
+            saved = true;
+            return result;
+        } catch (IOException | RuntimeException e) {
+            trace.fail(e);
+            throw e;
+        } finally {
+            trace.end();
+            // Encodes already running still read their bitmap, and their output must be deleted too
+            for (int i = 0; i < tasks.size(); i++) {
+                String path = tasks.get(i).abandon();
+                if (paths[i] == null) paths[i] = path;
+            }
+            // Renditions of the same size as their source share its bitmap, release each one once
+            Set<Bitmap> released = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (decoded != null) released.add(decoded);
+            Collections.addAll(released, bitmaps);
+            for (Bitmap bitmap : released) {
+                pool.release(bitmap);
+            }
+            if (!saved) {
+                for (String path : paths) {
+                    if (path != null) deleteOutput(context, config.folderName, path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes one rendition. Runs either on the shared pool or on the thread saving the
+     * renditions, whichever gets to it first, and never starts once it has been abandoned.
+     */
+    private static final class RenditionTask extends FutureTask<String> {
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        RenditionTask(Callable<String> encode) {
+            super(encode);
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) return;
+            try {
+                super.run();
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Keeps the encode from starting or, if it already has, waits for it to finish, ignoring
+         * interrupts so its bitmap is not released while it is still being read.
+         *
+         * @return The path of the saved rendition, or null if it was not saved.
+         */
+        @Nullable
+        String abandon() {
+            if (claimed.compareAndSet(false, true)) {
+                cancel(false);
+                return null;
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    finished.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            try {
+                return get();
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Encodes one rendition into the output target.
+     *
+     * @return The path of the saved rendition.
+     */
+    private static String writeRendition(Context context, String name, Bitmap bitmap, Rendition rendition,
+                                         MediaConfig config) throws IOException {
+        if (config.outputTarget == OutputTarget.MEDIA_STORE && MediaStoreOutput.isSupported()) {
+            Uri published = writeToMediaStore(context, name, bitmap, rendition.getQuality(), rendition.getEncoder(),
+                    config.folderName, MediaTrace.NONE);
+            if (published == null) {
+                throw new IOException("Failed to encode rendition " + rendition.getName());
+            }
+            return published.toString();
+        }
+        File imageFile = new File(createMediaDirectory(context, config.folderName, "images"), name);
+        if (!writeAtomically(imageFile, bitmap, rendition.getQuality(), rendition.getEncoder())) {
+            throw new IOException("Failed to encode rendition " + rendition.getName());
+        }
+        StorageQuotaManager.getInstance(context, config.folderName).recordWrite(imageFile);
+        return imageFile.getAbsolutePath();
+    }
+
+    private static void deleteOutput(Context context, String folderName, String path) {
+        if (path.startsWith("content:")) {
+            try {
+                context.getContentResolver().delete(Uri.parse(path), null, null);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Unable to delete " + path, e);
+            }
+            return;
+        }
+        File file = new File(path);
+        if (file.delete()) {
+            StorageQuotaManager.getInstance(context, folderName).recordDelete(file);
+        }
+    }
+
+    private static Rect scaleRect(Rect rect, double scaleX, double scaleY) {
+        return new Rect((int) Math.round(rect.left * scaleX), (int) Math.round(rect.top * scaleY),
+                (int) Math.round(rect.right * scaleX), (int) Math.round(rect.bottom * scaleY));
+    }
+
+    /**
+     * Decodes no more of the image than {@code plan} needs: a crop is decoded with a region
+     * decoder, so the pixels cut away are never read. Formats without a region decoder are
+     * decoded whole and cropped while scaling.
+     *
+     * @param outRegion Set to the part of the returned bitmap to keep, or left empty to keep all of it.
+     */
+    private static Bitmap decodeForResize(ContentResolver resolver, Uri uri, BitmapFactory.Options bounds,
+                                          ResizePlan plan, int orientation, Bitmap.Config config,
+                                          Rect outRegion) throws IOException {
+        int storedWidth = bounds.outWidth;
+        int storedHeight = bounds.outHeight;
+        // Sample sizes apply to the image as stored, which is turned on its side for some orientations
+        boolean sideways = ImageOrientation.isSideways(orientation);
+        int reqWidth = sideways ? plan.height : plan.width;
+        int reqHeight = sideways ? plan.width : plan.height;
+        if (!plan.isCropped()) {
+            return BitmapDecoder.decodeSampled(resolver, uri, bounds, reqWidth, reqHeight, config);
+        }
+
+        Rect stored = ImageOrientation.toStoredRegion(
+                new Rect(plan.cropLeft, plan.cropTop, plan.cropRight, plan.cropBottom),
+                storedWidth, storedHeight, orientation);
+        try {
+            Bitmap bitmap = BitmapDecoder.decodeRegion(resolver, uri, stored, reqWidth, reqHeight, config);
+            if (bitmap != null) return bitmap;
+        } catch (IOException e) {
+            Log.d(TAG, "Decoding the whole image, no region decoder: " + e.getMessage());
+        }
+
+        // Sample the whole image so that the kept region still covers the requested size
+        Bitmap bitmap = BitmapDecoder.decodeSampled(resolver, uri, bounds,
+                (int) Math.ceil((double) reqWidth * storedWidth / stored.width()),
+                (int) Math.ceil((double) reqHeight * storedHeight / stored.height()), config);
+        if (bitmap != null) {
+            double scaleX = (double) bitmap.getWidth() / storedWidth;
+            double scaleY = (double) bitmap.getHeight() / storedHeight;
+            outRegion.set((int) Math.round(stored.left * scaleX), (int) Math.round(stored.top * scaleY),
+                    (int) Math.round(stored.right * scaleX), (int) Math.round(stored.bottom * scaleY));
+        }
+        return bitmap;
+    }
+
+    public String processSelectedFile(Intent data) {
+        return processSelectedFile(data, snapshotConfig());
+    }
+
+    private String processSelectedFile(@Nullable Intent data, MediaConfig config) {
+        // A multi-select result only carries ClipData, import its first item
+        List<Uri> uris = getSelectedUris(data);
+        if (!uris.isEmpty()) {
+            return importFile(uris.get(0), importProgressListener, config);
+        }
+        return "";
+    }
+
+    /**
+     * Copies a selected file into local storage, streaming it through {@link MediaCopier}.
+     * The size limit is enforced while copying, so an oversized file is aborted after reading
+     * just past {@code maxFileSizeMB} even when the provider reports no or a wrong size.
+     */
+    private String importFile(Uri uri, @Nullable ImportProgressListener listener, MediaConfig config) {
+        try {
+            return copySelectedFile(uri, listener, config, null);
+        } catch (FileTooLargeException e) {
+            showToast("File size exceeds " + config.maxFileSizeMB + " MB limit. Please select a smaller file.");
+        } catch (InterruptedIOException e) {
+            Log.d(TAG, "Import cancelled: " + uri);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error reading file metadata: " + e.getMessage(), e);
+        }
+        return "";
+    }
+
+    /**
+     * Like {@link #importFile}, but reports every failure by throwing, so batch items carry it
+     * in their {@link ImportResult} instead of showing a toast each.
+     *
+     * @param namePrefix Put in front of the display name to keep the copy apart from other
+     *                   items with the same name, or null to use the display name alone.
+     * @throws FileTooLargeException If the file exceeds {@code maxFileSizeMB}.
+     */
+    private String copySelectedFile(Uri uri, @Nullable ImportProgressListener listener, MediaConfig config,
+                                    @Nullable String namePrefix) throws IOException {
+        Cursor cursor = null;
+        try {
+            // Query the content resolver for the file metadata, only the columns read below
+            cursor = MediaProber.query(activity.getContentResolver(), uri);
+            if (cursor == null || !cursor.moveToFirst()) {
+                throw new FileNotFoundException("No metadata for " + uri);
+            }
+            // Get the display name (file name) from the metadata
+            String displayName = cursor.getString(cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME));
+            Log.i(TAG, "Display Name: " + displayName);
+
+            // Get the file size from the metadata
+            int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+            long fileSize = cursor.isNull(sizeIndex) ? -1 : cursor.getLong(sizeIndex);
+            Log.d(TAG, "File Size: " + (fileSize != -1 ? fileSize + " bytes" : "Unknown"));
+
+            // Check if the file size exceeds the maximum allowed size
+            long maxBytes = config.maxFileSizeBytes();
+            if (fileSize > maxBytes) {
+                throw new FileTooLargeException(maxBytes);
+            }
+
+            // Re-selecting an unchanged file is answered from the index without reading it
+            DedupIndex dedupIndex = config.deduplicate ? DedupIndex.getInstance(context) : null;
+            int modifiedIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+            long lastModified = modifiedIndex >= 0 && !cursor.isNull(modifiedIndex) ? cursor.getLong(modifiedIndex) : -1;
+            String sourceKey = DedupIndex.sourceKey(uri, fileSize, lastModified);
+            if (dedupIndex != null) {
+                String existing = dedupIndex.findBySource(sourceKey);
+                if (existing != null) {
+                    Log.d(TAG, "Already imported: " + existing);
+                    return existing;
+                }
+            }
+
+            // Save the file to the app's local storage and return the path
+            MediaCopier.Progress progress = new MediaCopier.Progress(fileSize, maxBytes, onMainThread(listener),
+                    MediaCopier.Progress.DEFAULT_INTERVAL_MS);
+            MessageDigest digest = dedupIndex != null ? DedupIndex.newDigest() : null;
+            // Without a size and modification time a changed source could not be told apart
+            String resumeKey = fileSize >= 0 && lastModified >= 0 ? sourceKey : null;
+            String outputFileName = namePrefix != null
+                    ? namePrefix + sanitizeFileName(displayName != null ? displayName : "file") : displayName;
+            String path = copyToFolder(context, config.folderName, uri, outputFileName, "images", resumeKey,
+                    progress.withDigest(digest), config.chunkSize, config.chunkListeners);
+            return dedupIndex != null
+                    ? deduplicate(context, config.folderName, dedupIndex, sourceKey, digest, path) : path;
+        } finally {
+            // Close the cursor to release resources
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Replaces a freshly written file with an existing copy of the same content, if there is one.
+     *
+     * @return The path the caller should use.
+     */
+    private static String deduplicate(Context context, String folderName, DedupIndex dedupIndex,
+                                      @Nullable String sourceKey, MessageDigest digest, String path) {
+        String hash = DedupIndex.toHex(digest.digest());
+        String existing = dedupIndex.findByHash(hash);
+        if (existing != null && !existing.equals(path)) {
+            Log.d(TAG, "Duplicate of " + existing + ", discarding " + path);
+            new File(path).delete();
+            UploadManifest.fileFor(new File(path)).delete();
+            StorageQuotaManager.getInstance(context, folderName).recordDelete(new File(path));
+            dedupIndex.record(sourceKey, hash, existing);
+            return existing;
+        }
+        dedupIndex.record(sourceKey, hash, path);
+        return path;
+    }
+
+    @Nullable
+    private static ImportProgressListener onMainThread(@Nullable ImportProgressListener listener) {
+        if (listener == null) return null;
+        return (bytesCopied, totalBytes) ->
+                MediaExecutor.runOnMainThread(() -> listener.onProgress(bytesCopied, totalBytes));
+    }
+
+    /**
+     * Copies the content at {@code uri} into the "images" folder of {@link #DEFAULT_FOLDER_NAME}.
+     *
+     * @param size The size reported by the provider. Kept for compatibility, the copy no longer
+     *             depends on it.
+     * @return The absolute path of the copied file, or an empty string on failure.
+     */
+    public static String saveFileFromUri(Context context, Uri uri, String outputFileName, long size) {
+        return saveFileFromUri(context, uri, outputFileName, size, -1, null);
+    }
+
+    /**
+     * Copies the content at {@code uri} into the "images" folder of {@link #DEFAULT_FOLDER_NAME}, reporting progress and
+     * aborting once more than {@code maxBytes} have been read. A partially written file is
+     * deleted when the copy fails or the calling thread is interrupted.
+     *
+     * @param size     The size reported by the provider, or -1 if unknown. Only used for progress.
+     * @param maxBytes The maximum allowed file size, or -1 for no limit.
+     * @param listener Receives throttled progress updates on the copying thread, may be null.
+     * @return The absolute path of the copied file, or an empty string on failure.
+     */
+    public static String saveFileFromUri(Context context, Uri uri, String outputFileName, long size,
+                                         long maxBytes, @Nullable ImportProgressListener listener) {
+        return saveFileFromUri(context, uri, outputFileName, size, maxBytes, listener, 0, null);
+    }
+
+    /**
+     * Like {@link #saveFileFromUri(Context, Uri, String, long, long, ImportProgressListener)}, also
+     * splitting the file into chunks of {@code chunkSize} bytes while it is copied, hashing each
+     * one and saving an {@link UploadManifest} next to the file, e.g. to feed a
+     * {@link ResumableUpload} without reading the file back.
+     *
+     * @param chunkSize     The size of the chunks, or 0 not to split the file.
+     * @param chunkListener Receives the chunks on the copying thread, may be null.
+     */
+    public static String saveFileFromUri(Context context, Uri uri, String outputFileName, long size,
+                                         long maxBytes, @Nullable ImportProgressListener listener,
+                                         int chunkSize, @Nullable ChunkListener chunkListener) {
+        return saveFileFromUri(context, DEFAULT_FOLDER_NAME, uri, outputFileName, size, maxBytes, listener,
+                chunkSize, chunkListener);
+    }
+
+    /**
+     * Copies the content at {@code uri} into the "images" folder of {@code folderName}, e.g. the
+     * {@link #getFolderName() folder} of a helper.
+     *
+     * @return The absolute path of the copied file, or an empty string on failure.
+     */
+    public static String saveFileFromUri(Context context, String folderName, Uri uri, String outputFileName,
+                                         long size) {
+        return saveFileFromUri(context, folderName, uri, outputFileName, size, -1, null, 0, null);
+    }
+
+    /**
+     * Like {@link #saveFileFromUri(Context, Uri, String, long, long, ImportProgressListener, int, ChunkListener)},
+     * copying into the "images" folder of {@code folderName} instead of {@link #DEFAULT_FOLDER_NAME}.
+     */
+    public static String saveFileFromUri(Context context, String folderName, Uri uri, String outputFileName,
+                                         long size, long maxBytes, @Nullable ImportProgressListener listener,
+                                         int chunkSize, @Nullable ChunkListener chunkListener) {
+        try {
+            return copyToFolder(context, folderName, uri, outputFileName, "images", null,
+                    new MediaCopier.Progress(size, maxBytes, listener, MediaCopier.Progress.DEFAULT_INTERVAL_MS),
+                    chunkSize, file -> chunkListener);
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving file: " + e.getMessage());
+        }
+        return "";
+    }
+
+    private static String copyToFolder(Context context, String folderName, Uri uri, String outputFileName,
+                                       String subDir, @Nullable String resumeKey, MediaCopier.Progress progress,
+                                       int chunkSize, @Nullable ChunkListenerFactory chunkListeners)
+            throws IOException {
+        MediaTrace trace = MediaMetrics.begin(MediaOperationMetrics.OPERATION_SAVE_FILE_FROM_URI);
+        try {
+            return copyToFolder(context, folderName, uri, outputFileName, subDir, resumeKey, progress,
+                    chunkSize, chunkListeners, trace);
+        } catch (IOException | RuntimeException e) {
+            trace.fail(e);
+            throw e;
+        } finally {
+            trace.end();
+        }
+    }
+
+    private static String copyToFolder(Context context, String folderName, Uri uri, String outputFileName,
+                                       String subDir, @Nullable String resumeKey, MediaCopier.Progress progress,
+                                       int chunkSize, @Nullable ChunkListenerFactory chunkListeners,
+                                       MediaTrace trace) throws IOException {
+        File directory = new File(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES), folderName);
+        File imageFolder = new File(directory, subDir);
+        if (!imageFolder.exists()) {
+            imageFolder.mkdirs();
+        }
+        File outputFile = null;
+        if (hasExtension(outputFileName)) {
+            outputFile = new File(imageFolder, outputFileName);
+        } else {
+            outputFile = new File(imageFolder, outputFileName + "" + System.currentTimeMillis());
+        }
+        ChunkWriter chunks = newChunkWriter(outputFile, chunkSize, chunkListeners);
+        if (chunks != null) {
+            progress.withChunks(chunks);
+        }
+        long copied = copyUriToFile(context.getContentResolver(), uri, outputFile, resumeKey, progress, trace);
+        StorageQuotaManager.getInstance(context, folderName).recordWrite(outputFile);
+        Log.d(TAG, "File saved successfully at: " + outputFile.getAbsolutePath() + " (" + copied + " bytes)");
+        return outputFile.getAbsolutePath();
+    }
+
+    /**
+     * Copies the content at {@code uri} into {@code outputFile} using the shared {@link MediaCopier}.
+     * Seekable sources are opened as a {@link ParcelFileDescriptor} and copied with
+     * {@code FileChannel.transferTo}, everything else is streamed through a pooled buffer.
+     *
+     * @return The number of bytes copied.
+     */
+    static long copyUriToFile(ContentResolver resolver, Uri uri, File outputFile) throws IOException {
+        return copyUriToFile(resolver, uri, outputFile, null, MediaTrace.NONE);
+    }
+
+    /**
+     * Copies the content at {@code uri} into {@code outputFile}, reporting to {@code progress}.
+     * The bytes are written to a temporary file that only replaces {@code outputFile} once it is
+     * complete and synced, and is deleted if the copy fails or is cancelled.
+     */
+    static long copyUriToFile(ContentResolver resolver, Uri uri, File outputFile,
+                              @Nullable MediaCopier.Progress progress, MediaTrace trace) throws IOException {
+        return copyUriToFile(resolver, uri, outputFile, null, progress, trace);
+    }
+
+    /**
+     * Like {@link #copyUriToFile(ContentResolver, Uri, File, MediaCopier.Progress, MediaTrace)},
+     * but a copy identified by a non-null {@code resumeKey} keeps its synced part when it is cut
+     * short, by cancellation or process death, and the next copy with the same key continues
+     * from there if the source is seekable.
+     */
+    static long copyUriToFile(ContentResolver resolver, Uri uri, File outputFile, @Nullable String resumeKey,
+                              @Nullable MediaCopier.Progress progress, MediaTrace trace) throws IOException {
+        PartialFile partial;
+        if (resumeKey != null) {
+            File partialDir = new File(outputFile.getParentFile(), PARTIAL_DIRECTORY);
+            PartialFile.deleteStale(partialDir, PARTIAL_MAX_AGE_MS);
+            partial = PartialFile.resumable(partialDir, uri.toString(), resumeKey);
+        } else {
+            partial = PartialFile.create(outputFile);
+        }
+
+        trace.stage(MediaOperationMetrics.STAGE_OPEN);
+        ParcelFileDescriptor descriptor = null;
+        try {
+            descriptor = resolver.openFileDescriptor(uri, "r");
+        } catch (FileNotFoundException | SecurityException | UnsupportedOperationException e) {
+            // Some providers only support openInputStream
+        }
+
+        try (InputStream inputStream = descriptor != null
+                ? new FileInputStream(descriptor.getFileDescriptor())
+                : resolver.openInputStream(uri)) {
+            if (inputStream == null) {
+                throw new FileNotFoundException("Failed to open InputStream from Uri: " + uri);
+            }
+            trace.stage(MediaOperationMetrics.STAGE_COPY);
+            long copied = MediaCopier.copy(inputStream, partial, outputFile, progress);
+            trace.addBytes(copied);
+            return copied;
+        } finally {
+            if (descriptor != null) {
+                descriptor.close();
+            }
+        }
+    }
+
+    /**
+     * @deprecated Use {@link #saveFileFromUri(Context, Uri, String, long)}.
+     */
+    @Deprecated
+    public static String saveFileFromUri(Context context, Uri uri, String outputFileName, int size) {
+        return saveFileFromUri(context, uri, outputFileName, (long) size);
+    }
+
+    public static boolean hasExtension(String fileName) {
+        return MediaFileNames.hasExtension(fileName);
+    }
+
+    private static String saveMedia(Context context, Uri mediaUri, String fileName, String subDir, MediaConfig config) {
+        MediaTrace trace = MediaMetrics.begin(MediaOperationMetrics.OPERATION_SAVE_MEDIA);
+        try {
+            if (config.outputTarget == OutputTarget.MEDIA_STORE && MediaStoreOutput.isSupported()) {
+                // Deduplication only covers the app's own folder, shared items are always new
+                return copyToMediaStore(context, mediaUri, MediaFileNames.generateFileName(fileName, ""),
+                        config.folderName, trace).toString();
+            }
+            File mediaFile = new File(createMediaDirectory(context, config.folderName, subDir),
+                    MediaFileNames.generateFileName(fileName, ""));
+            StorageQuotaManager quota = StorageQuotaManager.getInstance(context, config.folderName);
+            MediaCopier.Progress progress = new MediaCopier.Progress(-1, -1, null, 0);
+            ChunkWriter chunks = newChunkWriter(mediaFile, config.chunkSize, config.chunkListeners);
+            if (chunks != null) {
+                progress.withChunks(chunks);
+            }
+            if (!config.deduplicate) {
+                copyUriToFile(context.getContentResolver(), mediaUri, mediaFile, progress, trace);
+                quota.recordWrite(mediaFile);
+                return mediaFile.getAbsolutePath();
+            }
+            MessageDigest digest = DedupIndex.newDigest();
+            copyUriToFile(context.getContentResolver(), mediaUri, mediaFile, progress.withDigest(digest), trace);
+            quota.recordWrite(mediaFile);
+            return deduplicate(context, config.folderName, DedupIndex.getInstance(context), null, digest,
+                    mediaFile.getAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error saving media", e);
+            trace.fail(e);
+        } finally {
+            trace.end();
+        }
+        return null;
+    }
+
+    /**
+     * Streams the content at {@code uri} into a new pending MediaStore item, published once
+     * complete and deleted if the copy fails.
+     *
+     * @return The Uri of the new item.
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static Uri copyToMediaStore(Context context, Uri uri, String displayName, String folderName,
+                                        MediaTrace trace) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        trace.stage(MediaOperationMetrics.STAGE_OPEN);
+        MediaStoreOutput output = MediaStoreOutput.insert(resolver, displayName, resolver.getType(uri), folderName);
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            if (inputStream == null) {
+                throw new FileNotFoundException("Failed to open InputStream from Uri: " + uri);
+            }
+            trace.stage(MediaOperationMetrics.STAGE_COPY);
+            trace.addBytes(MediaCopier.copy(inputStream, output.channel()));
+            return output.publish();
+        } catch (IOException | RuntimeException e) {
+            output.discard();
+            throw e;
+        }
+    }
+
+    public String getFolderName() {
+        return folderName;
+    }
+
+    /**
+     * Returns the quota manager of this helper's media folder, e.g. to cap its size with
+     * {@link StorageQuotaManager#setMaxBytes(long)} or to read its usage.
+     */
+    public StorageQuotaManager getStorageQuotaManager() {
+        return StorageQuotaManager.getInstance(context, folderName);
+    }
+
+    /**
+     * Sets the folder this helper saves into. Each helper has its own folder; captures and
+     * imports already started keep the folder they were started with.
+     */
+    public void setFolderName(String folderName) {
+        this.folderName = folderName;
+    }
+
+    public int getImageWidth() {
+        return imageWidith;
+    }
+
+    public void setImageWidth(int imageWidth) {
+        this.imageWidith = imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(int imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
+    public int getImageQuality() {
+        return imageQuality;
+    }
+
+    public void setImageQuality(int imageQuality) {
+        this.imageQuality = imageQuality;
+    }
+
+    public Bitmap.Config getBitmapConfig() {
+        return bitmapConfig;
+    }
+
+    /**
+     * Sets the pixel format used when decoding captured images.
+     * {@link Bitmap.Config#RGB_565} halves decode memory for images without transparency.
+     */
+    public void setBitmapConfig(Bitmap.Config bitmapConfig) {
+        this.bitmapConfig = bitmapConfig;
+    }
+
+    public OutputTarget getOutputTarget() {
+        return outputTarget;
+    }
+
+    /**
+     * Sets where captured images and videos are saved. Defaults to
+     * {@link OutputTarget#APP_STORAGE}; {@link OutputTarget#MEDIA_STORE} writes them straight
+     * into the shared Pictures and Movies collections, under the folder name, and results are
+     * then {@code content://} Uris instead of paths.
+     */
+    public void setOutputTarget(OutputTarget outputTarget) {
+        this.outputTarget = outputTarget;
+    }
+
+    public ResizeMode getResizeMode() {
+        return resizeMode;
+    }
+
+    /**
+     * Sets how captured images are sized to the image width and height. Defaults to
+     * {@link ResizeMode#FILL}, which stretches them to exactly that size; the other modes keep
+     * the aspect ratio.
+     */
+    public void setResizeMode(ResizeMode resizeMode) {
+        this.resizeMode = resizeMode;
+    }
+
+    public boolean isUpscaleImages() {
+        return upscaleImages;
+    }
+
+    /**
+     * Sets whether images smaller than the image width and height are enlarged. Disabling it
+     * saves encoding pixels that add no detail. Enabled by default.
+     */
+    public void setUpscaleImages(boolean upscaleImages) {
+        this.upscaleImages = upscaleImages;
+    }
+
+    public ImageEncoder getImageEncoder() {
+        return imageEncoder;
+    }
+
+    /**
+     * Sets the encoder used for captured images. Defaults to {@link ImageEncoders#JPEG}.
+     * Use {@link ImageEncoders#WEBP_LOSSY} for smaller uploads, or wrap an encoder in a
+     * {@link TargetSizeEncoder} to stay within a byte budget.
+     */
+    public void setImageEncoder(ImageEncoder imageEncoder) {
+        this.imageEncoder = imageEncoder;
+    }
+
+    @Nullable
+    public VideoTranscoder getVideoTranscoder() {
+        return videoTranscoder;
+    }
+
+    /**
+     * Sets the transcoder that shrinks captured videos before they are saved, e.g.
+     * {@code new VideoTranscoder()} for 720p at 2 Mbit/s. Null, the default, saves the camera's
+     * file as is. Transcoding is CPU and battery heavy, consider
+     * {@link #setVideoJobConstraints(boolean, boolean)}.
+     */
+    public void setVideoTranscoder(@Nullable VideoTranscoder videoTranscoder) {
+        this.videoTranscoder = videoTranscoder;
+    }
+
+    /**
+     * Splits every file this helper copies or encodes into its folder into chunks of
+     * {@code chunkSizeBytes} while it is written, hashing each chunk and saving an
+     * {@link UploadManifest} next to the file, so an upload can start before the file is complete
+     * and never has to read it back. 0, the default, turns chunking off.
+     *
+     * @param chunkListeners Creates the listener of each file, e.g.
+     *                       {@code file -> ResumableUpload.start(uploader)}, or null to only save
+     *                       manifests. Listeners only live in this process, so captures are then
+     *                       processed in it instead of by the job queue.
+     */
+    public void setChunkedOutput(int chunkSizeBytes, @Nullable ChunkListenerFactory chunkListeners) {
+        this.chunkSize = Math.max(0, chunkSizeBytes);
+        this.chunkListeners = chunkSize > 0 ? chunkListeners : null;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getVideoDuration() {
+        return videoDuration;
+    }
+
+    public void setVideoDuration(int videoDuration) {
+        this.videoDuration = videoDuration;
+    }
+
+    private File createMediaDirectory(String subDir) {
+        return createMediaDirectory(context, folderName, subDir);
+    }
+
+    private static File createMediaDirectory(Context context, String folderName, String subDir) {
+        File directory = new File(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES), folderName + "/" + subDir);
+        if (!directory.exists()) directory.mkdirs();
+        return directory;
+    }
+
+    private Uri createMediaUri(String subDir, String fileName) {
+        File mediaFile = new File(createMediaDirectory(subDir), fileName);
+        return FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", mediaFile);
+    }
+
+    private long getFileSize(Uri uri) throws IOException {
+        try (Cursor cursor = context.getContentResolver().query(uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                return cursor.getLong(sizeIndex);
+            }
+        }
+        try (InputStream inputStream = context.getContentResolver().openInputStream(uri)) {
+            return inputStream.available();
+        }
+    }
+
+    /**
+     * Returns the size, MIME type, dimensions, duration and orientation of the media at
+     * {@code uri} without decoding it. Results are cached per Uri, so calling this from list
+     * bindings or for validation is cheap after the first call.
+     *
+     * @return The metadata, or null if the media could not be read.
+     */
+    @Nullable
+    public static MediaInfo probe(Context context, Uri uri) {
+        try {
+            return MediaProber.probe(context, uri);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to probe " + uri, e);
+            return null;
+        }
+    }
+
+    /**
+     * @see #probe(Context, Uri)
+     */
+    @Nullable
+    public MediaInfo probe(Uri uri) {
+        return probe(context, uri);
+    }
+
+    private String generateFileName(String prefix, String extension) {
+        return MediaFileNames.generateFileName(prefix, extension);
+    }
+
+    private String sanitizeFileName(String fileName) {
+        return MediaFileNames.sanitizeFileName(fileName);
+    }
+
+    public void setMaxFileSizeMB(int maxFileSizeMB) {
+        this.maxFileSizeMB = maxFileSizeMB;
+    }
+
+    public int getBatchWorkerCount() {
+        return batchWorkerCount;
+    }
+
+    /**
+     * Sets how many files of a multi-select import are copied at the same time. Defaults to 4.
+     */
+    public void setBatchWorkerCount(int batchWorkerCount) {
+        this.batchWorkerCount = Math.max(1, batchWorkerCount);
+    }
+
+    public boolean isCompressSelectedImages() {
+        return compressSelectedImages;
+    }
+
+    /**
+     * When enabled, images picked through a multi-select import are resized and compressed with
+     * the configured width, height and quality instead of being copied as-is.
+     */
+    public void setCompressSelectedImages(boolean compressSelectedImages) {
+        this.compressSelectedImages = compressSelectedImages;
+    }
+
+    public boolean isDeduplicateImports() {
+        return deduplicateImports;
+    }
+
+    /**
+     * When enabled, importing content that was already imported or captured returns the existing
+     * file instead of writing another copy. Unchanged sources are recognized from their Uri, size
+     * and modification time without being read; otherwise a SHA-256 hash is computed while copying.
+     * Disabled by default because:
+     * <ul>
+     * <li>hashing reads every byte in user space, so copies lose the zero-copy
+     * {@code transferTo} path and are slower;</li>
+     * <li>the returned path can belong to another import, so deleting or editing the file
+     * affects every import that shares it.</li>
+     * </ul>
+     */
+    public void setDeduplicateImports(boolean deduplicateImports) {
+        this.deduplicateImports = deduplicateImports;
+    }
+
+    /**
+     * Sets a listener that is notified on the main thread while a selected file is copied.
+     * Pass null to stop receiving updates.
+     */
+    public void setImportProgressListener(@Nullable ImportProgressListener importProgressListener) {
+        this.importProgressListener = importProgressListener;
+    }
+
+    /**
+     * @return Whether captured images and videos are processed by the durable job queue.
+     */
+    public boolean isDurableCaptureProcessing() {
+        return durableCaptureProcessing;
+    }
+
+    /**
+     * Sets whether {@link #handleActivityResultAsync} hands captured images and videos to the
+     * durable {@link #getJobQueue(Context) job queue}, so processing survives the Activity and
+     * the process instead of being cancelled with the Activity. Disabled by default; enabling it
+     * also resumes jobs left unfinished by an earlier process. Images saved with a custom
+     * {@link ImageEncoder} are always processed directly.
+     */
+    public void setDurableCaptureProcessing(boolean durableCaptureProcessing) {
+        this.durableCaptureProcessing = durableCaptureProcessing;
+        if (durableCaptureProcessing) {
+            resumePendingJobs(context);
+        }
+    }
+
+    /**
+     * Holds back the processing of captured videos until the device is charging and/or idle.
+     * Only applies to {@link #setDurableCaptureProcessing(boolean) durable processing}.
+     */
+    public void setVideoJobConstraints(boolean requiresCharging, boolean requiresIdle) {
+        this.videoJobsRequireCharging = requiresCharging;
+        this.videoJobsRequireIdle = requiresIdle;
+    }
+
+    // Toasts may only be shown from the main thread, results can be processed on any thread
+    private void showToast(String message) {
+        MediaExecutor.runOnMainThread(() -> Toast.makeText(context, message, Toast.LENGTH_LONG).show());
+    }
+    /**
+     * Retrieves a Bitmap from the specified file path.
+     * Corrects the orientation if required.
+     *
+     * Decoded images are cached in memory; the returned Bitmap is a copy that the caller owns.
+     * See {@link #getCachedBitmap} to skip the copy.
+     *
+     * @param context  The application context.
+     * @param filePath The absolute path of the image file.
+     * @return A Bitmap object or null if the file doesn't exist.
+     */
+    public static Bitmap getBitmapFromPath(Context context, String filePath) {
+        return copyOf(loadBitmap(context, filePath, 0, 0));
+    }
+
+    /**
+     * Retrieves a Bitmap from the specified file path, decoded at roughly the requested size.
+     * The image is subsampled while decoding, so memory and decode time scale with the
+     * displayed pixels rather than the stored pixels. Decoded images are cached in memory; the
+     * returned Bitmap is a copy that the caller owns.
+     *
+     * @param context   The application context.
+     * @param filePath  The absolute path of the image file.
+     * @param reqWidth  The width the image will be displayed at, in pixels.
+     * @param reqHeight The height the image will be displayed at, in pixels.
+     * @return A Bitmap at least as large as requested (unless the source is smaller), or null if
+     * the file doesn't exist or cannot be decoded.
+     */
+    public static Bitmap getBitmapFromPath(Context context, String filePath, int reqWidth, int reqHeight) {
+        return copyOf(loadBitmap(context, filePath, reqWidth, reqHeight));
+    }
+
+    /**
+     * Like {@link #getBitmapFromPath(Context, String, int, int)}, but returns the Bitmap held by
+     * the {@link ThumbnailCache} itself, so rebinding a list row neither decodes nor copies the
+     * image again. The returned Bitmap is shared and must not be recycled or modified.
+     *
+     * @param reqWidth  The width the image will be displayed at, in pixels, or 0 for full size.
+     * @param reqHeight The height the image will be displayed at, in pixels, or 0 for full size.
+     */
+    @Nullable
+    public Bitmap getCachedBitmap(String filePath, int reqWidth, int reqHeight) {
+        return loadBitmap(context, filePath, reqWidth, reqHeight);
+    }
+
+    // Returns the Bitmap in the cache, decoding it first if needed
+    @Nullable
+    private static Bitmap loadBitmap(Context context, String filePath, int reqWidth, int reqHeight) {
+        File imgFile = new File(filePath);
+        if (!imgFile.exists()) {
+            Log.e(TAG, "File not found: " + filePath);
+            return null;
+        }
+        StorageQuotaManager quota = StorageQuotaManager.forFile(context, imgFile);
+        if (quota != null) quota.recordAccess(imgFile);
+
+        ThumbnailCache cache = ThumbnailCache.getInstance();
+        String key = ThumbnailCache.keyFor(imgFile, "bitmap", reqWidth, reqHeight);
+        Bitmap bitmap = cache.get(key, null);
+        if (bitmap != null) return bitmap;
+
+        bitmap = decodeUpright(imgFile.getAbsolutePath(), reqWidth, reqHeight);
+        if (bitmap == null) {
+            Log.e(TAG, "Unable to decode image: " + filePath);
+            return null;
+        }
+        cache.put(key, bitmap, null);
+        return bitmap;
+    }
+
+    // A copy the caller owns and may recycle, while the original stays in the cache
+    @Nullable
+    private static Bitmap copyOf(@Nullable Bitmap bitmap) {
+        if (bitmap == null) return null;
+        Bitmap.Config config = bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+        return bitmap.copy(config, bitmap.isMutable());
+    }
+
+    /**
+     * Retrieves a Bitmap sized for the given view. If the view has not been laid out yet, its
+     * layout params are used, and the screen size as a last resort.
+     *
+     * @param context  The application context.
+     * @param filePath The absolute path of the image file.
+     * @param view     The view the bitmap will be displayed in.
+     * @return A Bitmap object or null if the file doesn't exist or cannot be decoded.
+     */
+    public static Bitmap getBitmapFromPath(Context context, String filePath, View view) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int width = view.getWidth();
+        int height = view.getHeight();
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (width <= 0) width = params != null && params.width > 0 ? params.width : metrics.widthPixels;
+        if (height <= 0) height = params != null && params.height > 0 ? params.height : metrics.heightPixels;
+        return getBitmapFromPath(context, filePath, width, height);
+    }
+
+    /**
+     * Decodes only a region of an image file, for zoom and crop views. Tiles are decoded with
+     * {@link BitmapRegionDecoder} so the rest of the image is never loaded.
+     *
+     * @param filePath  The absolute path of the image file.
+     * @param region    The region to decode in source pixel coordinates.
+     * @param reqWidth  The width the region will be displayed at, in pixels.
+     * @param reqHeight The height the region will be displayed at, in pixels.
+     * @return The decoded region, or null if it cannot be decoded.
+     */
+    public static Bitmap decodeImageRegion(String filePath, Rect region, int reqWidth, int reqHeight) {
+        try {
+            return BitmapDecoder.decodeRegion(filePath, region, reqWidth, reqHeight, Bitmap.Config.ARGB_8888);
+        } catch (IOException e) {
+            Log.e(TAG, "Error decoding image region", e);
+            return null;
+        }
+    }
+
+    /**
+     * Generates a thumbnail for the specified video file.
+     *
+     * @param videoPath The absolute path of the video file.
+     * @return A Bitmap containing the video thumbnail, or null if generation fails.
+     */
+    public static Bitmap getVideoThumbnail(String videoPath) {
+        return getVideoThumbnail(null, videoPath);
+    }
+
+    /**
+     * Generates a thumbnail for the specified video file, served from the {@link ThumbnailCache}
+     * when possible. With a context, thumbnails are also kept on disk in the
+     * {@link #DEFAULT_FOLDER_NAME} folder and survive process restarts. The returned Bitmap is a
+     * copy that the caller owns; see {@link #getCachedVideoThumbnail} to skip the copy.
+     *
+     * @param context   The application context, or null to use the memory cache only.
+     * @param videoPath The absolute path of the video file.
+     * @return A Bitmap containing the video thumbnail, or null if generation fails.
+     */
+    public static Bitmap getVideoThumbnail(@Nullable Context context, String videoPath) {
+        File diskDirectory = context != null ? ThumbnailCache.diskDirectory(context, DEFAULT_FOLDER_NAME) : null;
+        return copyOf(loadVideoThumbnail(diskDirectory, videoPath));
+    }
+
+    /**
+     * Like {@link #getVideoThumbnail(Context, String)}, but keeps thumbnails on disk in this
+     * helper's folder and returns the Bitmap held by the {@link ThumbnailCache} itself. The
+     * returned Bitmap is shared and must not be recycled or modified.
+     */
+    @Nullable
+    public Bitmap getCachedVideoThumbnail(String videoPath) {
+        return loadVideoThumbnail(ThumbnailCache.diskDirectory(context, folderName), videoPath);
+    }
+
+    @Nullable
+    private static Bitmap loadVideoThumbnail(@Nullable File diskDirectory, String videoPath) {
+        ThumbnailCache cache = ThumbnailCache.getInstance();
+        String key = ThumbnailCache.keyFor(new File(videoPath), "video", MediaStore.Images.Thumbnails.MINI_KIND, 0);
+
+        Bitmap thumbnail = cache.get(key, diskDirectory);
+        if (thumbnail == null) {
+            thumbnail = ThumbnailUtils.createVideoThumbnail(videoPath, MediaStore.Images.Thumbnails.MINI_KIND);
+            cache.put(key, thumbnail, diskDirectory);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Extracts {@code frameCount} evenly spaced frames of a video, scaled to fit
+     * {@code frameWidth} x {@code frameHeight}, with one {@link android.media.MediaMetadataRetriever}
+     * and served from the {@link ThumbnailCache} when possible, on disk in the
+     * {@link #DEFAULT_FOLDER_NAME} folder. Blocks, so it must not be called on
+     * the main thread; see {@link #getVideoFramesAsync}. The returned Bitmaps are shared and must
+     * not be recycled.
+     *
+     * @return The frames in order, without those that could not be decoded, or an empty list if
+     * the video cannot be read.
+     */
+    public static List<Bitmap> getVideoFrames(Context context, String videoPath, int frameCount,
+                                              int frameWidth, int frameHeight) {
+        List<Bitmap> frames = new ArrayList<>();
+        try {
+            VideoFrameExtractor.extract(context.getApplicationContext(), DEFAULT_FOLDER_NAME, videoPath, frameCount, frameWidth, frameHeight,
+                    false, (index, frame) -> frames.add(frame));
+        } catch (IOException e) {
+            Log.e(TAG, "Error extracting video frames", e);
+            frames.clear();
+        }
+        return frames;
+    }
+
+    /**
+     * Saves a Bitmap as PNG to a file in the "images" folder of {@link #DEFAULT_FOLDER_NAME}.
+     *
+     * @param context  The application context.
+     * @param bitmap   The Bitmap to save.
+     * @param fileName The desired file name (without extension).
+     * @return The absolute path of the saved file, or null if saving fails.
+     */
+    public static String saveBitmapToFile(Context context, Bitmap bitmap, String fileName, int imageQuality) {
+        return saveBitmapToFile(context, bitmap, fileName, imageQuality, ImageEncoders.PNG);
+    }
+
+    /**
+     * Saves a Bitmap to a file in the {@link #DEFAULT_FOLDER_NAME} folder with the given encoder.
+     * {@link ImageEncoders#WEBP_LOSSLESS} is usually much faster and smaller than PNG for screenshots.
+     *
+     * @param context      The application context.
+     * @param bitmap       The Bitmap to save.
+     * @param fileName     The desired file name (without extension).
+     * @param imageQuality The quality passed to the encoder, from 0 to 100.
+     * @param encoder      The encoder that determines the file format.
+     * @return The absolute path of the saved file, or null if saving fails.
+     */
+    public static String saveBitmapToFile(Context context, Bitmap bitmap, String fileName, int imageQuality,
+                                          ImageEncoder encoder) {
+        return saveBitmapToFile(context, DEFAULT_FOLDER_NAME, bitmap, fileName, imageQuality, encoder);
+    }
+
+    /**
+     * Like {@link #saveBitmapToFile(Context, Bitmap, String, int, ImageEncoder)}, saving into the
+     * "images" folder of {@code folderName}, e.g. the {@link #getFolderName() folder} of a helper.
+     */
+    public static String saveBitmapToFile(Context context, String folderName, Bitmap bitmap, String fileName,
+                                          int imageQuality, ImageEncoder encoder) {
+        try {
+            // Create the directory if it doesn't exist
+            File directory = createMediaDirectory(context, folderName, "images");
+            if (!directory.isDirectory()) {
+                Log.e(TAG, "Failed to create directories: " + directory.getAbsolutePath());
+                return null;
+            }
+
+            // Sanitize the file name and add a timestamp
+            fileName = fileName.replaceAll("[/\\s]", "_"); // Replace invalid characters
+            String generatedFileName = fileName + "_" + System.currentTimeMillis() + encoder.getExtension();
+            File imageFile = new File(directory, generatedFileName);
+
+            // Save the Bitmap to the file
+            if (!writeAtomically(imageFile, bitmap, imageQuality, encoder)) {
+                Log.e(TAG, "Failed to compress bitmap");
+                return null;
+            }
+            StorageQuotaManager.getInstance(context, folderName).recordWrite(imageFile);
+
+            // Return the file path of the saved image
+            return imageFile.getAbsolutePath();
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving bitmap to file", e);
+        }
+        return null;
+    }
+
+    /**
+     * Encodes {@code bitmap} into a new pending MediaStore item, published once complete.
+     *
+     * @return The Uri of the new item, or null if the encoder failed and nothing was saved.
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static Uri writeToMediaStore(Context context, String displayName, Bitmap bitmap, int quality,
+                                         ImageEncoder encoder, String folderName, MediaTrace trace)
+            throws IOException {
+        MediaStoreOutput output = MediaStoreOutput.insert(context.getContentResolver(), displayName,
+                encoder.getMimeType(), folderName);
+        try {
+            FileChannel channel = output.channel();
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            if (!encoder.encode(bitmap, quality, out)) {
+                output.discard();
+                return null;
+            }
+            out.flush();
+            trace.addBytes(channel.position());
+            return output.publish();
+        } catch (IOException | RuntimeException e) {
+            output.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Encodes {@code bitmap} into a temporary file and moves it to {@code imageFile} once it is
+     * synced, so a crash while encoding never leaves a truncated image behind.
+     *
+     * @return Whether the encoder succeeded. Nothing is written if it did not.
+     */
+    private static boolean writeAtomically(File imageFile, Bitmap bitmap, int quality, ImageEncoder encoder)
+            throws IOException {
+        return writeAtomically(imageFile, bitmap, quality, encoder, null);
+    }
+
+    /**
+     * Like {@link #writeAtomically(File, Bitmap, int, ImageEncoder)}, splitting the encoded bytes
+     * into upload chunks as they are written if {@code chunks} is not null.
+     */
+    private static boolean writeAtomically(File imageFile, Bitmap bitmap, int quality, ImageEncoder encoder,
+                                           @Nullable ChunkWriter chunks) throws IOException {
+        PartialFile partial = PartialFile.create(imageFile);
+        partial.open(false);
+        try {
+            OutputStream out = chunks != null ? chunks.tee(partial.outputStream()) : partial.outputStream();
+            if (!encoder.encode(bitmap, quality, out)) {
+                partial.abort();
+                if (chunks != null) chunks.abort(new IOException("Failed to encode " + imageFile.getName()));
+                return false;
+            }
+            out.flush();
+            UploadManifest manifest = chunks != null ? chunks.finish() : null;
+            partial.commit(imageFile);
+            if (manifest != null) chunks.complete(manifest);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            partial.abort();
+            if (chunks != null) chunks.abort(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The chunk writer of {@code file}, or null if chunking is off.
+     */
+    @Nullable
+    private static ChunkWriter newChunkWriter(File file, int chunkSize, @Nullable ChunkListenerFactory chunkListeners) {
+        if (chunkSize <= 0) return null;
+        return new ChunkWriter(file, chunkSize, chunkListeners != null ? chunkListeners.create(file) : null);
+    }
+
+
+    /**
+     * Corrects the orientation of an image based on EXIF data, applying both rotation and
+     * mirroring.
+     *
      * @param context   The application context.
-     * @param bitmap    The original Bitmap.
+     * @param bitmap    The original Bitmap, decoded from {@code imageUri}.
      * @param imageUri  The Uri of the image file.
-     * @return The corrected Bitmap.
+     * @return The corrected Bitmap, or {@code bitmap} itself if it is already upright.
      * @throws IOException If reading EXIF data fails.
      */
     public static Bitmap correctImageOrientation(Context context, Bitmap bitmap, Uri imageUri) throws IOException {
-        // Dummy implementation: Replace with actual orientation correction logic.
-        return bitmap;
+        int orientation = ImageOrientation.read(context.getContentResolver(), imageUri);
+        if (!ImageOrientation.isTransformed(orientation)) return bitmap;
+
+        Matrix matrix = new Matrix();
+        ImageOrientation.setOrientation(matrix, orientation);
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+
+    /**
+     * Decodes an image file upright, subsampled so that it still covers {@code reqWidth} x
+     * {@code reqHeight}, or at full size if they are 0. A rotated or mirrored image is turned
+     * upright in the same draw that scales the sampled bitmap the rest of the way down, like
+     * {@link #saveCompressedImage}, so no bitmap at the sampled size is allocated twice.
+     */
+    @Nullable
+    private static Bitmap decodeUpright(String filePath, int reqWidth, int reqHeight) {
+        // The requested size applies to the upright image, sample the stored one accordingly
+        int orientation = ImageOrientation.read(filePath);
+        boolean sideways = ImageOrientation.isSideways(orientation);
+        Bitmap sampled = BitmapDecoder.decodeSampledFile(filePath,
+                sideways ? reqHeight : reqWidth, sideways ? reqWidth : reqHeight, Bitmap.Config.ARGB_8888);
+        if (sampled == null || !ImageOrientation.isTransformed(orientation)) return sampled;
+
+        int uprightWidth = sideways ? sampled.getHeight() : sampled.getWidth();
+        int uprightHeight = sideways ? sampled.getWidth() : sampled.getHeight();
+        // Sample sizes are powers of two, the smallest scale that still covers the request is the rest
+        double scale = reqWidth > 0 && reqHeight > 0
+                ? Math.min(1, Math.max((double) reqWidth / uprightWidth, (double) reqHeight / uprightHeight))
+                : 1;
+        BitmapPool pool = BitmapPool.getInstance();
+        Bitmap upright = pool.createTransformedBitmap(sampled,
+                Math.max(1, (int) Math.round(uprightWidth * scale)),
+                Math.max(1, (int) Math.round(uprightHeight * scale)), orientation);
+        pool.release(sampled);
+        return upright;
     }
 }
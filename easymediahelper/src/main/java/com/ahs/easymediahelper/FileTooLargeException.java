@@ -0,0 +1,22 @@
+package com.ahs.easymediahelper;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a copy is aborted because the source turned out to be larger than the allowed size.
+ */
+public class FileTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long maxBytes;
+
+    public FileTooLargeException(long maxBytes) {
+        super("File size exceeds the limit of " + maxBytes + " bytes");
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,31 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes bitmaps into an image file format. Built-in implementations are available in
+ * {@link ImageEncoders}; {@link TargetSizeEncoder} wraps any lossy encoder to hit a byte budget.
+ */
+public interface ImageEncoder {
+
+    /**
+     * Encodes {@code bitmap} into {@code out}.
+     *
+     * @param quality A hint from 0 to 100. Ignored by lossless formats.
+     * @return True if the bitmap was encoded successfully.
+     */
+    boolean encode(Bitmap bitmap, int quality, OutputStream out) throws IOException;
+
+    /**
+     * @return The file extension including the dot, e.g. ".jpg".
+     */
+    String getExtension();
+
+    /**
+     * @return The MIME type of the encoded data, e.g. "image/jpeg".
+     */
+    String getMimeType();
+}
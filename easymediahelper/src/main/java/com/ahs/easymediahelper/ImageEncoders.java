@@ -0,0 +1,117 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.io.OutputStream;
+
+/**
+ * The {@link ImageEncoder}s backed by {@link Bitmap#compress}.
+ */
+public final class ImageEncoders {
+
+    // Passed instead of a fixed quality to use the one the caller asks for
+    private static final int CALLER_QUALITY = -1;
+
+    /**
+     * Lossy JPEG. Fast and widely supported, no transparency.
+     */
+    public static final ImageEncoder JPEG =
+            new CompressFormatEncoder(Bitmap.CompressFormat.JPEG, CALLER_QUALITY, ".jpg", "image/jpeg");
+
+    /**
+     * Lossless PNG. Slow to encode and large, the quality is ignored.
+     */
+    public static final ImageEncoder PNG =
+            new CompressFormatEncoder(Bitmap.CompressFormat.PNG, CALLER_QUALITY, ".png", "image/png");
+
+    /**
+     * Lossy WebP. Typically 25-35% smaller than JPEG at the same visual quality and keeps transparency.
+     */
+    public static final ImageEncoder WEBP_LOSSY =
+            new CompressFormatEncoder(webpFormat(false), CALLER_QUALITY, ".webp", "image/webp");
+
+    /**
+     * Lossless WebP. Much smaller and faster than PNG for screenshots and UI captures.
+     * The quality sets the compression effort instead: around 75 is a good trade-off, 100 takes
+     * several times longer for files only a few percent smaller.
+     * Before Android 11 this falls back to WebP at quality 100.
+     */
+    public static final ImageEncoder WEBP_LOSSLESS =
+            new CompressFormatEncoder(webpFormat(true), webpLosslessQuality(), ".webp", "image/webp");
+
+    private ImageEncoders() {
+    }
+
+    /**
+     * Returns the name of a built-in encoder, so settings can be persisted, or null for any
+     * other encoder.
+     */
+    static String nameOf(ImageEncoder encoder) {
+        if (encoder == JPEG) return "JPEG";
+        if (encoder == PNG) return "PNG";
+        if (encoder == WEBP_LOSSY) return "WEBP_LOSSY";
+        if (encoder == WEBP_LOSSLESS) return "WEBP_LOSSLESS";
+        return null;
+    }
+
+    /**
+     * Returns the built-in encoder called {@code name} by {@link #nameOf(ImageEncoder)}.
+     */
+    static ImageEncoder forName(String name) {
+        switch (String.valueOf(name)) {
+            case "JPEG":
+                return JPEG;
+            case "PNG":
+                return PNG;
+            case "WEBP_LOSSY":
+                return WEBP_LOSSY;
+            case "WEBP_LOSSLESS":
+                return WEBP_LOSSLESS;
+            default:
+                throw new IllegalArgumentException("Unknown encoder: " + name);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat(boolean lossless) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return lossless ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        return Bitmap.CompressFormat.WEBP;
+    }
+
+    // Lossless WebP reads the quality as effort, the lossy fallback needs it to stay close to lossless
+    private static int webpLosslessQuality() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? CALLER_QUALITY : 100;
+    }
+
+    private static final class CompressFormatEncoder implements ImageEncoder {
+        private final Bitmap.CompressFormat format;
+        private final int fixedQuality;
+        private final String extension;
+        private final String mimeType;
+
+        CompressFormatEncoder(Bitmap.CompressFormat format, int fixedQuality, String extension, String mimeType) {
+            this.format = format;
+            this.fixedQuality = fixedQuality;
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+
+        @Override
+        public boolean encode(Bitmap bitmap, int quality, OutputStream out) {
+            return bitmap.compress(format, fixedQuality != CALLER_QUALITY ? fixedQuality : quality, out);
+        }
+
+        @Override
+        public String getExtension() {
+            return extension;
+        }
+
+        @Override
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.ahs.easymediahelper;
+
+import android.content.ContentResolver;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.net.Uri;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads EXIF orientations and turns them into the transform that displays an image upright,
+ * so rotation and mirroring can be applied in the same drawing pass as scaling.
+ */
+final class ImageOrientation {
+
+    private ImageOrientation() {
+    }
+
+    /**
+     * @return The EXIF orientation of the image at {@code uri}, or
+     * {@link ExifInterface#ORIENTATION_NORMAL} if it has none or cannot be read.
+     */
+    static int read(ContentResolver resolver, Uri uri) {
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            if (inputStream == null) return ExifInterface.ORIENTATION_NORMAL;
+            return normalize(new ExifInterface(inputStream)
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL));
+        } catch (IOException | RuntimeException e) {
+            // Formats without EXIF support end up here
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * @see #read(ContentResolver, Uri)
+     */
+    static int read(String filePath) {
+        try {
+            return normalize(new ExifInterface(filePath)
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL));
+        } catch (IOException | RuntimeException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * @return Whether the orientation needs any transform at all.
+     */
+    static boolean isTransformed(int orientation) {
+        return orientation != ExifInterface.ORIENTATION_NORMAL;
+    }
+
+    /**
+     * @return Whether the upright image is the stored image turned on its side, i.e. its width
+     * and height are swapped.
+     */
+    static boolean isSideways(int orientation) {
+        return orientation >= ExifInterface.ORIENTATION_TRANSPOSE && orientation <= ExifInterface.ORIENTATION_ROTATE_270;
+    }
+
+    /**
+     * @return The clockwise rotation in degrees encoded in {@code orientation}, with the same
+     * convention as {@link ExifInterface#getRotationDegrees()}: mirrored orientations count as a
+     * horizontal flip followed by this rotation.
+     */
+    static int rotationDegrees(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Sets {@code matrix} to the rotation and mirroring of {@code orientation}, around the origin.
+     */
+    static void setOrientation(Matrix matrix, int orientation) {
+        matrix.reset();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Maps a region of the upright image back to the image as stored, e.g. to decode only the
+     * part of a rotated image that a crop keeps.
+     */
+    static Rect toStoredRegion(Rect upright, int storedWidth, int storedHeight, int orientation) {
+        int[] stored = toStoredRegion(upright.left, upright.top, upright.right, upright.bottom,
+                storedWidth, storedHeight, orientation);
+        return new Rect(stored[0], stored[1], stored[2], stored[3]);
+    }
+
+    /**
+     * @return The bounds {@code {left, top, right, bottom}} in the stored image of the upright
+     * region with the given bounds; the inverse of {@link #setOrientation} moved into view.
+     */
+    static int[] toStoredRegion(int left, int top, int right, int bottom, int storedWidth, int storedHeight,
+                                int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                return new int[]{storedWidth - right, top, storedWidth - left, bottom};
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return new int[]{storedWidth - right, storedHeight - bottom, storedWidth - left, storedHeight - top};
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                return new int[]{left, storedHeight - bottom, right, storedHeight - top};
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                return new int[]{top, left, bottom, right};
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return new int[]{top, storedHeight - right, bottom, storedHeight - left};
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                return new int[]{storedWidth - bottom, storedHeight - right, storedWidth - top, storedHeight - left};
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return new int[]{storedWidth - bottom, left, storedWidth - top, right};
+            default:
+                return new int[]{left, top, right, bottom};
+        }
+    }
+
+    private static int normalize(int orientation) {
+        return orientation >= ExifInterface.ORIENTATION_NORMAL && orientation <= ExifInterface.ORIENTATION_ROTATE_270
+                ? orientation : ExifInterface.ORIENTATION_NORMAL;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ahs.easymediahelper;
+
+/**
+ * Receives progress updates while a file is being copied.
+ * Updates are throttled, so a listener is called at most a few times per second.
+ */
+public interface ImportProgressListener {
+
+    /**
+     * @param bytesCopied The number of bytes copied so far.
+     * @param totalBytes  The expected size of the file, or -1 if the provider did not report it.
+     */
+    void onProgress(long bytesCopied, long totalBytes);
+}
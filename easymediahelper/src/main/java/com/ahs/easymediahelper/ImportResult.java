@@ -0,0 +1,63 @@
+package com.ahs.easymediahelper;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+/**
+ * The outcome of importing a single item of a batch.
+ */
+public class ImportResult {
+
+    private final Uri uri;
+    private final String path;
+    private final long bytes;
+    private final long durationMs;
+    private final Exception error;
+
+    ImportResult(Uri uri, @Nullable String path, long bytes, long durationMs, @Nullable Exception error) {
+        this.uri = uri;
+        this.path = path;
+        this.bytes = bytes;
+        this.durationMs = durationMs;
+        this.error = error;
+    }
+
+    /**
+     * @return The source Uri picked by the user.
+     */
+    public Uri getUri() {
+        return uri;
+    }
+
+    /**
+     * @return The absolute path of the imported file, or null if the import failed.
+     */
+    @Nullable
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The size of the imported file in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * @return The cause of the failure, or null if the import succeeded or was rejected without an exception.
+     */
+    @Nullable
+    public Exception getError() {
+        return error;
+    }
+
+    public boolean isSuccessful() {
+        return path != null && !path.isEmpty();
+    }
+}
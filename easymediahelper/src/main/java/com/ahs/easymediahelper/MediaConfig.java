@@ -0,0 +1,135 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a helper's settings, taken when a capture or import is started so that
+ * changing a setter, or another helper's settings, has no effect on it while it runs. Converts
+ * to and from string parameters so that it can be persisted with a job or in saved state.
+ */
+final class MediaConfig {
+
+    /** The settings of a new helper, also used for parameters missing from older jobs. */
+    static final MediaConfig DEFAULTS = new MediaConfig(EasyMediaHelper.DEFAULT_FOLDER_NAME, 800, 600, 80,
+            Bitmap.Config.ARGB_8888, ImageEncoders.JPEG, ResizeMode.FILL, true, OutputTarget.APP_STORAGE,
+            true, false, 10, null, 0, null);
+
+    final String folderName;
+    final int width;
+    final int height;
+    final int quality;
+    final Bitmap.Config config;
+    final ImageEncoder encoder;
+    final ResizeMode resizeMode;
+    final boolean upscale;
+    final OutputTarget outputTarget;
+    final boolean deduplicate;
+    final boolean compressSelectedImages;
+    final int maxFileSizeMB;
+    @Nullable
+    final VideoTranscoder transcoder;
+    /** The size of upload chunks, or 0 if files are not split. */
+    final int chunkSize;
+    @Nullable
+    final ChunkListenerFactory chunkListeners;
+
+    MediaConfig(String folderName, int width, int height, int quality, Bitmap.Config config, ImageEncoder encoder,
+                ResizeMode resizeMode, boolean upscale, OutputTarget outputTarget, boolean deduplicate,
+                boolean compressSelectedImages, int maxFileSizeMB, @Nullable VideoTranscoder transcoder,
+                int chunkSize, @Nullable ChunkListenerFactory chunkListeners) {
+        this.folderName = folderName;
+        this.width = width;
+        this.height = height;
+        this.quality = quality;
+        this.config = config;
+        this.encoder = encoder;
+        this.resizeMode = resizeMode;
+        this.upscale = upscale;
+        this.outputTarget = outputTarget;
+        this.deduplicate = deduplicate;
+        this.compressSelectedImages = compressSelectedImages;
+        this.maxFileSizeMB = maxFileSizeMB;
+        this.transcoder = transcoder;
+        this.chunkSize = chunkSize;
+        this.chunkListeners = chunkListeners;
+    }
+
+    long maxFileSizeBytes() {
+        return maxFileSizeMB * 1024L * 1024L;
+    }
+
+    /**
+     * Writes the settings into {@code params}. Chunk listeners only live in this process and
+     * are never written.
+     *
+     * @return False if the encoder is a custom one that cannot be written; everything else is.
+     */
+    boolean writeTo(Map<String, String> params) {
+        params.put("folderName", folderName);
+        params.put("width", String.valueOf(width));
+        params.put("height", String.valueOf(height));
+        params.put("quality", String.valueOf(quality));
+        params.put("config", config.name());
+        params.put("resizeMode", resizeMode.name());
+        params.put("upscale", String.valueOf(upscale));
+        params.put("outputTarget", outputTarget.name());
+        params.put("deduplicate", String.valueOf(deduplicate));
+        params.put("compressSelectedImages", String.valueOf(compressSelectedImages));
+        params.put("maxFileSizeMB", String.valueOf(maxFileSizeMB));
+        params.put("chunkSize", String.valueOf(chunkSize));
+        if (transcoder != null) {
+            params.put("maxDimension", String.valueOf(transcoder.getMaxDimension()));
+            params.put("videoBitrate", String.valueOf(transcoder.getVideoBitrate()));
+        }
+        String encoderName = ImageEncoders.nameOf(encoder);
+        if (encoderName == null) return false;
+        params.put("encoder", encoderName);
+        return true;
+    }
+
+    /**
+     * Reads settings written by {@link #writeTo(Map)}, taking those that are missing from
+     * {@code defaults}. There is only a transcoder if one was written, and never chunk listeners.
+     */
+    static MediaConfig readFrom(Map<String, String> params, MediaConfig defaults) {
+        String encoder = params.get("encoder");
+        String config = params.get("config");
+        String resizeMode = params.get("resizeMode");
+        String outputTarget = params.get("outputTarget");
+        String videoBitrate = params.get("videoBitrate");
+        String folderName = params.get("folderName");
+        return new MediaConfig(
+                folderName != null ? folderName : defaults.folderName,
+                readInt(params, "width", defaults.width),
+                readInt(params, "height", defaults.height),
+                readInt(params, "quality", defaults.quality),
+                config != null ? Bitmap.Config.valueOf(config) : defaults.config,
+                encoder != null ? ImageEncoders.forName(encoder) : defaults.encoder,
+                resizeMode != null ? ResizeMode.valueOf(resizeMode) : defaults.resizeMode,
+                readBoolean(params, "upscale", defaults.upscale),
+                outputTarget != null ? OutputTarget.valueOf(outputTarget) : defaults.outputTarget,
+                readBoolean(params, "deduplicate", defaults.deduplicate),
+                readBoolean(params, "compressSelectedImages", defaults.compressSelectedImages),
+                readInt(params, "maxFileSizeMB", defaults.maxFileSizeMB),
+                videoBitrate != null
+                        ? new VideoTranscoder(readInt(params, "maxDimension", VideoTranscoder.DEFAULT_MAX_DIMENSION),
+                        Integer.parseInt(videoBitrate))
+                        : null,
+                readInt(params, "chunkSize", defaults.chunkSize),
+                null);
+    }
+
+    private static int readInt(Map<String, String> params, String key, int defaultValue) {
+        String value = params.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static boolean readBoolean(Map<String, String> params, String key, boolean defaultValue) {
+        String value = params.get(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
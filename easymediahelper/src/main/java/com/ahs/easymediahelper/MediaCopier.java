@@ -0,0 +1,383 @@
+package com.ahs.easymediahelper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy engine shared by every import path. Seekable file sources are copied with
+ * {@link FileChannel#transferTo} so the kernel moves the bytes without touching the Java heap;
+ * pipes and other streams go through a small pool of reusable direct buffers.
+ * <p>
+ * Every copy can be observed and bounded through a {@link Progress}: it reports throttled
+ * progress, aborts with {@link FileTooLargeException} as soon as more than the allowed number
+ * of bytes has been read and stops with {@link InterruptedIOException} when the copying thread
+ * is interrupted.
+ * <p>
+ * Copies into a {@link PartialFile} are crash-safe: the target only appears once it is complete
+ * and synced, and a resumable copy from a seekable source continues from its last checkpoint
+ * after process death. They can also be split into upload chunks by a {@link ChunkWriter} as
+ * they are written.
+ * <p>
+ * This class only depends on {@code java.nio} so it can be exercised on the JVM.
+ */
+final class MediaCopier {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 4;
+    // Upper bound per transferTo call, some kernels refuse larger transfers
+    private static final long MAX_TRANSFER_SIZE = 8L * 1024 * 1024;
+
+    private static final BlockingQueue<ByteBuffer> BUFFER_POOL = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    private MediaCopier() {
+    }
+
+    /**
+     * Copies everything readable from {@code source} into {@code target}.
+     *
+     * @return The number of bytes copied.
+     */
+    static long copy(InputStream source, FileChannel target) throws IOException {
+        return copy(source, target, null);
+    }
+
+    /**
+     * Copies everything readable from {@code source} into {@code target}, reporting to
+     * {@code progress} if it is not null.
+     *
+     * @return The number of bytes copied.
+     */
+    static long copy(InputStream source, FileChannel target, Progress progress) throws IOException {
+        long copied;
+        try {
+            if (source instanceof FileInputStream) {
+                FileChannel channel = ((FileInputStream) source).getChannel();
+                // Hashing needs the bytes in user space, so a digest or chunks disable the transferTo path
+                boolean zeroCopy = isSeekable(channel)
+                        && (progress == null || (progress.digest == null && progress.chunks == null));
+                copied = zeroCopy ? transfer(channel, target, progress) : copy(channel, target, progress);
+            } else {
+                copied = copy(Channels.newChannel(source), target, progress);
+            }
+        } catch (ClosedByInterruptException e) {
+            // Interruptible channels close themselves on interrupt, report it like any other cancellation
+            InterruptedIOException cancelled = new InterruptedIOException("Copy cancelled");
+            cancelled.initCause(e);
+            throw cancelled;
+        }
+        if (progress != null) {
+            progress.finish();
+        }
+        return copied;
+    }
+
+    /**
+     * Copies everything readable from {@code source} into {@code partial} and moves the result to
+     * {@code target} once it is synced. If {@code partial} is resumable and {@code source} is a
+     * seekable file, a previous copy that was cut short is continued from its last checkpoint;
+     * when the copy fails or is cancelled the synced part is kept for the next attempt.
+     * Otherwise the partial file is discarded on failure. With {@link Progress#withChunks chunks},
+     * the manifest is written before {@code target} appears and the listener is told about the
+     * outcome either way.
+     *
+     * @return The size of {@code target}, including bytes copied by an earlier attempt.
+     */
+    static long copy(InputStream source, PartialFile partial, File target, Progress progress) throws IOException {
+        if (progress == null) {
+            progress = new Progress(-1, -1, null, 0);
+        }
+        FileChannel seekable = null;
+        if (source instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) source).getChannel();
+            seekable = isSeekable(channel) ? channel : null;
+        }
+        boolean resume = seekable != null && partial.isResumable();
+        long offset = partial.open(resume);
+        try {
+            if (offset > 0 && offset > seekable.size()) {
+                offset = partial.open(false);
+            }
+            if (offset > 0) {
+                seekable.position(offset);
+                if (progress.digest != null || progress.chunks != null) {
+                    replayPrefix(partial.channel(), offset, progress);
+                }
+                progress.resumeAt(offset);
+            }
+            if (resume) {
+                progress.checkpointTo(partial);
+            }
+            long copied = copy(source, partial.channel(), progress);
+            UploadManifest manifest = progress.chunks != null ? progress.chunks.finish() : null;
+            partial.commit(target);
+            if (manifest != null) {
+                progress.chunks.complete(manifest);
+            }
+            return offset + copied;
+        } catch (FileTooLargeException e) {
+            // Resuming would hit the same limit again
+            partial.abort();
+            abortChunks(progress, e);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            if (resume) {
+                partial.suspend();
+            } else {
+                partial.abort();
+            }
+            abortChunks(progress, e);
+            throw e;
+        }
+    }
+
+    private static void abortChunks(Progress progress, Exception cause) {
+        if (progress.chunks != null) {
+            progress.chunks.abort(cause);
+        }
+    }
+
+    /**
+     * Feeds the first {@code length} bytes of {@code file} into the digest and chunks of
+     * {@code progress}, so a resumed copy still ends up with the hash and chunks of the whole
+     * content.
+     */
+    private static void replayPrefix(FileChannel file, long length, Progress progress) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            long position = 0;
+            while (position < length) {
+                buffer.limit((int) Math.min(buffer.capacity(), length - position));
+                int read = file.read(buffer, position);
+                if (read == -1) throw new IOException("Partial file is shorter than its checkpoint");
+                buffer.flip();
+                if (progress.digest != null) {
+                    progress.digest.update(buffer.duplicate());
+                }
+                if (progress.chunks != null) {
+                    progress.chunks.write(buffer);
+                }
+                buffer.clear();
+                position += read;
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Copies the rest of a seekable {@code source}, starting at its current position, with
+     * {@link FileChannel#transferTo}.
+     *
+     * @return The number of bytes copied.
+     */
+    static long transfer(FileChannel source, FileChannel target) throws IOException {
+        return transfer(source, target, null);
+    }
+
+    static long transfer(FileChannel source, FileChannel target, Progress progress) throws IOException {
+        long position = source.position();
+        long size = source.size();
+        long copied = 0;
+        while (position < size) {
+            long chunk = Math.min(MAX_TRANSFER_SIZE, size - position);
+            if (progress != null) {
+                chunk = progress.allowance(chunk);
+            }
+            long count = source.transferTo(position, chunk, target);
+            if (count <= 0) break;
+            position += count;
+            copied += count;
+            if (progress != null) {
+                progress.advance(count);
+            }
+        }
+        source.position(position);
+        // The file may have grown or reported a wrong size, copy whatever is left the slow way
+        return copied + copy((ReadableByteChannel) source, target, progress);
+    }
+
+    /**
+     * Copies a non-seekable {@code source} (pipe, socket, wrapped stream) through a pooled
+     * direct buffer.
+     *
+     * @return The number of bytes copied.
+     */
+    static long copy(ReadableByteChannel source, WritableByteChannel target) throws IOException {
+        return copy(source, target, null);
+    }
+
+    static long copy(ReadableByteChannel source, WritableByteChannel target, Progress progress) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            long copied = 0;
+            int read;
+            while (true) {
+                if (progress != null) {
+                    buffer.limit((int) progress.allowance(buffer.capacity()));
+                }
+                if ((read = source.read(buffer)) == -1) break;
+                if (read == 0) continue;
+                buffer.flip();
+                if (progress != null && progress.digest != null) {
+                    progress.digest.update(buffer.duplicate());
+                }
+                if (progress != null && progress.chunks != null) {
+                    progress.chunks.write(buffer.duplicate());
+                }
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+                copied += read;
+                if (progress != null) {
+                    progress.advance(read);
+                }
+            }
+            return copied;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * A channel supports {@code transferTo} efficiently only if it is backed by a regular file.
+     * Pipes report a size of 0 or fail when asked for their position.
+     */
+    static boolean isSeekable(FileChannel channel) {
+        try {
+            channel.position();
+            return channel.size() > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tracks a single copy: reports throttled progress, enforces the size limit and checks
+     * for cancellation between chunks.
+     */
+    static final class Progress {
+        static final long DEFAULT_INTERVAL_MS = 100;
+
+        private final long totalBytes;
+        private final long maxBytes;
+        private final ImportProgressListener listener;
+        private final long intervalNanos;
+        private MessageDigest digest;
+        private ChunkWriter chunks;
+        private PartialFile checkpointTarget;
+        private long nextCheckpoint;
+        private long copied;
+        private long lastReportNanos;
+
+        /**
+         * @param totalBytes The expected size, or -1 if unknown. Only used for reporting.
+         * @param maxBytes   The maximum number of bytes that may be copied, or -1 for no limit.
+         * @param listener   Receives progress updates, may be null.
+         * @param intervalMs The minimum time between two progress updates.
+         */
+        Progress(long totalBytes, long maxBytes, ImportProgressListener listener, long intervalMs) {
+            this.totalBytes = totalBytes;
+            this.maxBytes = maxBytes;
+            this.listener = listener;
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+            this.lastReportNanos = System.nanoTime();
+        }
+
+        long getBytesCopied() {
+            return copied;
+        }
+
+        /**
+         * Feeds every copied byte into {@code digest}, so the content hash is known when the copy
+         * completes without reading the file a second time.
+         */
+        Progress withDigest(MessageDigest digest) {
+            this.digest = digest;
+            return this;
+        }
+
+        /**
+         * Feeds every copied byte into {@code chunks}, so upload chunks and their manifest are
+         * produced while the file is written.
+         */
+        Progress withChunks(ChunkWriter chunks) {
+            this.chunks = chunks;
+            return this;
+        }
+
+        /**
+         * Counts {@code offset} bytes copied by an earlier attempt, so progress and the size
+         * limit cover the whole file.
+         */
+        void resumeAt(long offset) {
+            copied = offset;
+        }
+
+        /**
+         * Syncs {@code partial} and records a resume point every
+         * {@link PartialFile#CHECKPOINT_BYTES} bytes.
+         */
+        void checkpointTo(PartialFile partial) {
+            checkpointTarget = partial;
+            nextCheckpoint = copied + PartialFile.CHECKPOINT_BYTES;
+        }
+
+        /**
+         * Limits the next read so that at most one byte past {@code maxBytes} is ever read,
+         * which is enough to tell that the source is too large.
+         */
+        long allowance(long wanted) {
+            if (maxBytes < 0) return wanted;
+            return Math.max(1, Math.min(wanted, maxBytes - copied + 1));
+        }
+
+        void advance(long count) throws IOException {
+            copied += count;
+            if (maxBytes >= 0 && copied > maxBytes) {
+                throw new FileTooLargeException(maxBytes);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Copy cancelled after " + copied + " bytes");
+            }
+            if (checkpointTarget != null && copied >= nextCheckpoint) {
+                checkpointTarget.checkpoint(copied);
+                nextCheckpoint = copied + PartialFile.CHECKPOINT_BYTES;
+            }
+            long now = System.nanoTime();
+            if (listener != null && now - lastReportNanos >= intervalNanos) {
+                lastReportNanos = now;
+                listener.onProgress(copied, totalBytes);
+            }
+        }
+
+        void finish() {
+            if (listener != null) {
+                listener.onProgress(copied, totalBytes);
+            }
+        }
+    }
+
+    static ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = BUFFER_POOL.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    static void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        BUFFER_POOL.offer(buffer);
+    }
+}
@@ -0,0 +1,96 @@
+package com.ahs.easymediahelper;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the background threads used for decoding, encoding and copying media
+ * so that none of that work runs on the main thread.
+ */
+public final class MediaExecutor {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 32;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static ExecutorService defaultExecutor;
+
+    private MediaExecutor() {
+    }
+
+    /**
+     * Returns the shared executor used by every {@link EasyMediaHelper} that has not been
+     * given its own executor. It is created lazily with {@link #getDefaultPoolSize()} threads.
+     */
+    public static synchronized ExecutorService getDefault() {
+        if (defaultExecutor == null) {
+            defaultExecutor = create(getDefaultPoolSize(), DEFAULT_QUEUE_CAPACITY);
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Replaces the shared executor. The previous executor is shut down once its
+     * queued work has finished.
+     */
+    public static synchronized void setDefault(ExecutorService executor) {
+        if (defaultExecutor != null && defaultExecutor != executor) {
+            defaultExecutor.shutdown();
+        }
+        defaultExecutor = executor;
+    }
+
+    /**
+     * Creates a bounded executor. Work submitted while all threads are busy and the queue
+     * is full is rejected instead of being run on the caller's (usually the main) thread.
+     *
+     * @param threads       The maximum number of worker threads.
+     * @param queueCapacity The maximum number of tasks waiting for a thread.
+     */
+    public static ExecutorService create(int threads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new MediaThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Default pool size: media work is a mix of disk I/O and decoding, so two threads
+     * keep the disk busy without starving the UI of CPU on low-end devices.
+     */
+    public static int getDefaultPoolSize() {
+        return Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    static void runOnMainThread(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            MAIN_HANDLER.post(runnable);
+        }
+    }
+
+    private static final class MediaThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "EasyMediaHelper-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
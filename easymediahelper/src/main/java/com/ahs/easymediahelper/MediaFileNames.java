@@ -0,0 +1,39 @@
+package com.ahs.easymediahelper;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * File name helpers shared by the capture and import paths. Plain Java so they can be
+ * benchmarked and tested on the JVM.
+ */
+final class MediaFileNames {
+
+    private static final String TIMESTAMP_PATTERN = "yyyyMMdd_HHmmss";
+    private static final AtomicInteger BATCH_SEQUENCE = new AtomicInteger();
+
+    private MediaFileNames() {
+    }
+
+    static String generateFileName(String prefix, String extension) {
+        return prefix + new SimpleDateFormat(TIMESTAMP_PATTERN, Locale.getDefault()).format(new Date()) + extension;
+    }
+
+    /**
+     * @return A name no other batch started by this process shares, even within the same second.
+     */
+    static String newBatchId() {
+        return generateFileName("", "_" + BATCH_SEQUENCE.incrementAndGet());
+    }
+
+    static String sanitizeFileName(String fileName) {
+        return fileName.replaceAll("[^a-zA-Z0-9_.-]", "_");
+    }
+
+    static boolean hasExtension(String fileName) {
+        int dotIndex = fileName.lastIndexOf('.');
+        return dotIndex > 0 && dotIndex < fileName.length() - 1;
+    }
+}
@@ -0,0 +1,140 @@
+package com.ahs.easymediahelper;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Metadata of an image, video or other file, as returned by
+ * {@link EasyMediaHelper#probe}. Values that are unknown or do not apply to the
+ * kind of media are {@link #UNKNOWN}, or null for strings.
+ */
+public final class MediaInfo {
+
+    public static final int UNKNOWN = -1;
+
+    /** EXIF orientation value meaning the image is stored upright, see {@code ExifInterface.ORIENTATION_NORMAL}. */
+    public static final int ORIENTATION_NORMAL = 1;
+
+    private final Uri uri;
+    private final String displayName;
+    private final String mimeType;
+    private final long size;
+    private final long lastModified;
+    private final int width;
+    private final int height;
+    private final long durationMs;
+    private final int orientation;
+    private final int rotation;
+
+    MediaInfo(Uri uri, @Nullable String displayName, @Nullable String mimeType, long size, long lastModified,
+              int width, int height, long durationMs, int orientation, int rotation) {
+        this.uri = uri;
+        this.displayName = displayName;
+        this.mimeType = mimeType;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.width = width;
+        this.height = height;
+        this.durationMs = durationMs;
+        this.orientation = orientation;
+        this.rotation = rotation;
+    }
+
+    public Uri getUri() {
+        return uri;
+    }
+
+    @Nullable
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Nullable
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @return The size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The last modification time in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return The width in pixels as stored, before {@link #getRotation() rotation}.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height in pixels as stored, before {@link #getRotation() rotation}.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The width in pixels as displayed, i.e. with the rotation applied.
+     */
+    public int getDisplayWidth() {
+        return isRotatedSideways() ? height : width;
+    }
+
+    /**
+     * @return The height in pixels as displayed, i.e. with the rotation applied.
+     */
+    public int getDisplayHeight() {
+        return isRotatedSideways() ? width : height;
+    }
+
+    /**
+     * @return The duration of a video or audio file in milliseconds.
+     */
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * @return The EXIF orientation of an image, one of the {@code ExifInterface.ORIENTATION_*}
+     * values, which also tells whether it is mirrored.
+     */
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * @return The clockwise rotation in degrees (0, 90, 180 or 270) needed to display the media
+     * upright, from the EXIF orientation of an image or the rotation metadata of a video.
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    public boolean isImage() {
+        return mimeType != null && mimeType.startsWith("image/");
+    }
+
+    public boolean isVideo() {
+        return mimeType != null && mimeType.startsWith("video/");
+    }
+
+    private boolean isRotatedSideways() {
+        return rotation == 90 || rotation == 270;
+    }
+
+    @Override
+    public String toString() {
+        return "MediaInfo{" + uri + ", " + mimeType + ", " + size + " bytes, " + width + "x" + height
+                + ", " + durationMs + " ms, rotation " + rotation + "}";
+    }
+}
@@ -0,0 +1,103 @@
+package com.ahs.easymediahelper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable record of work queued on a {@link MediaJobQueue}. Everything a job needs to run
+ * is kept in its string parameters, so it can be persisted and picked up again after the
+ * process was killed.
+ */
+public final class MediaJob {
+
+    private final String id;
+    private final String type;
+    private final Map<String, String> params;
+    private final boolean requiresCharging;
+    private final boolean requiresIdle;
+    private final long createdAt;
+    private final int attempts;
+    private final long nextRunAt;
+
+    MediaJob(String id, String type, Map<String, String> params, boolean requiresCharging,
+             boolean requiresIdle, long createdAt, int attempts, long nextRunAt) {
+        this.id = id;
+        this.type = type;
+        this.params = Collections.unmodifiableMap(new HashMap<>(params));
+        this.requiresCharging = requiresCharging;
+        this.requiresIdle = requiresIdle;
+        this.createdAt = createdAt;
+        this.attempts = attempts;
+        this.nextRunAt = nextRunAt;
+    }
+
+    /**
+     * Creates a job that is due immediately.
+     *
+     * @param type             Selects the {@link MediaJobQueue.Worker} that runs the job.
+     * @param params           The job's input.
+     * @param requiresCharging Whether the job only runs while the device is charging.
+     * @param requiresIdle     Whether the job only runs while the device is not in use.
+     */
+    static MediaJob create(String type, Map<String, String> params, boolean requiresCharging,
+                           boolean requiresIdle, long now) {
+        return new MediaJob(UUID.randomUUID().toString(), type, params, requiresCharging, requiresIdle, now, 0, now);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    public String getParam(String key) {
+        return params.get(key);
+    }
+
+    public boolean requiresCharging() {
+        return requiresCharging;
+    }
+
+    public boolean requiresIdle() {
+        return requiresIdle;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * @return How many times the job has been started, including a run cut short by process death.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return The earliest time, in milliseconds since the epoch, the job may run.
+     */
+    public long getNextRunAt() {
+        return nextRunAt;
+    }
+
+    MediaJob withAttemptStarted() {
+        return new MediaJob(id, type, params, requiresCharging, requiresIdle, createdAt, attempts + 1, nextRunAt);
+    }
+
+    MediaJob withNextRunAt(long nextRunAt) {
+        return new MediaJob(id, type, params, requiresCharging, requiresIdle, createdAt, attempts, nextRunAt);
+    }
+
+    @Override
+    public String toString() {
+        return "MediaJob{" + type + " " + id + ", attempts=" + attempts + "}";
+    }
+}
@@ -0,0 +1,289 @@
+package com.ahs.easymediahelper;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A durable queue for media post-processing. Jobs are persisted before they run and only
+ * removed once they succeed or run out of attempts, so work started from a capture result
+ * survives the Activity being destroyed and is picked up again after process death the next
+ * time the queue is created. Failed jobs are retried with exponential backoff, and jobs can be
+ * held back until the device is charging or idle.
+ * <p>
+ * Jobs are run by the {@link Worker} registered for their type; a job whose worker is not
+ * registered yet stays queued. The clock, the device state and the wake-ups come from an
+ * {@link Environment}, so the queue can be driven on the JVM with a direct executor and a
+ * manual clock.
+ */
+public final class MediaJobQueue {
+
+    private static final String DIRECTORY = "easymediahelper_jobs";
+
+    static final int DEFAULT_MAX_ATTEMPTS = 5;
+    static final long INITIAL_BACKOFF_MS = TimeUnit.SECONDS.toMillis(10);
+    static final long MAX_BACKOFF_MS = TimeUnit.HOURS.toMillis(5);
+    // Jobs held back by a constraint are re-checked at least this often
+    static final long CONSTRAINT_POLL_MS = TimeUnit.MINUTES.toMillis(15);
+
+    private static MediaJobQueue instance;
+
+    /**
+     * Runs jobs of one type. Called on a background thread; a thrown exception schedules a
+     * retry until the job runs out of attempts.
+     */
+    public interface Worker {
+        /**
+         * @return The job's result, usually the path of the file it produced.
+         */
+        @Nullable
+        String run(MediaJob job) throws Exception;
+    }
+
+    /**
+     * Receives the outcome of jobs. Called on the thread that ran the job.
+     */
+    public interface Listener {
+        void onJobSucceeded(MediaJob job, @Nullable String result);
+
+        /**
+         * Called once a job failed for the last time and was removed from the queue.
+         */
+        void onJobFailed(MediaJob job, Exception error);
+    }
+
+    /**
+     * The queue's view of time and device state.
+     */
+    interface Environment {
+        long currentTimeMillis();
+
+        boolean isCharging();
+
+        boolean isIdle();
+
+        /**
+         * Runs {@code pump} once after {@code delayMillis}, replacing a previously scheduled run.
+         */
+        void schedule(Runnable pump, long delayMillis);
+
+        /**
+         * Runs {@code pump} whenever charging or idle state may have changed.
+         */
+        void watchConstraints(Runnable pump);
+    }
+
+    private final MediaJobStore store;
+    private final Executor executor;
+    private final Environment environment;
+    private final int maxConcurrentJobs;
+    private final Map<String, Worker> workers = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, MediaJob> pending = new LinkedHashMap<>();
+    private final Map<String, MediaJob> running = new HashMap<>();
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    MediaJobQueue(MediaJobStore store, Executor executor, Environment environment, int maxConcurrentJobs) {
+        this.store = store;
+        this.executor = executor;
+        this.environment = environment;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        for (MediaJob job : store.loadAll()) {
+            pending.put(job.getId(), job);
+        }
+        environment.watchConstraints(this::pump);
+    }
+
+    /**
+     * Returns the application's queue, restoring the jobs that were still queued when the
+     * process last ended.
+     */
+    public static synchronized MediaJobQueue getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            int threads = MediaExecutor.getDefaultPoolSize();
+            instance = new MediaJobQueue(new MediaJobStore(new File(appContext.getFilesDir(), DIRECTORY)),
+                    MediaExecutor.create(threads, threads), new AndroidJobEnvironment(appContext), threads);
+        }
+        return instance;
+    }
+
+    /**
+     * Registers the worker for {@code type} and starts the jobs of that type that are due.
+     */
+    public void registerWorker(String type, Worker worker) {
+        synchronized (this) {
+            workers.put(type, worker);
+        }
+        pump();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets how many times a job is started before it is given up, including the first run.
+     */
+    public synchronized void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Persists {@code job} and runs it as soon as its constraints allow.
+     */
+    void enqueue(MediaJob job) throws IOException {
+        store.save(job);
+        synchronized (this) {
+            pending.put(job.getId(), job);
+        }
+        pump();
+    }
+
+    /**
+     * Queues a job of {@code type}.
+     *
+     * @return The queued job, whose {@link MediaJob#getId() id} identifies it in {@link Listener} calls.
+     */
+    public MediaJob enqueue(String type, Map<String, String> params, boolean requiresCharging,
+                            boolean requiresIdle) throws IOException {
+        MediaJob job = MediaJob.create(type, params, requiresCharging, requiresIdle, environment.currentTimeMillis());
+        enqueue(job);
+        return job;
+    }
+
+    /**
+     * @return The number of jobs that are queued or running.
+     */
+    public synchronized int getJobCount() {
+        return pending.size() + running.size();
+    }
+
+    /**
+     * Starts every job that is due, has a worker and whose constraints are met, up to the
+     * concurrency limit, and schedules a wake-up for the next job that is not due yet.
+     */
+    void pump() {
+        List<MediaJob> started = new ArrayList<>();
+        List<MediaJob> abandoned = new ArrayList<>();
+        synchronized (this) {
+            long now = environment.currentTimeMillis();
+            long nextWakeUp = Long.MAX_VALUE;
+            List<MediaJob> candidates = new ArrayList<>(pending.values());
+            candidates.sort(Comparator.comparingLong(MediaJob::getNextRunAt));
+            for (MediaJob job : candidates) {
+                if (!workers.containsKey(job.getType())) continue;
+                if (job.getAttempts() >= maxAttempts) {
+                    // Every attempt so far ended with the process dying mid-run
+                    pending.remove(job.getId());
+                    store.delete(job.getId());
+                    abandoned.add(job);
+                    continue;
+                }
+                if (job.getNextRunAt() > now) {
+                    nextWakeUp = Math.min(nextWakeUp, job.getNextRunAt() - now);
+                    continue;
+                }
+                if ((job.requiresCharging() && !environment.isCharging())
+                        || (job.requiresIdle() && !environment.isIdle())) {
+                    nextWakeUp = Math.min(nextWakeUp, CONSTRAINT_POLL_MS);
+                    continue;
+                }
+                if (running.size() + started.size() >= maxConcurrentJobs) break;
+
+                // Count the attempt before running, so a job that keeps killing the process still gives up
+                MediaJob attempt = job.withAttemptStarted();
+                try {
+                    store.save(attempt);
+                } catch (IOException e) {
+                    // Not running a job that could not be recorded, it stays queued for the next pump
+                    nextWakeUp = Math.min(nextWakeUp, INITIAL_BACKOFF_MS);
+                    continue;
+                }
+                pending.remove(job.getId());
+                running.put(attempt.getId(), attempt);
+                started.add(attempt);
+            }
+            if (nextWakeUp != Long.MAX_VALUE) {
+                environment.schedule(this::pump, nextWakeUp);
+            }
+        }
+        for (MediaJob job : abandoned) {
+            for (Listener listener : listeners) {
+                listener.onJobFailed(job, new IOException("Gave up after " + job.getAttempts() + " attempts"));
+            }
+        }
+        for (MediaJob job : started) {
+            executor.execute(() -> run(job));
+        }
+    }
+
+    private void run(MediaJob job) {
+        Worker worker;
+        synchronized (this) {
+            worker = workers.get(job.getType());
+        }
+        String result = null;
+        Exception error = null;
+        try {
+            result = worker.run(job);
+        } catch (Exception e) {
+            error = e;
+        }
+        finish(job, result, error);
+        pump();
+    }
+
+    private void finish(MediaJob job, @Nullable String result, @Nullable Exception error) {
+        boolean givenUp = false;
+        synchronized (this) {
+            running.remove(job.getId());
+            if (error == null) {
+                store.delete(job.getId());
+            } else if (job.getAttempts() >= maxAttempts) {
+                store.delete(job.getId());
+                givenUp = true;
+            } else {
+                MediaJob retry = job.withNextRunAt(environment.currentTimeMillis() + backoffMillis(job.getAttempts()));
+                pending.put(retry.getId(), retry);
+                try {
+                    store.save(retry);
+                } catch (IOException e) {
+                    // The retry is still queued in memory, only a process death would lose the new run time
+                }
+            }
+        }
+        for (Listener listener : listeners) {
+            if (error == null) {
+                listener.onJobSucceeded(job, result);
+            } else if (givenUp) {
+                listener.onJobFailed(job, error);
+            }
+        }
+    }
+
+    /**
+     * @return The delay before the next attempt of a job that has failed {@code attempts} times:
+     * {@link #INITIAL_BACKOFF_MS} doubled for every further failure, at most {@link #MAX_BACKOFF_MS}.
+     */
+    static long backoffMillis(int attempts) {
+        int doublings = Math.max(0, Math.min(attempts - 1, 30));
+        return Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << doublings);
+    }
+}
@@ -0,0 +1,108 @@
+package com.ahs.easymediahelper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persists {@link MediaJob}s as one small properties file per job. Files are replaced
+ * atomically, so a job record is either the old or the new version after a crash, never a
+ * torn mix of both.
+ * <p>
+ * This class only depends on {@code java.io} so it can be exercised on the JVM.
+ */
+final class MediaJobStore {
+
+    private static final String SUFFIX = ".job";
+    private static final String PARAM_PREFIX = "param.";
+
+    private final File directory;
+
+    MediaJobStore(File directory) {
+        this.directory = directory;
+    }
+
+    void save(MediaJob job) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory: " + directory);
+        }
+        Properties properties = new Properties();
+        properties.setProperty("type", job.getType());
+        properties.setProperty("requiresCharging", String.valueOf(job.requiresCharging()));
+        properties.setProperty("requiresIdle", String.valueOf(job.requiresIdle()));
+        properties.setProperty("createdAt", String.valueOf(job.getCreatedAt()));
+        properties.setProperty("attempts", String.valueOf(job.getAttempts()));
+        properties.setProperty("nextRunAt", String.valueOf(job.getNextRunAt()));
+        for (Map.Entry<String, String> param : job.getParams().entrySet()) {
+            properties.setProperty(PARAM_PREFIX + param.getKey(), param.getValue());
+        }
+
+        File file = fileFor(job.getId());
+        PartialFile partial = PartialFile.create(file);
+        partial.open(false);
+        try {
+            OutputStream out = partial.outputStream();
+            properties.store(out, null);
+            out.flush();
+            partial.commit(file);
+        } catch (IOException | RuntimeException e) {
+            partial.abort();
+            throw e;
+        }
+    }
+
+    void delete(String id) {
+        fileFor(id).delete();
+    }
+
+    /**
+     * Returns every stored job. Records that cannot be read are deleted.
+     */
+    List<MediaJob> loadAll() {
+        List<MediaJob> jobs = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX) && !name.startsWith("."));
+        if (files == null) return jobs;
+
+        for (File file : files) {
+            String id = file.getName().substring(0, file.getName().length() - SUFFIX.length());
+            try (InputStream in = new FileInputStream(file)) {
+                Properties properties = new Properties();
+                properties.load(in);
+                jobs.add(read(id, properties));
+            } catch (IOException | RuntimeException e) {
+                file.delete();
+            }
+        }
+        return jobs;
+    }
+
+    private static MediaJob read(String id, Properties properties) {
+        String type = properties.getProperty("type");
+        if (type == null) {
+            throw new IllegalArgumentException("Job without type: " + id);
+        }
+        Map<String, String> params = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PARAM_PREFIX)) {
+                params.put(name.substring(PARAM_PREFIX.length()), properties.getProperty(name));
+            }
+        }
+        return new MediaJob(id, type, params,
+                Boolean.parseBoolean(properties.getProperty("requiresCharging")),
+                Boolean.parseBoolean(properties.getProperty("requiresIdle")),
+                Long.parseLong(properties.getProperty("createdAt")),
+                Integer.parseInt(properties.getProperty("attempts")),
+                Long.parseLong(properties.getProperty("nextRunAt")));
+    }
+
+    private File fileFor(String id) {
+        return new File(directory, id + SUFFIX);
+    }
+}
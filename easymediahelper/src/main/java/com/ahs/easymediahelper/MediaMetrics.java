@@ -0,0 +1,35 @@
+package com.ahs.easymediahelper;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Entry point of the library's instrumentation. Nothing is measured and nothing is allocated
+ * unless a {@link MediaMetricsListener} is registered.
+ */
+public final class MediaMetrics {
+
+    private static volatile MediaMetricsListener listener;
+
+    private MediaMetrics() {
+    }
+
+    /**
+     * Registers the listener that receives metrics of every operation, or null to stop measuring.
+     */
+    public static void setListener(@Nullable MediaMetricsListener metricsListener) {
+        listener = metricsListener;
+    }
+
+    @Nullable
+    public static MediaMetricsListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Starts measuring an operation. Returns a shared no-op trace when no listener is registered.
+     */
+    static MediaTrace begin(String operation) {
+        MediaMetricsListener current = listener;
+        return current == null ? MediaTrace.NONE : new MediaTrace(operation, current);
+    }
+}
@@ -0,0 +1,160 @@
+package com.ahs.easymediahelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link MediaMetricsListener} that keeps in-memory latency histograms per operation and
+ * stage, plus failure counts per exception type. Useful for debug screens or for periodically
+ * uploading a summary instead of every single event.
+ */
+public class MediaMetricsAggregator implements MediaMetricsListener {
+
+    static final String TOTAL = "total";
+
+    private final Map<String, Histogram> histograms = new TreeMap<>();
+    private final Map<String, Long> failures = new TreeMap<>();
+    private final Map<String, Long> bytes = new HashMap<>();
+    private final Map<String, Long> peakBitmapBytes = new HashMap<>();
+
+    @Override
+    public synchronized void onOperationComplete(MediaOperationMetrics metrics) {
+        String operation = metrics.getOperation();
+        histogram(operation + "." + TOTAL).record(metrics.getTotalNanos());
+        for (Map.Entry<String, Long> stage : metrics.getStageNanos().entrySet()) {
+            histogram(operation + "." + stage.getKey()).record(stage.getValue());
+        }
+        Long total = bytes.get(operation);
+        bytes.put(operation, (total != null ? total : 0) + metrics.getBytes());
+        Long peak = peakBitmapBytes.get(operation);
+        peakBitmapBytes.put(operation, Math.max(peak != null ? peak : 0, metrics.getPeakBitmapBytes()));
+        if (metrics.getFailure() != null) {
+            String key = operation + ":" + metrics.getFailure().getClass().getSimpleName();
+            Long count = failures.get(key);
+            failures.put(key, (count != null ? count : 0) + 1);
+        }
+    }
+
+    /**
+     * Returns the histogram of an operation's stage, e.g. ("saveCompressedImage", "decode"),
+     * or of the whole operation with stage "total". Returns null if nothing was recorded.
+     */
+    public synchronized Histogram getHistogram(String operation, String stage) {
+        Histogram histogram = histograms.get(operation + "." + stage);
+        return histogram != null ? histogram.copy() : null;
+    }
+
+    public synchronized long getTotalBytes(String operation) {
+        Long total = bytes.get(operation);
+        return total != null ? total : 0;
+    }
+
+    public synchronized long getPeakBitmapBytes(String operation) {
+        Long peak = peakBitmapBytes.get(operation);
+        return peak != null ? peak : 0;
+    }
+
+    /**
+     * @return Failure counts keyed by "operation:ExceptionType".
+     */
+    public synchronized Map<String, Long> getFailureCounts() {
+        return new TreeMap<>(failures);
+    }
+
+    public synchronized void reset() {
+        histograms.clear();
+        failures.clear();
+        bytes.clear();
+        peakBitmapBytes.clear();
+    }
+
+    /**
+     * @return One line per operation stage with count and p50/p90/p99/max in milliseconds.
+     */
+    public synchronized String summary() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            lines.add(String.format(Locale.US, "%s n=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                    entry.getKey(), histogram.getCount(),
+                    histogram.getPercentileNanos(50) / 1e6, histogram.getPercentileNanos(90) / 1e6,
+                    histogram.getPercentileNanos(99) / 1e6, histogram.getMaxNanos() / 1e6));
+        }
+        for (Map.Entry<String, Long> entry : failures.entrySet()) {
+            lines.add(entry.getKey() + " failures=" + entry.getValue());
+        }
+        return String.join("\n", lines);
+    }
+
+    private Histogram histogram(String key) {
+        Histogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = new Histogram();
+            histograms.put(key, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Latency histogram with power-of-two buckets from 1us to about 1h. Percentiles are
+     * approximated by the upper bound of the bucket they fall into.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 32;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long sumNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            long micros = Math.max(1, nanos / 1000);
+            int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+            counts[bucket]++;
+            count++;
+            sumNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(counts, 0, copy.counts, 0, BUCKETS);
+            copy.count = count;
+            copy.sumNanos = sumNanos;
+            copy.maxNanos = maxNanos;
+            return copy;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return count > 0 ? sumNanos / count : 0;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @param percentile A value from 0 to 100.
+         */
+        public long getPercentileNanos(double percentile) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(maxNanos, (2L << i) * 1000);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.ahs.easymediahelper;
+
+/**
+ * Receives timings and sizes of every media operation performed by the library, e.g. to feed
+ * them into an app's own telemetry. Register it with {@link MediaMetrics#setListener}.
+ * <p>
+ * The listener is called on the thread that performed the operation, usually a background
+ * thread, and should return quickly.
+ */
+public interface MediaMetricsListener {
+
+    void onOperationComplete(MediaOperationMetrics metrics);
+}
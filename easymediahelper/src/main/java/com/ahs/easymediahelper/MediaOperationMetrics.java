@@ -0,0 +1,95 @@
+package com.ahs.easymediahelper;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Timings and sizes of a single media operation such as {@link #OPERATION_SAVE_COMPRESSED_IMAGE}.
+ */
+public class MediaOperationMetrics {
+
+    public static final String OPERATION_SAVE_COMPRESSED_IMAGE = "saveCompressedImage";
+    public static final String OPERATION_SAVE_MEDIA = "saveMedia";
+    public static final String OPERATION_SAVE_FILE_FROM_URI = "saveFileFromUri";
+    public static final String OPERATION_TRANSCODE_VIDEO = "transcodeVideo";
+    public static final String OPERATION_SAVE_RENDITIONS = "saveRenditions";
+    public static final String OPERATION_RENDER_PDF_PAGE = "renderPdfPage";
+    public static final String OPERATION_EXTRACT_VIDEO_FRAMES = "extractVideoFrames";
+
+    public static final String STAGE_OPEN = "open";
+    public static final String STAGE_DECODE = "decode";
+    public static final String STAGE_SCALE = "scale";
+    public static final String STAGE_ENCODE = "encode";
+    public static final String STAGE_COPY = "copy";
+    public static final String STAGE_TRANSCODE = "transcode";
+
+    private final String operation;
+    private final Map<String, Long> stageNanos;
+    private final long totalNanos;
+    private final long bytes;
+    private final long peakBitmapBytes;
+    private final Throwable failure;
+
+    MediaOperationMetrics(String operation, Map<String, Long> stageNanos, long totalNanos, long bytes,
+                          long peakBitmapBytes, @Nullable Throwable failure) {
+        this.operation = operation;
+        this.stageNanos = Collections.unmodifiableMap(stageNanos);
+        this.totalNanos = totalNanos;
+        this.bytes = bytes;
+        this.peakBitmapBytes = peakBitmapBytes;
+        this.failure = failure;
+    }
+
+    /**
+     * @return The name of the operation, one of the {@code OPERATION_*} constants.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return The duration of each stage in nanoseconds, in execution order, keyed by the
+     * {@code STAGE_*} constants. The encode stage includes writing the encoded bytes to disk.
+     */
+    public Map<String, Long> getStageNanos() {
+        return stageNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The largest bitmap allocation held during the operation, 0 for copies.
+     */
+    public long getPeakBitmapBytes() {
+        return peakBitmapBytes;
+    }
+
+    /**
+     * @return The cause of the failure, or null if the operation succeeded.
+     */
+    @Nullable
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + (isSuccessful() ? "ok" : "failed: " + failure) + " total=" + totalNanos / 1000 + "us"
+                + " stages=" + stageNanos + " bytes=" + bytes + " peakBitmapBytes=" + peakBitmapBytes;
+    }
+}
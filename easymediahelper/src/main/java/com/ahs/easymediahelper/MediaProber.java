@@ -0,0 +1,185 @@
+package com.ahs.easymediahelper;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import android.util.LruCache;
+import android.webkit.MimeTypeMap;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads {@link MediaInfo} without decoding pixels: a provider query restricted to the columns
+ * that are needed, a bounds-only decode for images, the EXIF header for their orientation and
+ * {@link MediaMetadataRetriever} for videos. Results are memoized per Uri and reused while the
+ * size and modification time are unchanged: for local files from the file itself, for content
+ * Uris from the provider query, which is much cheaper than reading the media again.
+ */
+final class MediaProber {
+
+    private static final int MAX_ENTRIES = 256;
+    /** How long a result is reused when the provider reports no modification time to compare. */
+    static final long UNVERIFIED_MAX_AGE_MS = 10_000;
+
+    /** The only provider columns the library reads. */
+    static final String[] PROJECTION = {
+            OpenableColumns.DISPLAY_NAME,
+            OpenableColumns.SIZE,
+            DocumentsContract.Document.COLUMN_LAST_MODIFIED,
+    };
+    private static final String[] OPENABLE_PROJECTION = {
+            OpenableColumns.DISPLAY_NAME,
+            OpenableColumns.SIZE,
+    };
+
+    private static final LruCache<String, Entry> CACHE = new LruCache<>(MAX_ENTRIES);
+
+    private MediaProber() {
+    }
+
+    static MediaInfo probe(Context context, Uri uri) throws IOException {
+        File file = "file".equals(uri.getScheme()) && uri.getPath() != null ? new File(uri.getPath()) : null;
+        String key = uri.toString();
+        Entry cached = CACHE.get(key);
+        long now = SystemClock.elapsedRealtime();
+        MediaInfo info;
+        if (file != null) {
+            if (cached != null && cached.isFresh(file.length(), file.lastModified(), now)) return cached.info;
+            info = probeFile(context, uri, file);
+        } else {
+            ContentResolver resolver = context.getContentResolver();
+            String displayName = null;
+            long size = MediaInfo.UNKNOWN;
+            long lastModified = MediaInfo.UNKNOWN;
+            try (Cursor cursor = query(resolver, uri)) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    displayName = getString(cursor, OpenableColumns.DISPLAY_NAME);
+                    size = getLong(cursor, OpenableColumns.SIZE);
+                    lastModified = getLong(cursor, DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                }
+            } catch (SecurityException e) {
+                throw new IOException("No access to " + uri, e);
+            }
+            if (cached != null && cached.isFresh(size, lastModified, now)) return cached.info;
+            info = probeMedia(context, uri, displayName, resolver.getType(uri), size, lastModified);
+        }
+        CACHE.put(key, new Entry(info, now));
+        return info;
+    }
+
+    static void invalidate(Uri uri) {
+        CACHE.remove(uri.toString());
+    }
+
+    /**
+     * Queries {@link #PROJECTION}. Providers that reject the last-modified column, such as
+     * those backed by a fixed SQL schema, are queried for the openable columns only.
+     */
+    @Nullable
+    static Cursor query(ContentResolver resolver, Uri uri) {
+        try {
+            return resolver.query(uri, PROJECTION, null, null, null);
+        } catch (IllegalArgumentException | UnsupportedOperationException | android.database.SQLException e) {
+            return resolver.query(uri, OPENABLE_PROJECTION, null, null, null);
+        }
+    }
+
+    private static MediaInfo probeFile(Context context, Uri uri, File file) throws IOException {
+        if (!file.exists()) {
+            throw new IOException("File not found: " + file);
+        }
+        String extension = MimeTypeMap.getFileExtensionFromUrl(Uri.fromFile(file).toString());
+        String mimeType = extension != null ? MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension) : null;
+        return probeMedia(context, uri, file.getName(), mimeType, file.length(), file.lastModified());
+    }
+
+    private static MediaInfo probeMedia(Context context, Uri uri, @Nullable String displayName,
+                                        @Nullable String mimeType, long size, long lastModified) throws IOException {
+        boolean video = mimeType != null && (mimeType.startsWith("video/") || mimeType.startsWith("audio/"));
+        if (!video) {
+            // Also run for unknown types, the image header tells whether it is one
+            BitmapFactory.Options bounds = BitmapDecoder.decodeBounds(context.getContentResolver(), uri);
+            if (bounds != null) {
+                int orientation = ImageOrientation.read(context.getContentResolver(), uri);
+                return new MediaInfo(uri, displayName, bounds.outMimeType != null ? bounds.outMimeType : mimeType,
+                        size, lastModified, bounds.outWidth, bounds.outHeight, MediaInfo.UNKNOWN,
+                        orientation, ImageOrientation.rotationDegrees(orientation));
+            }
+            return new MediaInfo(uri, displayName, mimeType, size, lastModified,
+                    MediaInfo.UNKNOWN, MediaInfo.UNKNOWN, MediaInfo.UNKNOWN, MediaInfo.UNKNOWN, 0);
+        }
+
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, uri);
+            String retrievedMime = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_MIMETYPE);
+            return new MediaInfo(uri, displayName, mimeType != null ? mimeType : retrievedMime, size, lastModified,
+                    parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH)),
+                    parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT)),
+                    parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)),
+                    MediaInfo.UNKNOWN,
+                    Math.max(0, parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION))));
+        } catch (RuntimeException e) {
+            throw new IOException("Unable to read metadata of " + uri, e);
+        } finally {
+            try {
+                retriever.release();
+            } catch (IOException | RuntimeException e) {
+                // Nothing to clean up that matters
+            }
+        }
+    }
+
+    /**
+     * A memoized result and when it was probed, on the {@link SystemClock#elapsedRealtime()} clock.
+     */
+    static final class Entry {
+
+        final MediaInfo info;
+        final long probedAtMs;
+
+        Entry(MediaInfo info, long probedAtMs) {
+            this.info = info;
+            this.probedAtMs = probedAtMs;
+        }
+
+        /**
+         * @return Whether the result still describes media that now has {@code size} and
+         * {@code lastModified}. Without a modification time a changed file of the same size
+         * cannot be told apart, so the result is then only reused for {@link #UNVERIFIED_MAX_AGE_MS}.
+         */
+        boolean isFresh(long size, long lastModified, long nowMs) {
+            if (size != info.getSize() || lastModified != info.getLastModified()) return false;
+            return lastModified != MediaInfo.UNKNOWN || nowMs - probedAtMs < UNVERIFIED_MAX_AGE_MS;
+        }
+    }
+
+    @Nullable
+    private static String getString(Cursor cursor, String column) {
+        int index = cursor.getColumnIndex(column);
+        return index >= 0 && !cursor.isNull(index) ? cursor.getString(index) : null;
+    }
+
+    private static long getLong(Cursor cursor, String column) {
+        int index = cursor.getColumnIndex(column);
+        return index >= 0 && !cursor.isNull(index) ? cursor.getLong(index) : MediaInfo.UNKNOWN;
+    }
+
+    private static int parseInt(@Nullable String value) {
+        if (value == null) return MediaInfo.UNKNOWN;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return MediaInfo.UNKNOWN;
+        }
+    }
+}
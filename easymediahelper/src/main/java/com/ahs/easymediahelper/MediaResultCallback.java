@@ -0,0 +1,24 @@
+package com.ahs.easymediahelper;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Receives the result of an asynchronous media operation.
+ * Both methods are invoked on the main thread.
+ */
+public interface MediaResultCallback {
+
+    /**
+     * Called when the operation finished.
+     *
+     * @param path The absolute path of the saved file, or null/empty if nothing was saved.
+     */
+    void onSuccess(@Nullable String path);
+
+    /**
+     * Called when the operation failed or was rejected by the executor.
+     *
+     * @param error The cause of the failure.
+     */
+    void onError(Exception error);
+}
@@ -0,0 +1,125 @@
+package com.ahs.easymediahelper;
+
+import android.net.Uri;
+import android.os.Bundle;
+
+import androidx.annotation.Nullable;
+import androidx.core.os.BundleCompat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A capture or file selection started by an {@link EasyMediaHelper}, together with the
+ * settings it was started with. Sessions are immutable, so several of them can be processed at
+ * the same time by any number of helpers without affecting each other. A helper keeps the
+ * sessions waiting for their Activity result in its
+ * {@link EasyMediaHelper#onSaveInstanceState(android.os.Bundle) saved state}, so a result that
+ * arrives after the process was killed is still processed.
+ */
+public final class MediaSession {
+
+    private static final String KEY_ID = "id";
+    private static final String KEY_REQUEST_CODE = "requestCode";
+    private static final String KEY_OUTPUT_URI = "outputUri";
+    private static final String KEY_FILE_NAME = "fileName";
+    private static final String KEY_CONFIG = "config";
+
+    private final String id;
+    private final int requestCode;
+    private final Uri outputUri;
+    private final String fileName;
+    private final MediaConfig config;
+
+    private MediaSession(String id, int requestCode, @Nullable Uri outputUri, @Nullable String fileName,
+                         MediaConfig config) {
+        this.id = id;
+        this.requestCode = requestCode;
+        this.outputUri = outputUri;
+        this.fileName = fileName;
+        this.config = config;
+    }
+
+    static MediaSession create(int requestCode, @Nullable Uri outputUri, @Nullable String fileName,
+                               MediaConfig config) {
+        return new MediaSession(UUID.randomUUID().toString(), requestCode, outputUri, fileName, config);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return One of the {@code EasyMediaHelper.REQUEST_*} codes.
+     */
+    public int getRequestCode() {
+        return requestCode;
+    }
+
+    /**
+     * @return The Uri the camera writes the capture to, or null for a file selection.
+     */
+    @Nullable
+    public Uri getOutputUri() {
+        return outputUri;
+    }
+
+    /**
+     * @return The file name prefix of a capture, or null for a file selection.
+     */
+    @Nullable
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return The media folder the result is saved in.
+     */
+    public String getFolderName() {
+        return config.folderName;
+    }
+
+    MediaConfig getConfig() {
+        return config;
+    }
+
+    Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putString(KEY_ID, id);
+        bundle.putInt(KEY_REQUEST_CODE, requestCode);
+        bundle.putParcelable(KEY_OUTPUT_URI, outputUri);
+        bundle.putString(KEY_FILE_NAME, fileName);
+        Map<String, String> params = new HashMap<>();
+        config.writeTo(params);
+        Bundle configBundle = new Bundle();
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            configBundle.putString(entry.getKey(), entry.getValue());
+        }
+        bundle.putBundle(KEY_CONFIG, configBundle);
+        return bundle;
+    }
+
+    /**
+     * Restores a session saved with {@link #toBundle()}. Settings that could not be saved, such
+     * as a custom encoder, are taken from {@code defaults}.
+     */
+    static MediaSession fromBundle(Bundle bundle, MediaConfig defaults) {
+        Map<String, String> params = new HashMap<>();
+        Bundle configBundle = bundle.getBundle(KEY_CONFIG);
+        if (configBundle != null) {
+            for (String key : configBundle.keySet()) {
+                params.put(key, configBundle.getString(key));
+            }
+        }
+        String id = bundle.getString(KEY_ID);
+        return new MediaSession(id != null ? id : UUID.randomUUID().toString(), bundle.getInt(KEY_REQUEST_CODE),
+                BundleCompat.getParcelable(bundle, KEY_OUTPUT_URI, Uri.class), bundle.getString(KEY_FILE_NAME),
+                MediaConfig.readFrom(params, defaults));
+    }
+
+    @Override
+    public String toString() {
+        return "MediaSession{" + id + ", request " + requestCode + ", " + outputUri + "}";
+    }
+}
@@ -0,0 +1,153 @@
+package com.ahs.easymediahelper;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.webkit.MimeTypeMap;
+
+import androidx.annotation.ChecksSdkIntAtLeast;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A new item in a shared MediaStore collection that bytes are streamed into directly. The item
+ * is inserted as pending, so the gallery and other apps do not see it until it is
+ * {@link #publish() published}; a failed item is {@link #discard() discarded}. Pending items
+ * and relative paths need Android 10, where writing them also needs no storage permission.
+ */
+final class MediaStoreOutput {
+
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private ParcelFileDescriptor descriptor;
+    private FileOutputStream stream;
+
+    private MediaStoreOutput(ContentResolver resolver, Uri uri) {
+        this.resolver = resolver;
+        this.uri = uri;
+    }
+
+    @ChecksSdkIntAtLeast(api = Build.VERSION_CODES.Q)
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+    }
+
+    /**
+     * Inserts a pending item named {@code displayName} into the collection matching
+     * {@code mimeType}, under {@code folderName} in its standard directory, e.g.
+     * "Pictures/MediaHelper". An extension matching the MIME type is added if the name has none.
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    static MediaStoreOutput insert(ContentResolver resolver, String displayName, @Nullable String mimeType,
+                                   String folderName) throws IOException {
+        String extension = mimeType != null ? MimeTypeMap.getSingleton().getExtensionFromMimeType(mimeType) : null;
+        if (extension != null && !MediaFileNames.hasExtension(displayName)) {
+            displayName = displayName + "." + extension;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, displayName);
+        if (mimeType != null) values.put(MediaStore.MediaColumns.MIME_TYPE, mimeType);
+        values.put(MediaStore.MediaColumns.RELATIVE_PATH, directoryFor(mimeType) + "/" + folderName);
+        values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+        Uri uri;
+        try {
+            uri = resolver.insert(collectionFor(mimeType), values);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new IOException("MediaStore rejected " + displayName, e);
+        }
+        if (uri == null) {
+            throw new IOException("MediaStore rejected " + displayName);
+        }
+        return new MediaStoreOutput(resolver, uri);
+    }
+
+    Uri getUri() {
+        return uri;
+    }
+
+    /**
+     * @return A channel writing into the item, opened on first use. Its position is the number
+     * of bytes written so far.
+     */
+    FileChannel channel() throws IOException {
+        if (stream == null) {
+            descriptor = resolver.openFileDescriptor(uri, "w");
+            if (descriptor == null) {
+                throw new FileNotFoundException("Failed to open " + uri + " for writing");
+            }
+            stream = new FileOutputStream(descriptor.getFileDescriptor());
+        }
+        return stream.getChannel();
+    }
+
+    /**
+     * Syncs the written bytes and makes the item visible.
+     *
+     * @return The Uri of the published item.
+     */
+    Uri publish() throws IOException {
+        try {
+            if (stream != null) stream.getFD().sync();
+        } finally {
+            close();
+        }
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.IS_PENDING, 0);
+        resolver.update(uri, values, null, null);
+        return uri;
+    }
+
+    /**
+     * Deletes the item. Never throws, it is called while handling another failure.
+     */
+    void discard() {
+        try {
+            close();
+        } catch (IOException e) {
+            // The item is deleted anyway
+        }
+        try {
+            resolver.delete(uri, null, null);
+        } catch (RuntimeException e) {
+            // The system deletes pending items it was not told about after a while
+        }
+    }
+
+    private void close() throws IOException {
+        try {
+            if (stream != null) stream.close();
+        } finally {
+            stream = null;
+            if (descriptor != null) {
+                descriptor.close();
+                descriptor = null;
+            }
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static Uri collectionFor(@Nullable String mimeType) {
+        String volume = MediaStore.VOLUME_EXTERNAL_PRIMARY;
+        if (mimeType != null && mimeType.startsWith("image/")) return MediaStore.Images.Media.getContentUri(volume);
+        if (mimeType != null && mimeType.startsWith("video/")) return MediaStore.Video.Media.getContentUri(volume);
+        if (mimeType != null && mimeType.startsWith("audio/")) return MediaStore.Audio.Media.getContentUri(volume);
+        return MediaStore.Downloads.getContentUri(volume);
+    }
+
+    private static String directoryFor(@Nullable String mimeType) {
+        if (mimeType != null && mimeType.startsWith("image/")) return Environment.DIRECTORY_PICTURES;
+        if (mimeType != null && mimeType.startsWith("video/")) return Environment.DIRECTORY_MOVIES;
+        if (mimeType != null && mimeType.startsWith("audio/")) return Environment.DIRECTORY_MUSIC;
+        return Environment.DIRECTORY_DOWNLOADS;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.Bitmap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the stages of one operation on one thread. The {@link #NONE} instance ignores every
+ * call, so instrumented code costs a single field check when no listener is registered.
+ */
+class MediaTrace {
+
+    static final MediaTrace NONE = new MediaTrace(null, null);
+
+    private final String operation;
+    private final MediaMetricsListener listener;
+    private final long startNanos;
+    private Map<String, Long> stageNanos;
+    private String currentStage;
+    private long stageStartNanos;
+    private long bytes;
+    private long peakBitmapBytes;
+    private Throwable failure;
+    private boolean finished;
+
+    MediaTrace(String operation, MediaMetricsListener listener) {
+        this.operation = operation;
+        this.listener = listener;
+        this.startNanos = listener != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Ends the current stage, if any, and starts {@code stage}.
+     */
+    void stage(String stage) {
+        if (listener == null) return;
+        long now = System.nanoTime();
+        endStage(now);
+        currentStage = stage;
+        stageStartNanos = now;
+    }
+
+    void addBytes(long count) {
+        if (listener == null) return;
+        bytes += count;
+    }
+
+    void recordBitmap(Bitmap bitmap) {
+        if (listener == null || bitmap == null) return;
+        peakBitmapBytes = Math.max(peakBitmapBytes, bitmap.getAllocationByteCount());
+    }
+
+    void fail(Throwable cause) {
+        if (listener == null) return;
+        failure = cause;
+    }
+
+    /**
+     * Ends the operation and reports it. Later calls are ignored.
+     */
+    void end() {
+        if (listener == null || finished) return;
+        finished = true;
+        long now = System.nanoTime();
+        endStage(now);
+        listener.onOperationComplete(new MediaOperationMetrics(operation,
+                stageNanos != null ? stageNanos : new LinkedHashMap<>(), now - startNanos, bytes,
+                peakBitmapBytes, failure));
+    }
+
+    private void endStage(long now) {
+        if (currentStage == null) return;
+        if (stageNanos == null) stageNanos = new LinkedHashMap<>();
+        Long previous = stageNanos.get(currentStage);
+        stageNanos.put(currentStage, (previous != null ? previous : 0) + now - stageStartNanos);
+        currentStage = null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.ahs.easymediahelper;
+
+/**
+ * Where captured media is saved, see {@link EasyMediaHelper#setOutputTarget(OutputTarget)}.
+ */
+public enum OutputTarget {
+
+    /**
+     * The helper's folder in the app's external files directory. Private to the app, removed
+     * with it, and managed by the {@link StorageQuotaManager}. Results are file paths.
+     */
+    APP_STORAGE,
+
+    /**
+     * The shared Pictures, Movies or Download collection through {@code MediaStore}, so the
+     * media shows up in the gallery without a second copy or a rescan. Results are
+     * {@code content://} Uri strings. Needs Android 10; older versions use {@link #APP_STORAGE}.
+     */
+    MEDIA_STORE
+}
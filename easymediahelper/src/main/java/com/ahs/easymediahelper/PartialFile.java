@@ -0,0 +1,263 @@
+package com.ahs.easymediahelper;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A file that is written under a temporary name and only appears under its final name once it
+ * is complete and synced to disk, so a process killed mid-write never leaves a truncated file
+ * behind a path the caller may already know.
+ * <p>
+ * A {@link #resumable(File, String, String) resumable} file is named after its source instead of
+ * its target and keeps a small journal with the last offset that was synced and the key of the
+ * content it belongs to. After process death the next copy of the same source continues from
+ * that offset instead of from zero, unless the source has changed since.
+ * <p>
+ * This class only depends on {@code java.io} and {@code java.nio} so it can be exercised on
+ * the JVM.
+ */
+final class PartialFile {
+
+    /** How many bytes a resumable copy writes between two checkpoints. */
+    static final long CHECKPOINT_BYTES = 8L * 1024 * 1024;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String PART_SUFFIX = ".part";
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    // Two copies of the same source at once must not share a partial file
+    private static final Set<String> ACTIVE_SOURCES = Collections.synchronizedSet(new HashSet<>());
+
+    private File temp;
+    private final File journal;
+    private final String sourceName;
+    private final String resumeKey;
+    private FileChannel channel;
+    private boolean claimed;
+
+    private PartialFile(File temp, File journal, String sourceName, String resumeKey) {
+        this.temp = temp;
+        this.journal = journal;
+        this.sourceName = sourceName;
+        this.resumeKey = resumeKey;
+    }
+
+    /**
+     * Returns a partial file that is written next to {@code target} and cannot be resumed.
+     */
+    static PartialFile create(File target) {
+        return new PartialFile(new File(target.getParentFile(), "." + target.getName() + TEMP_SUFFIX),
+                null, null, null);
+    }
+
+    /**
+     * Returns a partial file in {@code directory} that survives process death and is picked up
+     * again by the next copy of {@code source} with the same {@code resumeKey}. The key must
+     * change whenever the source content may have changed, e.g. by including its size and
+     * modification time; a copy with another key replaces the partial data of the old one.
+     * {@code directory} must be on the same file system as the final target.
+     *
+     * @param source Identifies the source, e.g. its Uri.
+     */
+    static PartialFile resumable(File directory, String source, String resumeKey) {
+        String name = UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8)).toString();
+        return new PartialFile(new File(directory, name + PART_SUFFIX),
+                new File(directory, name + JOURNAL_SUFFIX), name, resumeKey);
+    }
+
+    boolean isResumable() {
+        return resumeKey != null;
+    }
+
+    /**
+     * Opens the temporary file for writing.
+     *
+     * @param resume Whether to continue a previous copy. If false, or if there is nothing valid
+     *               to continue, the file starts out empty.
+     * @return The offset writing continues at, which is also the channel's position.
+     */
+    long open(boolean resume) throws IOException {
+        closeChannel();
+        File directory = temp.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory: " + directory);
+        }
+        if (isResumable() && !claimed && !(claimed = ACTIVE_SOURCES.add(sourceName))) {
+            // Another copy of the same source is running, write beside it without resume support
+            temp = new File(temp.getParentFile(), "." + UUID.randomUUID() + TEMP_SUFFIX);
+        }
+        long offset = resume && claimed ? readCheckpoint() : 0;
+        // Readable too, a resumed copy hashes the synced prefix again
+        channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (offset > channel.size()) {
+                offset = 0;
+            }
+            // Bytes past the checkpoint were never synced and may be garbage
+            channel.truncate(offset);
+            channel.position(offset);
+            if (offset == 0 && claimed) {
+                writeCheckpoint(0);
+            }
+        } catch (IOException e) {
+            closeChannel();
+            throw e;
+        }
+        return offset;
+    }
+
+    FileChannel channel() {
+        if (channel == null) {
+            throw new IllegalStateException("Partial file is not open");
+        }
+        return channel;
+    }
+
+    /**
+     * Returns the temporary file, for writers that need a path such as {@code MediaMuxer}. Data
+     * written through another handle is still synced by {@link #commit(File)}.
+     */
+    File getFile() {
+        return temp;
+    }
+
+    /**
+     * Returns a buffered stream writing to the temporary file. Closing it is not necessary,
+     * {@link #commit(File)} and {@link #abort()} release the file.
+     */
+    OutputStream outputStream() {
+        return new BufferedOutputStream(Channels.newOutputStream(channel()), MediaCopier.BUFFER_SIZE);
+    }
+
+    /**
+     * Syncs everything written so far and records {@code offset} as the point a later copy may
+     * resume from. Does nothing for a file that cannot be resumed.
+     */
+    void checkpoint(long offset) throws IOException {
+        if (!claimed) return;
+        channel().force(false);
+        writeCheckpoint(offset);
+    }
+
+    /**
+     * Syncs the temporary file and atomically moves it to {@code target}, replacing any file
+     * with that name.
+     */
+    void commit(File target) throws IOException {
+        try {
+            channel().force(true);
+            closeChannel();
+            if (!temp.renameTo(target)) {
+                throw new IOException("Failed to move " + temp + " to " + target);
+            }
+            if (claimed) {
+                journal.delete();
+            }
+        } catch (IOException | RuntimeException e) {
+            abort();
+            throw e;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Discards the temporary file and its journal.
+     */
+    void abort() {
+        closeChannel();
+        temp.delete();
+        if (claimed) {
+            journal.delete();
+        }
+        release();
+    }
+
+    /**
+     * Closes the temporary file but keeps it, up to the last checkpoint, for a later copy of
+     * the same source. A file that cannot be resumed is discarded instead.
+     */
+    void suspend() {
+        if (!claimed) {
+            abort();
+            return;
+        }
+        closeChannel();
+        release();
+    }
+
+    /**
+     * Deletes partial files in {@code directory} that were last written more than
+     * {@code maxAgeMillis} ago, i.e. copies that are unlikely to ever be resumed.
+     */
+    static void deleteStale(File directory, long maxAgeMillis) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        for (File file : files) {
+            if (file.lastModified() < cutoff) {
+                file.delete();
+            }
+        }
+    }
+
+    private long readCheckpoint() {
+        if (journal == null || !journal.exists()) return 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(journal))) {
+            String key = reader.readLine();
+            String offset = reader.readLine();
+            if (!resumeKey.equals(key) || offset == null) return 0;
+            return Math.max(0, Long.parseLong(offset));
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(long offset) throws IOException {
+        // The journal itself is replaced atomically, a torn write would lose the previous checkpoint
+        File next = new File(journal.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(next)) {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(resumeKey + "\n" + offset + "\n");
+            writer.flush();
+            out.getFD().sync();
+        }
+        if (!next.renameTo(journal)) {
+            next.delete();
+            throw new IOException("Failed to update journal " + journal);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to flush, everything that matters was forced already
+        }
+        channel = null;
+    }
+
+    private void release() {
+        if (claimed) {
+            ACTIVE_SOURCES.remove(sourceName);
+            claimed = false;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.Bitmap;
+
+/**
+ * Receives pages rendered by {@link PdfPreviewRenderer#renderPageAsync}.
+ * Both methods are invoked on the main thread.
+ */
+public interface PdfPageCallback {
+
+    /**
+     * Called when the page has been rendered.
+     *
+     * @param page The rendered page. It is shared with the renderer's cache and must not be recycled.
+     */
+    void onPageRendered(int index, Bitmap page);
+
+    /**
+     * Called when the page could not be rendered or the renderer was closed.
+     *
+     * @param error The cause of the failure.
+     */
+    void onError(int index, Exception error);
+}
@@ -0,0 +1,291 @@
+package com.ahs.easymediahelper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders preview pages of a PDF, e.g. one selected with {@link EasyMediaHelper#selectFile}.
+ * The document is opened once through a single {@link ParcelFileDescriptor} and pages are only
+ * rendered when asked for, at the requested width, on a background thread. The pages next to a
+ * requested one are prefetched, and rendered pages are kept in a byte-bounded LRU cache, so
+ * memory stays flat however long the document is. Requested pages always go ahead of prefetches.
+ * <p>
+ * Bitmaps returned by the renderer are shared with its cache and must not be recycled.
+ * Call {@link #close()} when the preview is gone.
+ */
+public final class PdfPreviewRenderer implements Closeable {
+
+    private static final String TAG = "EasyMediaHelper";
+    private static final int QUEUE_CAPACITY = 16;
+    private static final int DEFAULT_PREFETCH_DISTANCE = 1;
+
+    private final ParcelFileDescriptor descriptor;
+    private final PdfRenderer renderer;
+    private final int pageCount;
+    private final LruCache<String, Bitmap> cache;
+    // PdfRenderer allows one open page at a time, so pages are rendered one by one under rendererLock.
+    // Prefetches have their own queue, so they can never fill the one of requested pages
+    private final ExecutorService renderThread = MediaExecutor.create(1, QUEUE_CAPACITY);
+    private final ExecutorService prefetchThread = MediaExecutor.create(1, QUEUE_CAPACITY);
+    private final Object rendererLock = new Object();
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+
+    private volatile boolean closed;
+    private volatile int focusIndex;
+    private volatile int prefetchDistance = DEFAULT_PREFETCH_DISTANCE;
+
+    private PdfPreviewRenderer(ParcelFileDescriptor descriptor, int maxCacheBytes) throws IOException {
+        this.descriptor = descriptor;
+        try {
+            renderer = new PdfRenderer(descriptor);
+        } catch (IOException | RuntimeException e) {
+            descriptor.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Unable to open PDF", e);
+        }
+        pageCount = renderer.getPageCount();
+        cache = new LruCache<String, Bitmap>(maxCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Opens a PDF file, caching rendered pages in up to 1/16 of the heap.
+     */
+    public static PdfPreviewRenderer open(File file) throws IOException {
+        return open(file, defaultCacheBytes());
+    }
+
+    /**
+     * Opens a PDF file.
+     *
+     * @param maxCacheBytes The maximum size of the rendered pages kept in memory.
+     */
+    public static PdfPreviewRenderer open(File file, int maxCacheBytes) throws IOException {
+        return new PdfPreviewRenderer(
+                ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY), maxCacheBytes);
+    }
+
+    /**
+     * Opens a PDF behind a content Uri, caching rendered pages in up to 1/16 of the heap.
+     * The provider must return a seekable file descriptor.
+     */
+    public static PdfPreviewRenderer open(Context context, Uri uri) throws IOException {
+        ParcelFileDescriptor descriptor;
+        try {
+            descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+        } catch (SecurityException e) {
+            throw new IOException("No access to " + uri, e);
+        }
+        if (descriptor == null) {
+            throw new FileNotFoundException("Unable to open " + uri);
+        }
+        return new PdfPreviewRenderer(descriptor, defaultCacheBytes());
+    }
+
+    private static int defaultCacheBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Sets how many pages before and after a requested page are rendered ahead. Defaults to 1;
+     * 0 turns prefetching off.
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        this.prefetchDistance = Math.max(0, prefetchDistance);
+    }
+
+    /**
+     * @return The page if it is cached at {@code width}, without rendering it.
+     */
+    @Nullable
+    public Bitmap getCachedPage(int index, int width) {
+        return cache.get(keyFor(index, width));
+    }
+
+    /**
+     * Renders a page, or returns it from the cache, and prefetches its neighbours.
+     * Blocks, so it must not be called on the main thread; see {@link #renderPageAsync}.
+     *
+     * @param width The width of the bitmap in pixels; the height follows the page's aspect ratio.
+     */
+    public Bitmap renderPage(int index, int width) throws IOException {
+        checkPage(index, width);
+        focusIndex = index;
+        Bitmap page = render(index, width);
+        prefetchAround(index, width);
+        return page;
+    }
+
+    /**
+     * Renders a page on the renderer's background thread and delivers it to {@code callback} on
+     * the main thread. A cached page is delivered without a round trip to the background thread.
+     *
+     * @return A Future that can be used to cancel the request; a cancelled request is not delivered.
+     */
+    public Future<Bitmap> renderPageAsync(int index, int width, PdfPageCallback callback) {
+        checkPage(index, width);
+        focusIndex = index;
+        final Bitmap cached = cache.get(keyFor(index, width));
+        FutureTask<Bitmap> task = new FutureTask<Bitmap>(() -> cached != null ? cached : render(index, width)) {
+            @Override
+            protected void done() {
+                if (cached == null) queuedRequests.decrementAndGet();
+                if (isCancelled()) return;
+
+                Bitmap page = null;
+                Exception error = null;
+                try {
+                    page = get();
+                } catch (Exception e) {
+                    error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                final Bitmap result = page;
+                final Exception failure = error;
+                MediaExecutor.runOnMainThread(() -> {
+                    if (failure != null) {
+                        callback.onError(index, failure);
+                    } else {
+                        callback.onPageRendered(index, result);
+                    }
+                });
+                if (failure == null) prefetchAround(index, width);
+            }
+        };
+
+        if (cached != null) {
+            task.run();
+            return task;
+        }
+        queuedRequests.incrementAndGet();
+        try {
+            renderThread.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Never runs, cancelling it balances the queued count
+            task.cancel(false);
+            MediaExecutor.runOnMainThread(() -> callback.onError(index, e));
+        }
+        return task;
+    }
+
+    /**
+     * Drops all cached pages. The document stays open.
+     */
+    public void clearCache() {
+        cache.evictAll();
+    }
+
+    /**
+     * Closes the document and drops the cache. Requests still queued fail with an IOException.
+     */
+    @Override
+    public void close() {
+        synchronized (rendererLock) {
+            if (closed) return;
+            closed = true;
+            renderer.close();
+            try {
+                descriptor.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing PDF", e);
+            }
+        }
+        renderThread.shutdown();
+        prefetchThread.shutdownNow();
+        cache.evictAll();
+    }
+
+    private Bitmap render(int index, int width) throws IOException {
+        String key = keyFor(index, width);
+        Bitmap cached = cache.get(key);
+        if (cached != null) return cached;
+
+        MediaTrace trace = MediaMetrics.begin(MediaOperationMetrics.OPERATION_RENDER_PDF_PAGE);
+        try {
+            trace.stage(MediaOperationMetrics.STAGE_DECODE);
+            Bitmap bitmap;
+            synchronized (rendererLock) {
+                if (closed) {
+                    throw new IOException("PDF preview is closed");
+                }
+                try (PdfRenderer.Page page = renderer.openPage(index)) {
+                    int height = Math.max(1, Math.round((float) width * page.getHeight() / page.getWidth()));
+                    bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                    // Pages render onto a transparent bitmap, paper is white
+                    bitmap.eraseColor(Color.WHITE);
+                    page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                }
+            }
+            trace.recordBitmap(bitmap);
+            cache.put(key, bitmap);
+            return bitmap;
+        } catch (IOException | RuntimeException e) {
+            trace.fail(e);
+            throw e;
+        } finally {
+            trace.end();
+        }
+    }
+
+    private void prefetchAround(int index, int width) {
+        int distance = prefetchDistance;
+        for (int offset = 1; offset <= distance; offset++) {
+            prefetch(index + offset, width);
+            prefetch(index - offset, width);
+        }
+    }
+
+    private void prefetch(int index, int width) {
+        if (closed || index < 0 || index >= pageCount || cache.get(keyFor(index, width)) != null) return;
+        try {
+            prefetchThread.execute(() -> {
+                // Skip pages the user has already scrolled away from, and give way to requested pages
+                if (closed || Math.abs(index - focusIndex) > prefetchDistance || queuedRequests.get() > 0) return;
+                try {
+                    render(index, width);
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "Error prefetching page " + index, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Prefetching is best effort, the page is rendered when it is requested
+        }
+    }
+
+    private void checkPage(int index, int width) {
+        if (index < 0 || index >= pageCount) {
+            throw new IndexOutOfBoundsException("Page " + index + " of " + pageCount);
+        }
+        if (width <= 0) {
+            throw new IllegalArgumentException("Width must be positive: " + width);
+        }
+    }
+
+    private static String keyFor(int index, int width) {
+        return index + "@" + width;
+    }
+}
@@ -0,0 +1,230 @@
+package com.ahs.easymediahelper;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The index behind {@link StorageQuotaManager}: path, size and last access of every file in a
+ * media folder, in least recently used order, with the totals per subdirectory. It is saved as
+ * a small tab-separated file in the folder itself.
+ * <p>
+ * Not thread-safe, the manager synchronizes access. This class only depends on {@code java.io}
+ * so it can be exercised on the JVM.
+ */
+final class QuotaIndex {
+
+    static final String INDEX_FILE = ".quota_index";
+
+    private static final class Entry {
+        final long size;
+        long lastAccess;
+
+        Entry(long size, long lastAccess) {
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final File root;
+    private final File indexFile;
+    // Access-ordered, so iteration starts with the least recently used file
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Long> bytesPerDirectory = new HashMap<>();
+    private long totalBytes;
+    private String lastWritten;
+
+    QuotaIndex(File root) {
+        this.root = root;
+        this.indexFile = new File(root, INDEX_FILE);
+    }
+
+    /**
+     * Records a file that was just written, replacing any previous entry for it.
+     */
+    void recordWrite(String key, long size, long now) {
+        remove(key);
+        add(key, new Entry(size, now));
+        lastWritten = key;
+    }
+
+    /**
+     * Marks a file as recently used.
+     *
+     * @return Whether the file is in the index.
+     */
+    boolean recordAccess(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) return false;
+        entry.lastAccess = now;
+        return true;
+    }
+
+    boolean remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) return false;
+        totalBytes -= entry.size;
+        String directory = directoryOf(key);
+        Long used = bytesPerDirectory.get(directory);
+        if (used != null) bytesPerDirectory.put(directory, used - entry.size);
+        if (key.equals(lastWritten)) lastWritten = null;
+        return true;
+    }
+
+    /**
+     * Removes the least recently used files until the total fits {@code maxBytes}, and every
+     * file not used for longer than {@code maxAgeMillis}. The file written last is never removed
+     * for the cap, even when it is larger than the cap on its own: it is what the caller just
+     * asked for.
+     *
+     * @param maxBytes     The cap, or -1 for none.
+     * @param maxAgeMillis The maximum age, or -1 for none.
+     * @return The removed files, for the caller to delete.
+     */
+    List<File> evict(long maxBytes, long maxAgeMillis, long now) {
+        List<String> victims = new ArrayList<>();
+        long remaining = totalBytes;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> candidate = iterator.next();
+            boolean overCap = maxBytes >= 0 && remaining > maxBytes && !candidate.getKey().equals(lastWritten);
+            boolean tooOld = maxAgeMillis >= 0 && now - candidate.getValue().lastAccess > maxAgeMillis;
+            if (!overCap && !tooOld) continue;
+
+            victims.add(candidate.getKey());
+            remaining -= candidate.getValue().size;
+        }
+        List<File> files = new ArrayList<>(victims.size());
+        for (String victim : victims) {
+            remove(victim);
+            files.add(new File(root, victim));
+        }
+        return files;
+    }
+
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return Bytes used per subdirectory, e.g. "images" and "videos".
+     */
+    Map<String, Long> getUsage() {
+        return new HashMap<>(bytesPerDirectory);
+    }
+
+    int getFileCount() {
+        return entries.size();
+    }
+
+    /**
+     * Reads the saved index, keeping its least recently used order.
+     *
+     * @return False if there is no saved index.
+     * @throws IOException If the index cannot be read; the index is left empty.
+     */
+    boolean read() throws IOException {
+        if (!indexFile.exists()) return false;
+        try (BufferedReader reader = new BufferedReader(new FileReader(indexFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length != 3) continue;
+                add(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+            }
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            entries.clear();
+            bytesPerDirectory.clear();
+            totalBytes = 0;
+            throw e instanceof IOException ? (IOException) e : new IOException("Corrupt quota index", e);
+        }
+    }
+
+    /**
+     * Adds every file in the folder, for folders written before the index existed.
+     */
+    void scan() {
+        scan(root);
+    }
+
+    /**
+     * @return The index in the saved format, one line per file in least recently used order.
+     */
+    List<String> toLines() {
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            lines.add(entry.getKey() + "\t" + entry.getValue().size + "\t" + entry.getValue().lastAccess);
+        }
+        return lines;
+    }
+
+    /**
+     * Replaces the saved index with {@code lines} from {@link #toLines()}. Safe to call without
+     * holding the lock of the index.
+     */
+    void write(List<String> lines) throws IOException {
+        if (!root.exists() && !root.mkdirs()) {
+            throw new IOException("Failed to create directory: " + root);
+        }
+        File temp = new File(root, INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(temp))) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        if (!temp.renameTo(indexFile)) {
+            throw new IOException("Failed to replace " + indexFile);
+        }
+    }
+
+    // Path relative to the root, or null for files outside of it and hidden entries
+    @Nullable
+    String keyFor(@Nullable File file) {
+        if (file == null) return null;
+        String rootPath = root.getAbsolutePath() + File.separator;
+        String path = file.getAbsolutePath();
+        if (!path.startsWith(rootPath)) return null;
+        String key = path.substring(rootPath.length());
+        return key.startsWith(".") || key.contains("/.") ? null : key;
+    }
+
+    private void scan(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.getName().startsWith(".")) continue;
+            if (file.isDirectory()) {
+                scan(file);
+            } else {
+                String key = keyFor(file);
+                if (key != null) add(key, new Entry(file.length(), file.lastModified()));
+            }
+        }
+    }
+
+    private void add(String key, Entry entry) {
+        entries.put(key, entry);
+        totalBytes += entry.size;
+        String directory = directoryOf(key);
+        Long used = bytesPerDirectory.get(directory);
+        bytesPerDirectory.put(directory, (used != null ? used : 0) + entry.size);
+    }
+
+    private static String directoryOf(String key) {
+        int slash = key.indexOf('/');
+        return slash > 0 ? key.substring(0, slash) : "";
+    }
+}
@@ -0,0 +1,65 @@
+package com.ahs.easymediahelper;
+
+/**
+ * One output of {@link EasyMediaHelper#saveRenditions}: a named size, format and quality, e.g.
+ * a 200 px thumbnail, a 1080 px preview and a full-size upload of the same photo.
+ */
+public final class Rendition {
+
+    private final String name;
+    private final int width;
+    private final int height;
+    private final ResizeMode resizeMode;
+    private final ImageEncoder encoder;
+    private final int quality;
+
+    /**
+     * @param name       Identifies the rendition in the result and is appended to its file name.
+     * @param resizeMode How the image is sized to {@code width} x {@code height}. Renditions never
+     *                   upscale the source.
+     * @param quality    A hint for {@code encoder}, from 0 to 100.
+     */
+    public Rendition(String name, int width, int height, ResizeMode resizeMode, ImageEncoder encoder, int quality) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Rendition size must be positive: " + width + "x" + height);
+        }
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.resizeMode = resizeMode;
+        this.encoder = encoder;
+        this.quality = quality;
+    }
+
+    /**
+     * A rendition whose longer side is at most {@code maxDimension}, keeping the aspect ratio.
+     * Use {@link Integer#MAX_VALUE} for the full size.
+     */
+    public Rendition(String name, int maxDimension, ImageEncoder encoder, int quality) {
+        this(name, maxDimension, maxDimension, ResizeMode.MAX_DIMENSION, encoder, quality);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public ResizeMode getResizeMode() {
+        return resizeMode;
+    }
+
+    public ImageEncoder getEncoder() {
+        return encoder;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+}
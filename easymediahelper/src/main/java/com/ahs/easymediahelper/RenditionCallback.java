@@ -0,0 +1,24 @@
+package com.ahs.easymediahelper;
+
+import java.util.Map;
+
+/**
+ * Receives the result of {@link EasyMediaHelper#saveRenditionsAsync}.
+ * Both methods are invoked on the main thread.
+ */
+public interface RenditionCallback {
+
+    /**
+     * Called once every rendition has been saved.
+     *
+     * @param paths The path of each rendition by name, in the order the renditions were given.
+     */
+    void onSuccess(Map<String, String> paths);
+
+    /**
+     * Called if any rendition could not be saved; none of them are kept then.
+     *
+     * @param error The cause of the failure.
+     */
+    void onError(Exception error);
+}
@@ -0,0 +1,115 @@
+package com.ahs.easymediahelper;
+
+import java.util.Arrays;
+
+/**
+ * Decides how several renditions of one image are derived from a single decode: the image is
+ * decoded once, large enough for the most demanding rendition, and renditions are then drawn
+ * largest first, each from the smallest already drawn rendition that still has enough pixels.
+ * Plain Java so it can be tested on the JVM.
+ */
+final class RenditionPlan {
+
+    /** {@link #sourceOf} value of a rendition drawn from the decoded image itself. */
+    static final int DECODED = -1;
+
+    private final ResizePlan[] plans;
+    private final int[] order;
+    private final int[] sources;
+    private final double decodeScaleX;
+    private final double decodeScaleY;
+
+    /**
+     * @param plans        The resize of each rendition, computed from the upright source size.
+     * @param sourceWidth  Width of the source, upright.
+     * @param sourceHeight Height of the source, upright.
+     */
+    RenditionPlan(ResizePlan[] plans, int sourceWidth, int sourceHeight) {
+        this.plans = plans;
+        int count = plans.length;
+
+        // Largest output first, so every rendition can be derived from one drawn before it
+        Integer[] sorted = new Integer[count];
+        for (int i = 0; i < count; i++) sorted[i] = i;
+        Arrays.sort(sorted, (a, b) -> Long.compare(area(plans[b]), area(plans[a])));
+        order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = sorted[i];
+
+        sources = new int[count];
+        double maxScaleX = 0;
+        double maxScaleY = 0;
+        for (int position = 0; position < count; position++) {
+            int index = order[position];
+            ResizePlan plan = plans[index];
+            maxScaleX = Math.max(maxScaleX, scaleX(plan));
+            maxScaleY = Math.max(maxScaleY, scaleY(plan));
+
+            // The smallest earlier rendition that shows the whole image with enough pixels
+            int source = DECODED;
+            for (int earlier = position - 1; earlier >= 0 && source == DECODED; earlier--) {
+                ResizePlan candidate = plans[order[earlier]];
+                if (!candidate.isCropped()
+                        && (double) candidate.width / sourceWidth >= scaleX(plan)
+                        && (double) candidate.height / sourceHeight >= scaleY(plan)) {
+                    source = order[earlier];
+                }
+            }
+            sources[index] = source;
+        }
+        decodeScaleX = Math.min(1, maxScaleX);
+        decodeScaleY = Math.min(1, maxScaleY);
+    }
+
+    /**
+     * @return Rendition indices in the order they must be drawn.
+     */
+    int[] drawOrder() {
+        return order.clone();
+    }
+
+    /**
+     * @return The index of the rendition that rendition {@code index} is drawn from, or
+     * {@link #DECODED}.
+     */
+    int sourceOf(int index) {
+        return sources[index];
+    }
+
+    /**
+     * @return Whether another rendition is drawn from rendition {@code index}.
+     */
+    boolean isSource(int index) {
+        for (int source : sources) {
+            if (source == index) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The horizontal scale, relative to the upright source, the image must at least be
+     * decoded at.
+     */
+    double decodeScaleX() {
+        return decodeScaleX;
+    }
+
+    double decodeScaleY() {
+        return decodeScaleY;
+    }
+
+    ResizePlan get(int index) {
+        return plans[index];
+    }
+
+    private static double scaleX(ResizePlan plan) {
+        return (double) plan.width / plan.cropWidth();
+    }
+
+    private static double scaleY(ResizePlan plan) {
+        return (double) plan.height / plan.cropHeight();
+    }
+
+    private static long area(ResizePlan plan) {
+        return (long) plan.width * plan.height;
+    }
+}
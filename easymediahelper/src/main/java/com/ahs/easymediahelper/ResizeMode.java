@@ -0,0 +1,26 @@
+package com.ahs.easymediahelper;
+
+/**
+ * How a captured image is sized to the helper's image width and height, see
+ * {@link EasyMediaHelper#setResizeMode(ResizeMode)}.
+ */
+public enum ResizeMode {
+
+    /** Stretches the image to exactly width x height, ignoring its aspect ratio. */
+    FILL,
+
+    /** Scales the image to fit within width x height, keeping its aspect ratio. */
+    FIT,
+
+    /**
+     * Scales the image to cover width x height and crops what extends past it, keeping the
+     * center. Only the kept region is decoded.
+     */
+    CENTER_CROP,
+
+    /**
+     * Scales the image so that its longer side is the larger of width and height, keeping its
+     * aspect ratio, so portrait and landscape images get the same size.
+     */
+    MAX_DIMENSION
+}
@@ -0,0 +1,96 @@
+package com.ahs.easymediahelper;
+
+/**
+ * The output size of a resize, and the region of the source it is drawn from, computed from
+ * the upright source size before anything is decoded.
+ */
+final class ResizePlan {
+
+    /** Size of the resized image. */
+    final int width;
+    final int height;
+
+    /** Region of the upright source that ends up in the resized image. */
+    final int cropLeft;
+    final int cropTop;
+    final int cropRight;
+    final int cropBottom;
+
+    private final int sourceWidth;
+    private final int sourceHeight;
+
+    private ResizePlan(int sourceWidth, int sourceHeight, int width, int height,
+                       int cropLeft, int cropTop, int cropRight, int cropBottom) {
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.width = width;
+        this.height = height;
+        this.cropLeft = cropLeft;
+        this.cropTop = cropTop;
+        this.cropRight = cropRight;
+        this.cropBottom = cropBottom;
+    }
+
+    /**
+     * @param sourceWidth  Width of the source, upright.
+     * @param sourceHeight Height of the source, upright.
+     * @param upscale      Whether a source smaller than requested may be enlarged. If not, it is
+     *                     kept at its size (cropped to the requested aspect ratio for
+     *                     {@link ResizeMode#CENTER_CROP}).
+     */
+    static ResizePlan compute(int sourceWidth, int sourceHeight, int reqWidth, int reqHeight,
+                              ResizeMode mode, boolean upscale) {
+        if (sourceWidth <= 0 || sourceHeight <= 0 || reqWidth <= 0 || reqHeight <= 0) {
+            throw new IllegalArgumentException("Sizes must be positive");
+        }
+        double scaleX = (double) reqWidth / sourceWidth;
+        double scaleY = (double) reqHeight / sourceHeight;
+        switch (mode) {
+            case FIT:
+                return scaled(sourceWidth, sourceHeight, Math.min(scaleX, scaleY), upscale);
+            case MAX_DIMENSION:
+                return scaled(sourceWidth, sourceHeight,
+                        (double) Math.max(reqWidth, reqHeight) / Math.max(sourceWidth, sourceHeight), upscale);
+            case CENTER_CROP: {
+                double scale = Math.max(scaleX, scaleY);
+                int cropWidth = Math.min(sourceWidth, Math.max(1, (int) Math.round(reqWidth / scale)));
+                int cropHeight = Math.min(sourceHeight, Math.max(1, (int) Math.round(reqHeight / scale)));
+                int left = (sourceWidth - cropWidth) / 2;
+                int top = (sourceHeight - cropHeight) / 2;
+                boolean keepSize = !upscale && scale > 1;
+                return new ResizePlan(sourceWidth, sourceHeight,
+                        keepSize ? cropWidth : reqWidth, keepSize ? cropHeight : reqHeight,
+                        left, top, left + cropWidth, top + cropHeight);
+            }
+            case FILL:
+            default:
+                return new ResizePlan(sourceWidth, sourceHeight,
+                        upscale ? reqWidth : Math.min(reqWidth, sourceWidth),
+                        upscale ? reqHeight : Math.min(reqHeight, sourceHeight),
+                        0, 0, sourceWidth, sourceHeight);
+        }
+    }
+
+    private static ResizePlan scaled(int sourceWidth, int sourceHeight, double scale, boolean upscale) {
+        if (!upscale) scale = Math.min(scale, 1);
+        return new ResizePlan(sourceWidth, sourceHeight,
+                Math.max(1, (int) Math.round(sourceWidth * scale)),
+                Math.max(1, (int) Math.round(sourceHeight * scale)),
+                0, 0, sourceWidth, sourceHeight);
+    }
+
+    /**
+     * @return Whether only part of the source is used.
+     */
+    boolean isCropped() {
+        return cropLeft > 0 || cropTop > 0 || cropRight < sourceWidth || cropBottom < sourceHeight;
+    }
+
+    int cropWidth() {
+        return cropRight - cropLeft;
+    }
+
+    int cropHeight() {
+        return cropBottom - cropTop;
+    }
+}
@@ -0,0 +1,252 @@
+package com.ahs.easymediahelper;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads a file through a {@link ChunkUploader} on its own background thread, retrying failed
+ * calls with exponential backoff.
+ * <p>
+ * {@link #start} returns a {@link ChunkListener} that uploads chunks while the file is still
+ * being written: at most {@link #MAX_PENDING_CHUNKS} chunks wait in memory, after that the
+ * writer blocks until the upload catches up. {@link #resume} continues an upload that was cut
+ * short, e.g. by process death, reading only the chunks the server does not have yet.
+ * <p>
+ * This class only depends on {@code java.io} and {@code java.util.concurrent} so it can be
+ * exercised on the JVM.
+ */
+public final class ResumableUpload implements ChunkListener {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 500;
+    static final int MAX_PENDING_CHUNKS = 4;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final long OFFER_INTERVAL_MS = 100;
+
+    private final ChunkUploader uploader;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS);
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private Thread worker;
+    private volatile String uploadId;
+
+    private ResumableUpload(ChunkUploader uploader, int maxAttempts, long initialBackoffMs) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is needed: " + maxAttempts);
+        }
+        this.uploader = uploader;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+    }
+
+    /**
+     * Starts an upload fed by the chunks of a file being written, e.g. from a
+     * {@link ChunkListenerFactory}.
+     */
+    public static ResumableUpload start(ChunkUploader uploader) {
+        return start(uploader, DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MS);
+    }
+
+    /**
+     * @param maxAttempts      How often each call to {@code uploader} is tried before the upload fails.
+     * @param initialBackoffMs The delay before the first retry; it doubles with every further one.
+     */
+    public static ResumableUpload start(ChunkUploader uploader, int maxAttempts, long initialBackoffMs) {
+        ResumableUpload upload = new ResumableUpload(uploader, maxAttempts, initialBackoffMs);
+        upload.startWorker(upload::uploadStream);
+        return upload;
+    }
+
+    /**
+     * Uploads a file that was written with chunked output, skipping the chunks the server
+     * already has. Each chunk read back is checked against the manifest, so a file changed
+     * since it was written fails the upload instead of corrupting it.
+     *
+     * @param uploadId The id of the upload to continue, see {@link #getUploadId()}, or null to
+     *                 start a new one.
+     */
+    public static ResumableUpload resume(ChunkUploader uploader, File file, @Nullable String uploadId)
+            throws IOException {
+        return resume(uploader, file, uploadId, DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MS);
+    }
+
+    public static ResumableUpload resume(ChunkUploader uploader, File file, @Nullable String uploadId,
+                                         int maxAttempts, long initialBackoffMs) throws IOException {
+        UploadManifest manifest = UploadManifest.read(file);
+        ResumableUpload upload = new ResumableUpload(uploader, maxAttempts, initialBackoffMs);
+        upload.uploadId = uploadId;
+        upload.startWorker(() -> upload.uploadFile(file, manifest));
+        return upload;
+    }
+
+    /**
+     * @return The id of the upload on the server, or null if it has not been created yet.
+     */
+    @Nullable
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    /**
+     * @return Completes with the upload id once the server has the whole file, or with the error
+     * that failed the upload.
+     */
+    public Future<String> getResult() {
+        return result;
+    }
+
+    /**
+     * Stops the upload. The server keeps the chunks it has, so it can be resumed later.
+     */
+    public void cancel() {
+        result.cancel(false);
+        worker.interrupt();
+    }
+
+    @Override
+    public void onChunk(UploadChunk chunk) {
+        enqueue(chunk);
+    }
+
+    @Override
+    public void onComplete(UploadManifest manifest) {
+        enqueue(manifest);
+    }
+
+    @Override
+    public void onFailure(Exception error) {
+        result.completeExceptionally(error);
+        worker.interrupt();
+    }
+
+    // Blocks the writer while the queue is full, but never once the upload is over
+    private void enqueue(Object item) {
+        try {
+            while (!result.isDone() && !queue.offer(item, OFFER_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                // Waiting for the upload to catch up
+            }
+        } catch (InterruptedException e) {
+            // The writer checks for cancellation itself
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startWorker(UploadTask task) {
+        worker = new Thread(() -> {
+            try {
+                task.run();
+                result.complete(uploadId);
+            } catch (InterruptedException e) {
+                result.completeExceptionally(new InterruptedIOException("Upload cancelled"));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }, "EasyMediaHelper-upload");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void uploadStream() throws IOException, InterruptedException {
+        uploadId = withRetry(uploader::createUpload);
+        while (true) {
+            Object item = queue.take();
+            if (item instanceof UploadChunk) {
+                UploadChunk chunk = (UploadChunk) item;
+                withRetry(() -> {
+                    uploader.uploadChunk(uploadId, chunk);
+                    return null;
+                });
+            } else {
+                UploadManifest manifest = (UploadManifest) item;
+                withRetry(() -> {
+                    uploader.completeUpload(uploadId, manifest);
+                    return null;
+                });
+                return;
+            }
+        }
+    }
+
+    private void uploadFile(File file, UploadManifest manifest) throws IOException, InterruptedException {
+        Set<Integer> uploaded;
+        if (uploadId == null) {
+            uploadId = withRetry(uploader::createUpload);
+            uploaded = Collections.emptySet();
+        } else {
+            uploaded = withRetry(() -> uploader.getUploadedChunks(uploadId));
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != manifest.getSize()) {
+                throw new IOException("File changed since it was written: " + file);
+            }
+            for (int i = 0; i < manifest.getChunkCount(); i++) {
+                if (uploaded.contains(i)) continue;
+                if (Thread.interrupted()) throw new InterruptedException();
+                UploadChunk chunk = readChunk(channel, manifest, i);
+                withRetry(() -> {
+                    uploader.uploadChunk(uploadId, chunk);
+                    return null;
+                });
+            }
+        }
+        withRetry(() -> {
+            uploader.completeUpload(uploadId, manifest);
+            return null;
+        });
+    }
+
+    private static UploadChunk readChunk(FileChannel channel, UploadManifest manifest, int index) throws IOException {
+        long offset = manifest.getChunkOffset(index);
+        byte[] data = new byte[manifest.getChunkLength(index)];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) == -1) {
+                throw new IOException("File is shorter than its manifest");
+            }
+        }
+        MessageDigest digest = ChunkWriter.newDigest();
+        String checksum = ChunkWriter.toHex(digest.digest(data));
+        if (!checksum.equals(manifest.getChunkChecksum(index))) {
+            throw new IOException("Chunk " + index + " changed since it was written");
+        }
+        return new UploadChunk(index, offset, data, data.length, checksum);
+    }
+
+    private <T> T withRetry(UploadCall<T> call) throws IOException, InterruptedException {
+        long backoffMs = initialBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            if (result.isDone()) throw new InterruptedException();
+            try {
+                return call.call();
+            } catch (IOException e) {
+                if (attempt >= maxAttempts || e instanceof InterruptedIOException) throw e;
+            }
+            Thread.sleep(backoffMs);
+            backoffMs = Math.min(MAX_BACKOFF_MS, backoffMs * 2);
+        }
+    }
+
+    private interface UploadTask {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private interface UploadCall<T> {
+        T call() throws IOException;
+    }
+}
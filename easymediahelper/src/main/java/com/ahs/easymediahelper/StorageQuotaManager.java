@@ -0,0 +1,230 @@
+package com.ahs.easymediahelper;
+
+import android.content.Context;
+import android.os.Environment;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the media folder within a size budget. Every file the library writes is recorded in a
+ * small {@link QuotaIndex} (path, size, last access) kept in memory and persisted next to the media, so
+ * usage is known per subdirectory without rescanning the tree. When the folder grows past
+ * {@link #setMaxBytes(long) the cap}, or files get older than {@link #setMaxAgeMillis(long) the
+ * maximum age}, the least recently used files are deleted on a background thread.
+ * <p>
+ * Hidden entries such as the thumbnail cache manage their own size and are not tracked.
+ */
+public final class StorageQuotaManager {
+
+    private static final String TAG = "EasyMediaHelper";
+    private static final long PERSIST_DELAY_MS = 2000;
+
+    private static final Map<String, StorageQuotaManager> INSTANCES = new HashMap<>();
+    private static final ScheduledExecutorService WORKER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EasyMediaHelper-quota");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File root;
+    private final QuotaIndex index;
+    private long evictionCount;
+    private long maxBytes = -1;
+    private long maxAgeMillis = -1;
+    private boolean loaded;
+    private boolean persistScheduled;
+
+    private StorageQuotaManager(File root) {
+        this.root = root;
+        this.index = new QuotaIndex(root);
+    }
+
+    /**
+     * Returns the manager of {@code getExternalFilesDir(DIRECTORY_PICTURES)/folderName}.
+     */
+    public static StorageQuotaManager getInstance(Context context, String folderName) {
+        File root = new File(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES), folderName);
+        synchronized (INSTANCES) {
+            StorageQuotaManager manager = INSTANCES.get(root.getAbsolutePath());
+            if (manager == null) {
+                manager = new StorageQuotaManager(root);
+                INSTANCES.put(root.getAbsolutePath(), manager);
+            }
+            return manager;
+        }
+    }
+
+    /**
+     * Returns the manager of the media folder {@code file} is in, or null if it is not in one,
+     * e.g. a path chosen by the app.
+     */
+    @Nullable
+    static StorageQuotaManager forFile(Context context, File file) {
+        File pictures = context.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+        if (pictures == null) return null;
+        String base = pictures.getAbsolutePath() + File.separator;
+        String path = file.getAbsolutePath();
+        if (!path.startsWith(base)) return null;
+        int end = path.indexOf(File.separatorChar, base.length());
+        return end > base.length() ? getInstance(context, path.substring(base.length(), end)) : null;
+    }
+
+    /**
+     * Sets the maximum total size of the folder, or -1 (the default) for no limit.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        scheduleEnforce();
+    }
+
+    /**
+     * Sets the maximum time since a file was last written or read, or -1 (the default) to keep
+     * files regardless of age.
+     */
+    public synchronized void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+        scheduleEnforce();
+    }
+
+    /**
+     * Records a file written by the library and enforces the quota. Index updates run on the
+     * quota thread, so this is safe to call from the main thread.
+     */
+    void recordWrite(@Nullable File file) {
+        String key = index.keyFor(file);
+        if (key == null) return;
+        long size = file.length();
+        long now = System.currentTimeMillis();
+        WORKER.execute(() -> {
+            synchronized (this) {
+                ensureLoaded();
+                index.recordWrite(key, size, now);
+            }
+            scheduleEnforce();
+        });
+    }
+
+    /**
+     * Marks a file as recently used, so it is evicted last.
+     */
+    void recordAccess(@Nullable File file) {
+        String key = index.keyFor(file);
+        if (key == null) return;
+        long now = System.currentTimeMillis();
+        WORKER.execute(() -> {
+            synchronized (this) {
+                ensureLoaded();
+                if (index.recordAccess(key, now)) schedulePersist();
+            }
+        });
+    }
+
+    void recordDelete(@Nullable File file) {
+        String key = index.keyFor(file);
+        if (key == null) return;
+        WORKER.execute(() -> {
+            synchronized (this) {
+                ensureLoaded();
+                if (index.remove(key)) schedulePersist();
+            }
+        });
+    }
+
+    public synchronized long getTotalBytes() {
+        ensureLoaded();
+        return index.getTotalBytes();
+    }
+
+    /**
+     * @return Bytes used per subdirectory, e.g. "images" and "videos".
+     */
+    public synchronized Map<String, Long> getUsage() {
+        ensureLoaded();
+        return index.getUsage();
+    }
+
+    public synchronized int getFileCount() {
+        ensureLoaded();
+        return index.getFileCount();
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Enforces the cap and maximum age on the calling thread. The file written last is kept
+     * even if it exceeds the cap on its own.
+     *
+     * @return The number of files deleted.
+     */
+    public int enforce() {
+        List<File> victims;
+        synchronized (this) {
+            ensureLoaded();
+            victims = index.evict(maxBytes, maxAgeMillis, System.currentTimeMillis());
+            evictionCount += victims.size();
+        }
+
+        for (File victim : victims) {
+            if (victim.exists() && !victim.delete()) {
+                Log.w(TAG, "Failed to evict " + victim);
+            }
+        }
+        if (!victims.isEmpty()) {
+            Log.d(TAG, "Evicted " + victims.size() + " files from " + root);
+            schedulePersist();
+        }
+        return victims.size();
+    }
+
+    private synchronized void scheduleEnforce() {
+        if (maxBytes >= 0 || maxAgeMillis >= 0) {
+            WORKER.execute(this::enforce);
+        }
+        schedulePersist();
+    }
+
+    // Coalesces index writes, a burst of captures results in a single rewrite
+    private synchronized void schedulePersist() {
+        if (persistScheduled) return;
+        persistScheduled = true;
+        WORKER.schedule(this::persist, PERSIST_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void persist() {
+        List<String> lines;
+        synchronized (this) {
+            persistScheduled = false;
+            lines = index.toLines();
+        }
+        try {
+            index.write(lines);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing quota index", e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        try {
+            if (index.read()) return;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading quota index, rebuilding it", e);
+        }
+        // One-time scan for folders written before the index existed
+        index.scan();
+        schedulePersist();
+    }
+}
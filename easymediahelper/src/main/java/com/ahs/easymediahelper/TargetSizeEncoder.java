@@ -0,0 +1,104 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Wraps a lossy {@link ImageEncoder} and binary-searches the quality so that the encoded image
+ * fits into a byte budget. The highest quality that fits is written; if even the minimum quality
+ * is too large, the minimum-quality encoding is written.
+ */
+public class TargetSizeEncoder implements ImageEncoder {
+
+    private static final int DEFAULT_MIN_QUALITY = 10;
+    private static final int INITIAL_BUFFER_BYTES = 1024 * 1024;
+
+    /**
+     * Encodes at a given quality and returns the encoded size in bytes, or -1 on failure.
+     */
+    interface QualityProbe {
+        long sizeAt(int quality) throws IOException;
+    }
+
+    private final ImageEncoder delegate;
+    private final long maxBytes;
+    private final int minQuality;
+
+    /**
+     * @param delegate A lossy encoder such as {@link ImageEncoders#JPEG} or {@link ImageEncoders#WEBP_LOSSY}.
+     * @param maxBytes The byte budget of the encoded image.
+     */
+    public TargetSizeEncoder(ImageEncoder delegate, long maxBytes) {
+        this(delegate, maxBytes, DEFAULT_MIN_QUALITY);
+    }
+
+    public TargetSizeEncoder(ImageEncoder delegate, long maxBytes, int minQuality) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        this.minQuality = minQuality;
+    }
+
+    /**
+     * Encodes with the highest quality, at most {@code quality}, that fits into the budget.
+     */
+    @Override
+    public boolean encode(Bitmap bitmap, int quality, OutputStream out) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.min(maxBytes, INITIAL_BUFFER_BYTES));
+        final int[] lastQuality = {-1};
+        int best = searchQuality(Math.min(minQuality, quality), quality, maxBytes, q -> {
+            buffer.reset();
+            lastQuality[0] = q;
+            return delegate.encode(bitmap, q, buffer) ? buffer.size() : -1;
+        });
+        if (best < 0) return false;
+
+        // The buffer holds the last probe, re-encode only if that was not the winning quality
+        if (lastQuality[0] != best) {
+            buffer.reset();
+            if (!delegate.encode(bitmap, best, buffer)) return false;
+        }
+        buffer.writeTo(out);
+        return true;
+    }
+
+    /**
+     * Finds the highest quality in [{@code min}, {@code max}] whose encoded size fits into
+     * {@code maxBytes}, in O(log(max - min)) encodes.
+     *
+     * @return The quality to use, {@code min} if nothing fits, or -1 if encoding fails.
+     */
+    static int searchQuality(int min, int max, long maxBytes, QualityProbe probe) throws IOException {
+        long sizeAtMax = probe.sizeAt(max);
+        if (sizeAtMax < 0) return -1;
+        if (sizeAtMax <= maxBytes) return max;
+
+        int low = min;
+        int high = max - 1;
+        int best = min;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long size = probe.sizeAt(mid);
+            if (size < 0) return -1;
+            if (size <= maxBytes) {
+                best = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String getExtension() {
+        return delegate.getExtension();
+    }
+
+    @Override
+    public String getMimeType() {
+        return delegate.getMimeType();
+    }
+}
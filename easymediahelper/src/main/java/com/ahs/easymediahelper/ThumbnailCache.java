@@ -0,0 +1,226 @@
+package com.ahs.easymediahelper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Environment;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache for decoded media: a byte-bounded in-memory {@link LruCache} of bitmaps shared by
+ * all helpers, and a size-bounded disk directory of encoded thumbnails under
+ * {@code <folderName>/.thumbnails} for each media folder.
+ * <p>
+ * Entries are keyed by path, last-modified time and target size, so an edited file is never
+ * served from a stale entry. Bitmaps returned from the cache are shared and must not be recycled.
+ */
+public final class ThumbnailCache {
+
+    private static final String TAG = "EasyMediaHelper";
+    private static final String DISK_DIRECTORY = ".thumbnails";
+    private static final long DEFAULT_DISK_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final int DISK_QUALITY = 85;
+
+    private static ThumbnailCache instance;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final Object diskLock = new Object();
+    private final Map<File, ThumbnailDiskIndex> diskTiers = new HashMap<>();
+    private long maxDiskBytes = DEFAULT_DISK_CACHE_BYTES;
+
+    private ThumbnailCache(int maxMemoryBytes) {
+        memoryCache = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted) evictionCount.incrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Returns the process-wide cache. The memory tier is bounded to 1/8 of the heap.
+     */
+    public static synchronized ThumbnailCache getInstance() {
+        if (instance == null) {
+            instance = new ThumbnailCache((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8));
+        }
+        return instance;
+    }
+
+    /**
+     * @return The directory of the disk tier for the media folder {@code folderName}.
+     */
+    static File diskDirectory(Context context, String folderName) {
+        return new File(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES), folderName + "/" + DISK_DIRECTORY);
+    }
+
+    /**
+     * Builds the cache key of a file: changes whenever the file is modified or a different size is requested.
+     */
+    static String keyFor(File file, String kind, int width, int height) {
+        return kind + "|" + file.getAbsolutePath() + "|" + file.lastModified() + "|" + width + "x" + height;
+    }
+
+    /**
+     * Looks the key up in memory, then in the disk tier in {@code diskDirectory}, if one is given.
+     * A disk hit is promoted to the memory tier.
+     */
+    @Nullable
+    Bitmap get(String key, @Nullable File diskDirectory) {
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null && !bitmap.isRecycled()) {
+            hitCount.incrementAndGet();
+            return bitmap;
+        }
+
+        ThumbnailDiskIndex disk = diskDirectory != null ? diskTier(diskDirectory) : null;
+        File file = disk != null ? disk.fileFor(key) : null;
+        if (file != null && file.exists()) {
+            bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+            if (bitmap != null) {
+                // The modification time keeps the order when the index is rebuilt after a restart
+                file.setLastModified(System.currentTimeMillis());
+                synchronized (diskLock) {
+                    disk.recordAccess(file);
+                }
+                diskHitCount.incrementAndGet();
+                memoryCache.put(key, bitmap);
+                return bitmap;
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the bitmap in memory and, if {@code diskDirectory} is given, as an encoded thumbnail
+     * in that disk tier.
+     */
+    void put(String key, Bitmap bitmap, @Nullable File diskDirectory) {
+        if (bitmap == null) return;
+        memoryCache.put(key, bitmap);
+
+        ThumbnailDiskIndex disk = diskDirectory != null ? diskTier(diskDirectory) : null;
+        if (disk == null) return;
+        File file = disk.fileFor(key);
+        // Written aside and swapped in, so readers never see a partial file; the index only
+        // counts the thumbnail once it has its final name
+        File temp = null;
+        try {
+            temp = File.createTempFile("thumb", ThumbnailDiskIndex.TEMP_EXTENSION, file.getParentFile());
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, DISK_QUALITY, out);
+            }
+            synchronized (diskLock) {
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Failed to move thumbnail to " + file);
+                }
+                disk.recordWrite(file, file.length());
+                trimDisk(disk);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing thumbnail to disk cache", e);
+            if (temp != null) temp.delete();
+        }
+    }
+
+    // The index of a disk tier, scanned when the directory is first used
+    @Nullable
+    private ThumbnailDiskIndex diskTier(File directory) {
+        synchronized (diskLock) {
+            ThumbnailDiskIndex disk = diskTiers.get(directory);
+            if (disk != null) return disk;
+            if (!directory.exists() && !directory.mkdirs()) {
+                Log.e(TAG, "Failed to create disk cache: " + directory.getAbsolutePath());
+                return null;
+            }
+            disk = new ThumbnailDiskIndex(directory, maxDiskBytes);
+            disk.scan();
+            trimDisk(disk);
+            diskTiers.put(directory, disk);
+            return disk;
+        }
+    }
+
+    // Deletes the least recently used thumbnails until the disk tier fits its budget
+    private void trimDisk(ThumbnailDiskIndex disk) {
+        for (File victim : disk.trim()) {
+            victim.delete();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sets the maximum size of the disk tier of each media folder. Defaults to 32MB.
+     */
+    public void setMaxDiskBytes(long maxDiskBytes) {
+        synchronized (diskLock) {
+            this.maxDiskBytes = maxDiskBytes;
+            for (ThumbnailDiskIndex disk : diskTiers.values()) {
+                disk.setMaxBytes(maxDiskBytes);
+                trimDisk(disk);
+            }
+        }
+    }
+
+    /**
+     * Clears the memory tier. Encoded thumbnails on disk are kept.
+     */
+    public void clearMemory() {
+        memoryCache.evictAll();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getDiskHitCount() {
+        return diskHitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return The number of entries evicted from either tier to stay within its size bound.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public int getMemoryBytes() {
+        return memoryCache.size();
+    }
+
+    /**
+     * @return The size of the disk tiers of all media folders used so far.
+     */
+    public long getDiskBytes() {
+        synchronized (diskLock) {
+            long total = 0;
+            for (ThumbnailDiskIndex disk : diskTiers.values()) total += disk.getTotalBytes();
+            return total;
+        }
+    }
+}
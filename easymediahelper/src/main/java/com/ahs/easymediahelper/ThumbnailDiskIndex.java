@@ -0,0 +1,137 @@
+package com.ahs.easymediahelper;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The disk tier of {@link ThumbnailCache}: the size of every encoded thumbnail in one directory,
+ * in least recently used order. Only {@code *.jpg} files are thumbnails; the temporary files
+ * they are written to are neither counted nor evicted, so a write in progress is never deleted.
+ * <p>
+ * Not thread-safe, the cache synchronizes access. This class only depends on {@code java.io}
+ * so it can be exercised on the JVM.
+ */
+final class ThumbnailDiskIndex {
+
+    static final String EXTENSION = ".jpg";
+    static final String TEMP_EXTENSION = ".tmp";
+
+    private final File directory;
+    // Access-ordered, so iteration starts with the least recently used thumbnail
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private long maxBytes;
+
+    ThumbnailDiskIndex(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return The file the thumbnail for {@code key} is stored in.
+     */
+    File fileFor(String key) {
+        return new File(directory, hash(key) + EXTENSION);
+    }
+
+    /**
+     * Adds the thumbnails already in the directory, oldest first, and deletes temporary files
+     * left by writes that never finished. Must be called before any thumbnail is written.
+     */
+    void scan() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (file.getName().endsWith(EXTENSION)) {
+                add(file.getName(), file.length());
+            } else if (file.getName().endsWith(TEMP_EXTENSION)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Records a thumbnail that was just written, replacing any previous entry for it.
+     */
+    void recordWrite(File file, long size) {
+        remove(file);
+        add(file.getName(), size);
+    }
+
+    /**
+     * Marks a thumbnail as recently used.
+     *
+     * @return Whether the thumbnail is in the index.
+     */
+    boolean recordAccess(File file) {
+        return entries.get(file.getName()) != null;
+    }
+
+    boolean remove(File file) {
+        Long size = entries.remove(file.getName());
+        if (size == null) return false;
+        totalBytes -= size;
+        return true;
+    }
+
+    /**
+     * Removes the least recently used thumbnails until the total fits the maximum size.
+     *
+     * @return The removed files, for the caller to delete.
+     */
+    List<File> trim() {
+        List<File> victims = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            iterator.remove();
+            totalBytes -= entry.getValue();
+            victims.add(new File(directory, entry.getKey()));
+        }
+        return victims;
+    }
+
+    void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    int getCount() {
+        return entries.size();
+    }
+
+    private void add(String name, long size) {
+        entries.put(name, size);
+        totalBytes += size;
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(String.format(Locale.US, "%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ahs.easymediahelper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * One fixed-size piece of a file, as handed to a {@link ChunkListener} while the file is
+ * written or read back for a resumed upload. Every chunk but the last of a file has the
+ * manifest's chunk size.
+ */
+public final class UploadChunk {
+
+    private final int index;
+    private final long offset;
+    private final byte[] data;
+    private final int length;
+    private final String checksum;
+
+    UploadChunk(int index, long offset, byte[] data, int length, String checksum) {
+        this.index = index;
+        this.offset = offset;
+        this.data = data;
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The position of the chunk's first byte in the file.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return The SHA-256 of the chunk as a lowercase hex string.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return The content of the chunk, read-only.
+     */
+    public ByteBuffer getData() {
+        return ByteBuffer.wrap(data, 0, length).asReadOnlyBuffer();
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(data, 0, length);
+    }
+
+    @Override
+    public String toString() {
+        return "UploadChunk{" + index + ", " + offset + "+" + length + ", " + checksum + "}";
+    }
+}
@@ -0,0 +1,151 @@
+package com.ahs.easymediahelper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Describes a file written with chunked output: its size, the chunk size and the SHA-256 of
+ * every chunk and of the whole file. It is saved as a small properties file in a
+ * {@code .manifests} folder next to the file, so an upload can be resumed or verified later
+ * without hashing the file again.
+ * <p>
+ * This class only depends on {@code java.io} so it can be exercised on the JVM.
+ */
+public final class UploadManifest {
+
+    private static final String DIRECTORY = ".manifests";
+    private static final String SUFFIX = ".manifest";
+    private static final String CHUNK_PREFIX = "chunk.";
+
+    private final String fileName;
+    private final long size;
+    private final int chunkSize;
+    private final String checksum;
+    private final List<String> chunkChecksums;
+
+    UploadManifest(String fileName, long size, int chunkSize, String checksum, List<String> chunkChecksums) {
+        this.fileName = fileName;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.checksum = checksum;
+        this.chunkChecksums = Collections.unmodifiableList(new ArrayList<>(chunkChecksums));
+    }
+
+    /**
+     * Reads the manifest saved when {@code file} was written.
+     *
+     * @throws FileNotFoundException If the file was written without chunked output.
+     */
+    public static UploadManifest read(File file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(fileFor(file))) {
+            properties.load(in);
+        }
+        try {
+            int chunkCount = Integer.parseInt(properties.getProperty("chunkCount"));
+            List<String> chunkChecksums = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                String chunkChecksum = properties.getProperty(CHUNK_PREFIX + i);
+                if (chunkChecksum == null) throw new IOException("Manifest without chunk " + i + ": " + file);
+                chunkChecksums.add(chunkChecksum);
+            }
+            return new UploadManifest(properties.getProperty("fileName", file.getName()),
+                    Long.parseLong(properties.getProperty("size")),
+                    Integer.parseInt(properties.getProperty("chunkSize")),
+                    properties.getProperty("sha256"), chunkChecksums);
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt manifest: " + file, e);
+        }
+    }
+
+    /**
+     * @return Where the manifest of {@code file} is saved.
+     */
+    static File fileFor(File file) {
+        return new File(new File(file.getParentFile(), DIRECTORY), file.getName() + SUFFIX);
+    }
+
+    void writeFor(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("fileName", fileName);
+        properties.setProperty("size", String.valueOf(size));
+        properties.setProperty("chunkSize", String.valueOf(chunkSize));
+        properties.setProperty("sha256", checksum);
+        properties.setProperty("chunkCount", String.valueOf(chunkChecksums.size()));
+        for (int i = 0; i < chunkChecksums.size(); i++) {
+            properties.setProperty(CHUNK_PREFIX + i, chunkChecksums.get(i));
+        }
+
+        File manifestFile = fileFor(file);
+        File directory = manifestFile.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory: " + directory);
+        }
+        PartialFile partial = PartialFile.create(manifestFile);
+        partial.open(false);
+        try {
+            OutputStream out = partial.outputStream();
+            properties.store(out, null);
+            out.flush();
+            partial.commit(manifestFile);
+        } catch (IOException | RuntimeException e) {
+            partial.abort();
+            throw e;
+        }
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return The size of the file in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return The SHA-256 of the whole file as a lowercase hex string.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public int getChunkCount() {
+        return chunkChecksums.size();
+    }
+
+    public long getChunkOffset(int index) {
+        return (long) index * chunkSize;
+    }
+
+    public int getChunkLength(int index) {
+        return (int) Math.min(chunkSize, size - getChunkOffset(index));
+    }
+
+    /**
+     * @return The SHA-256 of chunk {@code index} as a lowercase hex string.
+     */
+    public String getChunkChecksum(int index) {
+        return chunkChecksums.get(index);
+    }
+
+    @Override
+    public String toString() {
+        return "UploadManifest{" + fileName + ", " + size + " bytes, " + chunkChecksums.size() + " chunks of "
+                + chunkSize + ", " + checksum + "}";
+    }
+}
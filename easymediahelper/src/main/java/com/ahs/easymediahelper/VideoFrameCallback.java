@@ -0,0 +1,32 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.Bitmap;
+
+/**
+ * Receives the frames of a video strip from {@link EasyMediaHelper#getVideoFramesAsync} as they
+ * are extracted. All methods are invoked on the main thread.
+ */
+public interface VideoFrameCallback {
+
+    /**
+     * Called for each frame, in order. Frames that cannot be decoded are skipped.
+     *
+     * @param index The position of the frame in the strip.
+     * @param frame The frame. It is shared with the {@link ThumbnailCache} and must not be recycled.
+     */
+    void onFrame(int index, Bitmap frame);
+
+    /**
+     * Called after the last frame.
+     *
+     * @param frameCount The number of frames delivered.
+     */
+    void onComplete(int frameCount);
+
+    /**
+     * Called if the video cannot be read; no further frames follow.
+     *
+     * @param error The cause of the failure.
+     */
+    void onError(Exception error);
+}
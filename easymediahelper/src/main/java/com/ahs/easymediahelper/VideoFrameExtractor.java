@@ -0,0 +1,120 @@
+package com.ahs.easymediahelper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Extracts evenly spaced, scaled frames of a video for a scrubbing strip. A single
+ * {@link MediaMetadataRetriever} serves the whole strip and is only opened if a frame is missing
+ * from the {@link ThumbnailCache}, where every extracted frame is kept in memory and in the disk
+ * tier of the media folder.
+ */
+final class VideoFrameExtractor {
+
+    /** Receives frames on the extracting thread. */
+    interface FrameSink {
+        void onFrame(int index, Bitmap frame);
+    }
+
+    private VideoFrameExtractor() {
+    }
+
+    /**
+     * Extracts {@code frameCount} frames, each from the middle of an equal part of the video and
+     * scaled to fit {@code width} x {@code height}, handing each to {@code sink} as soon as it is
+     * ready. Stops with an {@link InterruptedIOException} if the thread is interrupted.
+     *
+     * @param keyframesOnly Whether to take the nearest keyframe instead of the exact frame,
+     *                      which is much faster but less evenly spaced.
+     * @return The number of frames delivered.
+     */
+    static int extract(Context context, String folderName, String videoPath, int frameCount, int width, int height,
+                       boolean keyframesOnly, FrameSink sink) throws IOException {
+        File file = new File(videoPath);
+        if (!file.exists()) {
+            throw new FileNotFoundException("File not found: " + videoPath);
+        }
+        ThumbnailCache cache = ThumbnailCache.getInstance();
+        File diskDirectory = ThumbnailCache.diskDirectory(context, folderName);
+        String kind = (keyframesOnly ? "strip-sync:" : "strip:") + frameCount + ":";
+        int option = keyframesOnly ? MediaMetadataRetriever.OPTION_CLOSEST_SYNC : MediaMetadataRetriever.OPTION_CLOSEST;
+        MediaMetadataRetriever retriever = null;
+        long durationUs = 0;
+        int delivered = 0;
+        MediaTrace trace = MediaMetrics.begin(MediaOperationMetrics.OPERATION_EXTRACT_VIDEO_FRAMES);
+        try {
+            trace.stage(MediaOperationMetrics.STAGE_DECODE);
+            for (int i = 0; i < frameCount; i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Frame extraction cancelled");
+                }
+                String key = ThumbnailCache.keyFor(file, kind + i, width, height);
+                Bitmap frame = cache.get(key, diskDirectory);
+                if (frame == null) {
+                    if (retriever == null) {
+                        retriever = new MediaMetadataRetriever();
+                        retriever.setDataSource(videoPath);
+                        durationUs = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)) * 1000;
+                        if (durationUs <= 0) {
+                            throw new IOException("Unknown duration: " + videoPath);
+                        }
+                    }
+                    frame = extractFrame(retriever, durationUs * (2L * i + 1) / (2L * frameCount), option, width, height);
+                    if (frame == null) continue;
+                    trace.recordBitmap(frame);
+                    cache.put(key, frame, diskDirectory);
+                }
+                sink.onFrame(i, frame);
+                delivered++;
+            }
+            return delivered;
+        } catch (IOException e) {
+            trace.fail(e);
+            throw e;
+        } catch (RuntimeException e) {
+            trace.fail(e);
+            throw new IOException("Unable to extract frames from " + videoPath, e);
+        } finally {
+            trace.end();
+            if (retriever != null) {
+                try {
+                    retriever.release();
+                } catch (IOException | RuntimeException e) {
+                    // Nothing to clean up that matters
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static Bitmap extractFrame(MediaMetadataRetriever retriever, long timeUs, int option, int width, int height) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            // Decodes straight to the target size instead of a full-resolution frame
+            return retriever.getScaledFrameAtTime(timeUs, option, width, height);
+        }
+        Bitmap full = retriever.getFrameAtTime(timeUs, option);
+        if (full == null) return null;
+        ResizePlan plan = ResizePlan.compute(full.getWidth(), full.getHeight(), width, height, ResizeMode.FIT, false);
+        Bitmap scaled = Bitmap.createScaledBitmap(full, plan.width, plan.height, true);
+        if (scaled != full) full.recycle();
+        return scaled;
+    }
+
+    private static long parseLong(@Nullable String value) {
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.ahs.easymediahelper;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Re-encodes videos to H.264 at a target bitrate and maximum resolution. Decoded frames go
+ * from the decoder's output surface to the encoder's input surface through OpenGL ES, so they
+ * are scaled on the GPU and never copied into the Java heap. The audio track is copied as is.
+ * <p>
+ * Videos that already fit the target are left alone: {@link #transcode} returns false and the
+ * caller copies the original, which is much faster than re-encoding and loses no quality.
+ */
+public class VideoTranscoder {
+
+    public static final int DEFAULT_MAX_DIMENSION = 1280;
+    public static final int DEFAULT_VIDEO_BITRATE = 2_000_000;
+
+    private static final String OUTPUT_MIME = MediaFormat.MIMETYPE_VIDEO_AVC;
+    private static final int MAX_FRAME_RATE = 30;
+    private static final int I_FRAME_INTERVAL_SECONDS = 2;
+    // Sources up to this much above the target bitrate are not worth re-encoding
+    private static final float PASSTHROUGH_TOLERANCE = 1.25f;
+    private static final long TIMEOUT_US = 10_000;
+    private static final int AUDIO_BUFFER_SIZE = 256 * 1024;
+
+    private final int maxDimension;
+    private final int videoBitrate;
+
+    /**
+     * Creates a transcoder targeting 720p at 2 Mbit/s.
+     */
+    public VideoTranscoder() {
+        this(DEFAULT_MAX_DIMENSION, DEFAULT_VIDEO_BITRATE);
+    }
+
+    /**
+     * @param maxDimension The maximum length of the longer side in pixels. Videos are never upscaled.
+     * @param videoBitrate The target video bitrate in bits per second.
+     */
+    public VideoTranscoder(int maxDimension, int videoBitrate) {
+        if (maxDimension <= 0 || videoBitrate <= 0) {
+            throw new IllegalArgumentException("maxDimension and videoBitrate must be positive");
+        }
+        this.maxDimension = maxDimension;
+        this.videoBitrate = videoBitrate;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public int getVideoBitrate() {
+        return videoBitrate;
+    }
+
+    /**
+     * Transcodes the video at {@code source} into {@code output}. The output only appears once
+     * it is complete; nothing is left behind if transcoding fails or the thread is interrupted.
+     *
+     * @return True if the video was transcoded, false if it already fits the target and
+     * {@code output} was not written.
+     */
+    public boolean transcode(Context context, Uri source, File output) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec decoder = null;
+        MediaCodec encoder = null;
+        CodecInputSurface inputSurface = null;
+        CodecOutputSurface outputSurface = null;
+        MediaMuxer muxer = null;
+        PartialFile partial = PartialFile.create(output);
+        boolean committed = false;
+        try {
+            extractor.setDataSource(context, source, null);
+            int videoTrack = findTrack(extractor, "video/");
+            if (videoTrack < 0) {
+                throw new IOException("No video track in " + source);
+            }
+            MediaFormat inputFormat = extractor.getTrackFormat(videoTrack);
+            int width = inputFormat.getInteger(MediaFormat.KEY_WIDTH);
+            int height = inputFormat.getInteger(MediaFormat.KEY_HEIGHT);
+            long bitrate = inputFormat.containsKey(MediaFormat.KEY_BIT_RATE)
+                    ? inputFormat.getInteger(MediaFormat.KEY_BIT_RATE)
+                    : estimateBitrate(getLength(context, source), getLong(inputFormat, MediaFormat.KEY_DURATION));
+            if (shouldPassThrough(width, height, bitrate, maxDimension, videoBitrate)) {
+                return false;
+            }
+
+            int[] size = scaleToFit(width, height, maxDimension);
+            MediaFormat outputFormat = MediaFormat.createVideoFormat(OUTPUT_MIME, size[0], size[1]);
+            outputFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+            outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, videoBitrate);
+            outputFormat.setInteger(MediaFormat.KEY_FRAME_RATE, inputFormat.containsKey(MediaFormat.KEY_FRAME_RATE)
+                    ? Math.min(MAX_FRAME_RATE, inputFormat.getInteger(MediaFormat.KEY_FRAME_RATE)) : MAX_FRAME_RATE);
+            outputFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_SECONDS);
+
+            // The EGL context must be current before the output surface creates its texture
+            encoder = MediaCodec.createEncoderByType(OUTPUT_MIME);
+            encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = new CodecInputSurface(encoder.createInputSurface());
+            inputSurface.makeCurrent();
+            encoder.start();
+
+            outputSurface = new CodecOutputSurface();
+            decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(inputFormat, outputSurface.getSurface(), null, 0);
+            decoder.start();
+
+            partial.open(false);
+            muxer = new MediaMuxer(partial.getFile().getPath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            // Frames are encoded in their stored orientation, the player rotates them like the original
+            if (inputFormat.containsKey(MediaFormat.KEY_ROTATION)) {
+                muxer.setOrientationHint(inputFormat.getInteger(MediaFormat.KEY_ROTATION));
+            }
+            int audioTrack = findTrack(extractor, "audio/");
+            int muxerAudioTrack = audioTrack >= 0 ? muxer.addTrack(extractor.getTrackFormat(audioTrack)) : -1;
+
+            extractor.selectTrack(videoTrack);
+            transcodeVideo(extractor, decoder, encoder, inputSurface, outputSurface, muxer, size);
+            if (audioTrack >= 0) {
+                extractor.unselectTrack(videoTrack);
+                extractor.selectTrack(audioTrack);
+                extractor.seekTo(0, MediaExtractor.SEEK_TO_CLOSEST_SYNC);
+                copySamples(extractor, muxer, muxerAudioTrack);
+            }
+
+            muxer.stop();
+            muxer.release();
+            muxer = null;
+            partial.commit(output);
+            committed = true;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Transcode cancelled");
+        } catch (IllegalStateException e) {
+            // MediaCodec and MediaMuxer report most failures as IllegalStateException
+            throw new IOException("Transcode failed: " + e.getMessage(), e);
+        } finally {
+            extractor.release();
+            if (decoder != null) releaseCodec(decoder);
+            if (encoder != null) releaseCodec(encoder);
+            if (outputSurface != null) outputSurface.release();
+            if (inputSurface != null) inputSurface.release();
+            if (muxer != null) {
+                try {
+                    muxer.release();
+                } catch (RuntimeException e) {
+                    // An unstarted or failed muxer throws on release, the file is discarded anyway
+                }
+            }
+            if (!committed) {
+                partial.abort();
+            }
+        }
+    }
+
+    private static void transcodeVideo(MediaExtractor extractor, MediaCodec decoder, MediaCodec encoder,
+                                       CodecInputSurface inputSurface, CodecOutputSurface outputSurface,
+                                       MediaMuxer muxer, int[] size) throws IOException, InterruptedException {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        boolean inputDone = false;
+        boolean decoderDone = false;
+        int muxerTrack = -1;
+
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Transcode cancelled");
+            }
+
+            if (!inputDone) {
+                int index = decoder.dequeueInputBuffer(TIMEOUT_US);
+                if (index >= 0) {
+                    ByteBuffer buffer = decoder.getInputBuffer(index);
+                    int sampleSize = extractor.readSampleData(buffer, 0);
+                    if (sampleSize < 0) {
+                        decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        decoder.queueInputBuffer(index, 0, sampleSize, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            // Drain everything the encoder has ready, waiting for it only once no more frames are coming
+            while (true) {
+                int index = encoder.dequeueOutputBuffer(info, decoderDone ? TIMEOUT_US : 0);
+                if (index == MediaCodec.INFO_TRY_AGAIN_LATER) break;
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    muxerTrack = muxer.addTrack(encoder.getOutputFormat());
+                    muxer.start();
+                    continue;
+                }
+                if (index < 0) continue;
+
+                ByteBuffer data = encoder.getOutputBuffer(index);
+                // Codec config is carried by the output format
+                if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && info.size > 0) {
+                    if (muxerTrack < 0) {
+                        throw new IllegalStateException("Encoder produced data before its format");
+                    }
+                    data.position(info.offset);
+                    data.limit(info.offset + info.size);
+                    muxer.writeSampleData(muxerTrack, data, info);
+                }
+                encoder.releaseOutputBuffer(index, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    return;
+                }
+            }
+
+            if (!decoderDone) {
+                int index = decoder.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (index >= 0) {
+                    boolean render = info.size > 0;
+                    decoder.releaseOutputBuffer(index, render);
+                    if (render) {
+                        outputSurface.awaitNewImage();
+                        outputSurface.drawImage(size[0], size[1]);
+                        inputSurface.setPresentationTime(info.presentationTimeUs * 1000);
+                        inputSurface.swapBuffers();
+                    }
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        encoder.signalEndOfInputStream();
+                        decoderDone = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void copySamples(MediaExtractor extractor, MediaMuxer muxer, int muxerTrack) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(AUDIO_BUFFER_SIZE);
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Transcode cancelled");
+            }
+            int sampleSize = extractor.readSampleData(buffer, 0);
+            if (sampleSize < 0) return;
+            boolean sync = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0;
+            info.set(0, sampleSize, extractor.getSampleTime(), sync ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+            muxer.writeSampleData(muxerTrack, buffer, info);
+            extractor.advance();
+        }
+    }
+
+    /**
+     * Returns the output size for a {@code width} x {@code height} video whose longer side may be
+     * at most {@code maxDimension}, keeping the aspect ratio. Never upscales, and rounds both
+     * sides down to even numbers as most H.264 encoders require.
+     */
+    static int[] scaleToFit(int width, int height, int maxDimension) {
+        float scale = Math.min(1f, (float) maxDimension / Math.max(width, height));
+        int scaledWidth = Math.max(2, Math.round(width * scale) & ~1);
+        int scaledHeight = Math.max(2, Math.round(height * scale) & ~1);
+        return new int[]{scaledWidth, scaledHeight};
+    }
+
+    /**
+     * Whether a video is already small enough that re-encoding would cost time and quality for
+     * little gain. A video of unknown bitrate is always transcoded.
+     */
+    static boolean shouldPassThrough(int width, int height, long bitrate, int maxDimension, int targetBitrate) {
+        return Math.max(width, height) <= maxDimension
+                && bitrate > 0 && bitrate <= targetBitrate * PASSTHROUGH_TOLERANCE;
+    }
+
+    /**
+     * Estimates the overall bitrate of a file from its size and duration, or returns -1 if
+     * either is unknown.
+     */
+    static long estimateBitrate(long lengthBytes, long durationUs) {
+        if (lengthBytes <= 0 || durationUs <= 0) return -1;
+        return lengthBytes * 8 * 1_000_000 / durationUs;
+    }
+
+    private static int findTrack(MediaExtractor extractor, String mimePrefix) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(mimePrefix)) return i;
+        }
+        return -1;
+    }
+
+    private static long getLong(MediaFormat format, String key) {
+        return format.containsKey(key) ? format.getLong(key) : -1;
+    }
+
+    private static long getLength(Context context, Uri uri) {
+        try (AssetFileDescriptor descriptor = context.getContentResolver().openAssetFileDescriptor(uri, "r")) {
+            return descriptor != null ? descriptor.getLength() : -1;
+        } catch (IOException | SecurityException e) {
+            return -1;
+        }
+    }
+
+    private static void releaseCodec(MediaCodec codec) {
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            // Never started or already failed
+        }
+        codec.release();
+    }
+}
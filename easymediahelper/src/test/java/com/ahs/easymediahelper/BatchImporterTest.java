@@ -0,0 +1,102 @@
+package com.ahs.easymediahelper;
+
+import android.net.Uri;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BatchImporter}. The Uris are only passed through, so the items
+ * are told apart by their index.
+ */
+public class BatchImporterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void importAll_keepsResultsInOrderWithTheirSizes() throws Exception {
+        BatchImporter importer = new BatchImporter(3);
+
+        BatchImportResult result = importer.importAll(uris(5), (batch, uri, index) -> {
+            File file = temporaryFolder.newFile(batch.itemPrefix(index) + "item.bin");
+            Files.write(file.toPath(), new byte[index + 1]);
+            return file.getAbsolutePath();
+        }, null);
+
+        List<ImportResult> results = result.getResults();
+        assertEquals(5, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertTrue(results.get(i).isSuccessful());
+            assertNull(results.get(i).getError());
+            assertTrue(results.get(i).getPath().contains("_" + i + "_item.bin"));
+            assertEquals(i + 1, results.get(i).getBytes());
+        }
+    }
+
+    @Test
+    public void importAll_reportsTheErrorOfAFailedItem() throws Exception {
+        IOException failure = new FileTooLargeException(1024);
+
+        BatchImportResult result = new BatchImporter(2).importAll(uris(3), (batch, uri, index) -> {
+            if (index == 1) throw failure;
+            return index == 2 ? "" : temporaryFolder.newFile().getAbsolutePath();
+        }, null);
+
+        List<ImportResult> results = result.getResults();
+        assertTrue(results.get(0).isSuccessful());
+        assertFalse(results.get(1).isSuccessful());
+        assertSame(failure, results.get(1).getError());
+        // A rejected item has neither a path nor an error
+        assertFalse(results.get(2).isSuccessful());
+        assertNull(results.get(2).getError());
+    }
+
+    @Test
+    public void importAll_notifiesTheListenerOncePerItem() throws Exception {
+        List<Integer> completed = new CopyOnWriteArrayList<>();
+
+        new BatchImporter(4).importAll(uris(6), (batch, uri, index) -> {
+            if (index % 2 == 0) throw new IOException("Item " + index);
+            return temporaryFolder.newFile().getAbsolutePath();
+        }, (result, count, total) -> {
+            assertEquals(6, total);
+            completed.add(count);
+        });
+
+        List<Integer> sorted = new ArrayList<>(completed);
+        Collections.sort(sorted);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), sorted);
+    }
+
+    @Test
+    public void itemPrefix_isUniqueAcrossItemsAndBatches() {
+        BatchImporter first = new BatchImporter(1);
+        BatchImporter second = new BatchImporter(1);
+
+        Set<String> prefixes = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(prefixes.add(first.itemPrefix(i)));
+            assertTrue(prefixes.add(second.itemPrefix(i)));
+        }
+        assertEquals(first.itemPrefix(0), first.itemPrefix(0));
+    }
+
+    private static List<Uri> uris(int count) {
+        return new ArrayList<>(Collections.nCopies(count, (Uri) null));
+    }
+}
@@ -0,0 +1,50 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the subsampling math used by {@link BitmapDecoder}.
+ */
+public class BitmapDecoderTest {
+
+    @Test
+    public void sampleSize_isOneWhenSourceIsSmallerThanTarget() {
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(640, 480, 800, 600));
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(800, 600, 800, 600));
+    }
+
+    @Test
+    public void sampleSize_isLargestPowerOfTwoKeepingTargetResolution() {
+        assertEquals(2, BitmapDecoder.calculateInSampleSize(1600, 1200, 800, 600));
+        assertEquals(8, BitmapDecoder.calculateInSampleSize(8000, 6000, 800, 600));
+        // Portrait source with a landscape target is limited by its narrow side
+        assertEquals(4, BitmapDecoder.calculateInSampleSize(6000, 8000, 800, 600));
+    }
+
+    @Test
+    public void peakBitmapBytes_for48MegapixelCapture_isProportionalToTarget() {
+        int srcWidth = 8000;
+        int srcHeight = 6000;
+        int reqWidth = 800;
+        int reqHeight = 600;
+
+        int sampleSize = BitmapDecoder.calculateInSampleSize(srcWidth, srcHeight, reqWidth, reqHeight);
+        long decodedBytes = BitmapDecoder.estimateDecodedBytes(srcWidth, srcHeight, sampleSize, 4);
+        long fullBytes = BitmapDecoder.estimateDecodedBytes(srcWidth, srcHeight, 1, 4);
+        long targetBytes = (long) reqWidth * reqHeight * 4;
+
+        assertEquals(192_000_000L, fullBytes);
+        // A power-of-two sample never overshoots the target by more than 2x per side
+        assertTrue(decodedBytes <= targetBytes * 4);
+        assertEquals(3_000_000L, decodedBytes);
+    }
+
+    @Test
+    public void peakBitmapBytes_withRgb565_isHalved() {
+        long argb = BitmapDecoder.estimateDecodedBytes(4000, 3000, 4, 4);
+        long rgb565 = BitmapDecoder.estimateDecodedBytes(4000, 3000, 4, 2);
+        assertEquals(argb / 2, rgb565);
+    }
+}
@@ -0,0 +1,103 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the bucket and eviction bookkeeping of {@link BitmapPool}, kept in
+ * {@link BitmapPoolBuckets}. Plain objects stand in for bitmaps.
+ */
+public class BitmapPoolTest {
+
+    @Test
+    public void get_returnsTheSmallestAllocationThatFits() {
+        BitmapPoolBuckets<String> pool = new BitmapPoolBuckets<>(10_000);
+        pool.put("small", 1_000);
+        pool.put("large", 4_000);
+
+        assertEquals("small", pool.get(800));
+        assertEquals("large", pool.get(2_500));
+        assertNull(pool.get(100));
+
+        assertEquals(0, pool.getCurrentBytes());
+        assertEquals(2, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(2, pool.getPutCount());
+    }
+
+    @Test
+    public void get_tooWastefulAllocation_isAMiss() {
+        BitmapPoolBuckets<String> pool = new BitmapPoolBuckets<>(10_000);
+        pool.put("large", 4_000);
+
+        // More than MAX_SIZE_MULTIPLE times the request would waste memory
+        assertNull(pool.get(1_999));
+        assertNull(pool.get(4_001));
+        assertNull(pool.get(0));
+        assertEquals("large", pool.get(2_000));
+        assertEquals(3, pool.getMissCount());
+    }
+
+    @Test
+    public void put_overMaximum_evictsTheOldestFirst() {
+        BitmapPoolBuckets<String> pool = new BitmapPoolBuckets<>(3_000);
+        assertEquals(Collections.emptyList(), pool.put("a", 1_000));
+        assertEquals(Collections.emptyList(), pool.put("b", 1_000));
+        assertEquals(Collections.emptyList(), pool.put("c", 1_000));
+
+        assertEquals(Arrays.asList("a", "b"), pool.put("d", 2_000));
+
+        assertEquals(3_000, pool.getCurrentBytes());
+        assertEquals(2, pool.getEvictionCount());
+        assertFalse(pool.contains("a"));
+        assertTrue(pool.contains("c"));
+        // Evicted items are gone from their bucket too
+        assertEquals("c", pool.get(1_000));
+        assertEquals("d", pool.get(1_000));
+        assertEquals(0, pool.getCurrentBytes());
+    }
+
+    @Test
+    public void put_largerThanThePool_isHandedBack() {
+        BitmapPoolBuckets<String> pool = new BitmapPoolBuckets<>(1_000);
+
+        assertEquals(Collections.singletonList("huge"), pool.put("huge", 5_000));
+
+        assertFalse(pool.contains("huge"));
+        assertEquals(0, pool.getCurrentBytes());
+        assertEquals(0, pool.getPutCount());
+    }
+
+    @Test
+    public void setMaxBytes_andTrim_evictDownToTheNewSize() {
+        BitmapPoolBuckets<String> pool = new BitmapPoolBuckets<>(10_000);
+        pool.put("a", 1_000);
+        pool.put("b", 2_000);
+        pool.put("c", 3_000);
+
+        assertEquals(Collections.singletonList("a"), pool.setMaxBytes(5_000));
+        assertEquals(5_000, pool.getMaxBytes());
+        assertEquals(Arrays.asList("b", "c"), pool.trimToSize(0));
+
+        assertEquals(0, pool.getCurrentBytes());
+        assertEquals(3, pool.getEvictionCount());
+        assertNull(pool.get(1_000));
+    }
+
+    @Test
+    public void get_takenItem_isNoLongerEvicted() {
+        BitmapPoolBuckets<String> pool = new BitmapPoolBuckets<>(2_000);
+        pool.put("a", 1_000);
+        pool.put("b", 1_000);
+        String taken = pool.get(1_000);
+
+        // Taking from a bucket hands out the most recently released item
+        assertEquals("b", taken);
+        assertEquals(Collections.singletonList("a"), pool.trimToSize(0));
+        assertFalse(pool.contains(taken));
+    }
+}
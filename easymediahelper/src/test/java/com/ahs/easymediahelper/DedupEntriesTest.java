@@ -0,0 +1,99 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link DedupEntries}, the keys and entries of {@link DedupIndex}.
+ */
+public class DedupEntriesTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sourceKey_withoutSizeOrModificationTime_isNull() {
+        assertNull(DedupEntries.sourceKey("content://docs/1", -1, 1_000));
+        assertNull(DedupEntries.sourceKey("content://docs/1", 10, 0));
+        assertNull(DedupEntries.sourceKey("content://docs/1", 10, -5));
+        assertEquals("src:content://docs/1|0|1000", DedupEntries.sourceKey("content://docs/1", 0, 1_000));
+        assertNotEquals(DedupEntries.sourceKey("content://docs/1", 10, 1_000),
+                DedupEntries.sourceKey("content://docs/1", 10, 2_000));
+    }
+
+    @Test
+    public void pathOf_unchangedFile_returnsItsPath() throws IOException {
+        File file = write("a.pdf", 100);
+
+        assertEquals(file.getPath(), DedupEntries.pathOf(DedupEntries.entryFor(file, 5_000)));
+        // Entries recorded before the recording time was stored
+        assertEquals(file.getPath(), DedupEntries.pathOf(file.getPath() + "\n100\n" + file.lastModified()));
+    }
+
+    @Test
+    public void pathOf_deletedOrChangedFile_isStale() throws IOException {
+        File deleted = write("deleted.pdf", 100);
+        String deletedEntry = DedupEntries.entryFor(deleted, 1_000);
+        assertTrue(deleted.delete());
+        File resized = write("resized.pdf", 100);
+        String resizedEntry = DedupEntries.entryFor(resized, 1_000);
+        Files.write(resized.toPath(), new byte[200]);
+        File touched = write("touched.pdf", 100);
+        String touchedEntry = DedupEntries.entryFor(touched, 1_000);
+        assertTrue(touched.setLastModified(touched.lastModified() + 60_000));
+
+        assertNull(DedupEntries.pathOf(deletedEntry));
+        assertNull(DedupEntries.pathOf(resizedEntry));
+        assertNull(DedupEntries.pathOf(touchedEntry));
+        assertNull(DedupEntries.pathOf("not an entry"));
+        assertNull(DedupEntries.pathOf(null));
+    }
+
+    @Test
+    public void prune_removesStaleEntriesAndKeepsOtherPreferences() throws IOException {
+        File kept = write("kept.jpg", 10);
+        File gone = write("gone.jpg", 10);
+        Map<String, Object> entries = new HashMap<>();
+        entries.put("sha:aa", DedupEntries.entryFor(kept, 1_000));
+        entries.put("src:content://a|10|5", DedupEntries.entryFor(kept, 1_000));
+        entries.put("sha:bb", DedupEntries.entryFor(gone, 2_000));
+        entries.put("sha:cc", 42);
+        entries.put("unrelated", "value");
+        assertTrue(gone.delete());
+
+        assertEquals(new HashSet<>(Arrays.asList("sha:bb", "sha:cc")),
+                new HashSet<>(DedupEntries.prune(entries, DedupEntries.MAX_ENTRIES)));
+    }
+
+    @Test
+    public void prune_overCap_removesTheOldestEntries() throws IOException {
+        File file = write("photo.jpg", 10);
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put("sha:new", DedupEntries.entryFor(file, 3_000));
+        entries.put("sha:old", DedupEntries.entryFor(file, 1_000));
+        entries.put("sha:middle", DedupEntries.entryFor(file, 2_000));
+        entries.put("sha:legacy", file.getPath() + "\n10\n" + file.lastModified());
+
+        assertEquals(Arrays.asList("sha:legacy", "sha:old"), DedupEntries.prune(entries, 2));
+        assertEquals(Collections.emptyList(), DedupEntries.prune(entries, 4));
+    }
+
+    private File write(String name, int size) throws IOException {
+        File file = temporaryFolder.newFile(name);
+        Files.write(file.toPath(), new byte[size]);
+        return file;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ahs.easymediahelper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for a resumable upload server: keeps chunks in memory, verifies their
+ * checksums and the whole file on completion, and can be told to fail calls to exercise
+ * retries and resumption.
+ */
+class FakeUploadServer implements ChunkUploader {
+
+    private final Map<String, TreeMap<Integer, byte[]>> uploads = new HashMap<>();
+    private final Map<String, byte[]> completed = new HashMap<>();
+    private final AtomicInteger chunkUploads = new AtomicInteger();
+    private int failuresLeft;
+    private boolean down;
+
+    /** Fails the next {@code count} chunk uploads, like a flaky connection. */
+    synchronized void failNextChunkUploads(int count) {
+        failuresLeft = count;
+    }
+
+    /** Fails every call until it is brought back up. */
+    synchronized void setDown(boolean down) {
+        this.down = down;
+    }
+
+    int getChunkUploadCount() {
+        return chunkUploads.get();
+    }
+
+    synchronized byte[] getCompletedFile(String uploadId) {
+        return completed.get(uploadId);
+    }
+
+    @Override
+    public synchronized String createUpload() throws IOException {
+        checkUp();
+        String uploadId = "upload-" + (uploads.size() + 1);
+        uploads.put(uploadId, new TreeMap<>());
+        return uploadId;
+    }
+
+    @Override
+    public synchronized Set<Integer> getUploadedChunks(String uploadId) throws IOException {
+        checkUp();
+        return new HashSet<>(chunks(uploadId).keySet());
+    }
+
+    @Override
+    public synchronized void uploadChunk(String uploadId, UploadChunk chunk) throws IOException {
+        checkUp();
+        if (failuresLeft > 0) {
+            failuresLeft--;
+            throw new IOException("Connection reset");
+        }
+        ByteBuffer data = chunk.getData();
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        if (!ChunkWriter.toHex(ChunkWriter.newDigest().digest(bytes)).equals(chunk.getChecksum())) {
+            throw new IllegalStateException("Checksum mismatch in chunk " + chunk.getIndex());
+        }
+        chunks(uploadId).put(chunk.getIndex(), bytes);
+        chunkUploads.incrementAndGet();
+    }
+
+    @Override
+    public synchronized void completeUpload(String uploadId, UploadManifest manifest) throws IOException {
+        checkUp();
+        TreeMap<Integer, byte[]> chunks = chunks(uploadId);
+        if (chunks.size() != manifest.getChunkCount()) {
+            throw new IllegalStateException("Missing chunks: " + chunks.size() + " of " + manifest.getChunkCount());
+        }
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks.values()) {
+            file.write(chunk, 0, chunk.length);
+        }
+        MessageDigest digest = ChunkWriter.newDigest();
+        if (!ChunkWriter.toHex(digest.digest(file.toByteArray())).equals(manifest.getChecksum())) {
+            throw new IllegalStateException("Checksum mismatch in " + manifest.getFileName());
+        }
+        completed.put(uploadId, file.toByteArray());
+    }
+
+    private TreeMap<Integer, byte[]> chunks(String uploadId) {
+        TreeMap<Integer, byte[]> chunks = uploads.get(uploadId);
+        if (chunks == null) throw new IllegalArgumentException("Unknown upload: " + uploadId);
+        return chunks;
+    }
+
+    private void checkUp() throws IOException {
+        if (down) throw new IOException("Server unavailable");
+    }
+}
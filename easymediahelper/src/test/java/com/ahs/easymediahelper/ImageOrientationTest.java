@@ -0,0 +1,86 @@
+package com.ahs.easymediahelper;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the orientation math of {@link ImageOrientation}. The stored image is
+ * 400 x 300 and the region kept is {@code (10, 20) - (110, 70)} of the upright image.
+ */
+public class ImageOrientationTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    @Test
+    public void toStoredRegion_normal_isUnchanged() {
+        assertRegion(new int[]{10, 20, 110, 70}, ExifInterface.ORIENTATION_NORMAL);
+        assertRegion(new int[]{10, 20, 110, 70}, ExifInterface.ORIENTATION_UNDEFINED);
+    }
+
+    @Test
+    public void toStoredRegion_flipHorizontal_mirrorsX() {
+        assertRegion(new int[]{290, 20, 390, 70}, ExifInterface.ORIENTATION_FLIP_HORIZONTAL);
+    }
+
+    @Test
+    public void toStoredRegion_rotate180_mirrorsBothAxes() {
+        assertRegion(new int[]{290, 230, 390, 280}, ExifInterface.ORIENTATION_ROTATE_180);
+    }
+
+    @Test
+    public void toStoredRegion_flipVertical_mirrorsY() {
+        assertRegion(new int[]{10, 230, 110, 280}, ExifInterface.ORIENTATION_FLIP_VERTICAL);
+    }
+
+    @Test
+    public void toStoredRegion_transpose_swapsAxes() {
+        assertRegion(new int[]{20, 10, 70, 110}, ExifInterface.ORIENTATION_TRANSPOSE);
+    }
+
+    @Test
+    public void toStoredRegion_rotate90_takesTheBottomLeftOfTheStoredImage() {
+        assertRegion(new int[]{20, 190, 70, 290}, ExifInterface.ORIENTATION_ROTATE_90);
+    }
+
+    @Test
+    public void toStoredRegion_transverse_takesTheBottomRightOfTheStoredImage() {
+        assertRegion(new int[]{330, 190, 380, 290}, ExifInterface.ORIENTATION_TRANSVERSE);
+    }
+
+    @Test
+    public void toStoredRegion_rotate270_takesTheTopRightOfTheStoredImage() {
+        assertRegion(new int[]{330, 10, 380, 110}, ExifInterface.ORIENTATION_ROTATE_270);
+    }
+
+    @Test
+    public void toStoredRegion_wholeUprightImage_isTheWholeStoredImage() {
+        for (int orientation = ExifInterface.ORIENTATION_NORMAL;
+             orientation <= ExifInterface.ORIENTATION_ROTATE_270; orientation++) {
+            boolean sideways = ImageOrientation.isSideways(orientation);
+            int[] stored = ImageOrientation.toStoredRegion(0, 0, sideways ? HEIGHT : WIDTH,
+                    sideways ? WIDTH : HEIGHT, WIDTH, HEIGHT, orientation);
+            assertArrayEquals("Orientation " + orientation, new int[]{0, 0, WIDTH, HEIGHT}, stored);
+        }
+    }
+
+    @Test
+    public void rotationDegrees_matchesExifInterface() {
+        assertEquals(0, ImageOrientation.rotationDegrees(ExifInterface.ORIENTATION_UNDEFINED));
+        assertEquals(0, ImageOrientation.rotationDegrees(ExifInterface.ORIENTATION_NORMAL));
+        assertEquals(0, ImageOrientation.rotationDegrees(ExifInterface.ORIENTATION_FLIP_HORIZONTAL));
+        assertEquals(180, ImageOrientation.rotationDegrees(ExifInterface.ORIENTATION_ROTATE_180));
+        assertEquals(180, ImageOrientation.rotationDegrees(ExifInterface.ORIENTATION_FLIP_VERTICAL));
+        assertEquals(270, ImageOrientation.rotationDegrees(ExifInterface.ORIENTATION_TRANSPOSE));
+        assertEquals(90, ImageOrientation.rotationDegrees(ExifInterface.ORIENTATION_ROTATE_90));
+        assertEquals(90, ImageOrientation.rotationDegrees(ExifInterface.ORIENTATION_TRANSVERSE));
+        assertEquals(270, ImageOrientation.rotationDegrees(ExifInterface.ORIENTATION_ROTATE_270));
+    }
+
+    private static void assertRegion(int[] expected, int orientation) {
+        assertArrayEquals(expected, ImageOrientation.toStoredRegion(10, 20, 110, 70, WIDTH, HEIGHT, orientation));
+    }
+}
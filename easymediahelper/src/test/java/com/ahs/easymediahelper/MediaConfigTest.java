@@ -0,0 +1,117 @@
+package com.ahs.easymediahelper;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for persisting a {@link MediaConfig}, which jobs and saved sessions rely on.
+ */
+public class MediaConfigTest {
+
+    @Test
+    public void writeTo_thenReadFrom_restoresEverySetting() {
+        MediaConfig config = new MediaConfig("Receipts", 1920, 1080, 65, Bitmap.Config.RGB_565,
+                ImageEncoders.WEBP_LOSSLESS, ResizeMode.CENTER_CROP, false, OutputTarget.MEDIA_STORE,
+                true, true, 250, new VideoTranscoder(720, 1_500_000), 4096, file -> null);
+        Map<String, String> params = new HashMap<>();
+
+        assertTrue(config.writeTo(params));
+        MediaConfig restored = MediaConfig.readFrom(params, MediaConfig.DEFAULTS);
+
+        assertEquals("Receipts", restored.folderName);
+        assertEquals(1920, restored.width);
+        assertEquals(1080, restored.height);
+        assertEquals(65, restored.quality);
+        assertEquals(Bitmap.Config.RGB_565, restored.config);
+        assertSame(ImageEncoders.WEBP_LOSSLESS, restored.encoder);
+        assertEquals(ResizeMode.CENTER_CROP, restored.resizeMode);
+        assertFalse(restored.upscale);
+        assertEquals(OutputTarget.MEDIA_STORE, restored.outputTarget);
+        assertTrue(restored.deduplicate);
+        assertTrue(restored.compressSelectedImages);
+        assertEquals(250, restored.maxFileSizeMB);
+        assertEquals(720, restored.transcoder.getMaxDimension());
+        assertEquals(1_500_000, restored.transcoder.getVideoBitrate());
+        assertEquals(4096, restored.chunkSize);
+        // Chunk listeners only live in this process
+        assertNull(restored.chunkListeners);
+    }
+
+    @Test
+    public void readFrom_missingKeys_takesTheDefaults() {
+        MediaConfig defaults = MediaConfig.DEFAULTS;
+
+        MediaConfig restored = MediaConfig.readFrom(new HashMap<>(), defaults);
+
+        assertEquals(defaults.folderName, restored.folderName);
+        assertEquals(defaults.width, restored.width);
+        assertEquals(defaults.height, restored.height);
+        assertEquals(defaults.quality, restored.quality);
+        assertEquals(defaults.config, restored.config);
+        assertSame(defaults.encoder, restored.encoder);
+        assertEquals(defaults.resizeMode, restored.resizeMode);
+        assertEquals(defaults.upscale, restored.upscale);
+        assertEquals(defaults.outputTarget, restored.outputTarget);
+        assertEquals(defaults.deduplicate, restored.deduplicate);
+        assertEquals(defaults.compressSelectedImages, restored.compressSelectedImages);
+        assertEquals(defaults.maxFileSizeMB, restored.maxFileSizeMB);
+        assertNull(restored.transcoder);
+        assertEquals(defaults.chunkSize, restored.chunkSize);
+    }
+
+    @Test
+    public void readFrom_jobWithoutNewerKeys_keepsWhatWasWritten() {
+        // A job persisted before quality and the transcoder size existed
+        Map<String, String> params = new HashMap<>();
+        params.put("folderName", "Old");
+        params.put("encoder", "PNG");
+        params.put("videoBitrate", "3000000");
+
+        MediaConfig restored = MediaConfig.readFrom(params, MediaConfig.DEFAULTS);
+
+        assertEquals("Old", restored.folderName);
+        assertSame(ImageEncoders.PNG, restored.encoder);
+        assertEquals(MediaConfig.DEFAULTS.quality, restored.quality);
+        assertEquals(VideoTranscoder.DEFAULT_MAX_DIMENSION, restored.transcoder.getMaxDimension());
+        assertEquals(3_000_000, restored.transcoder.getVideoBitrate());
+    }
+
+    @Test
+    public void writeTo_customEncoder_returnsFalseAndWritesTheRest() {
+        ImageEncoder custom = new ImageEncoder() {
+            @Override
+            public boolean encode(Bitmap bitmap, int quality, OutputStream out) {
+                return false;
+            }
+
+            @Override
+            public String getExtension() {
+                return ".avif";
+            }
+
+            @Override
+            public String getMimeType() {
+                return "image/avif";
+            }
+        };
+        MediaConfig config = new MediaConfig("Custom", 800, 600, 80, Bitmap.Config.ARGB_8888, custom,
+                ResizeMode.FIT, true, OutputTarget.APP_STORAGE, false, false, 10, null, 0, null);
+        Map<String, String> params = new HashMap<>();
+
+        assertFalse(config.writeTo(params));
+
+        assertFalse(params.containsKey("encoder"));
+        assertFalse(params.containsKey("videoBitrate"));
+        MediaConfig restored = MediaConfig.readFrom(params, MediaConfig.DEFAULTS);
+        assertEquals("Custom", restored.folderName);
+        assertEquals(ResizeMode.FIT, restored.resizeMode);
+        assertSame(MediaConfig.DEFAULTS.encoder, restored.encoder);
+    }
+}
@@ -0,0 +1,150 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MediaCopier}.
+ */
+public class MediaCopierTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void copy_fromFile_usesTransferAndCopiesAllBytes() throws IOException {
+        byte[] data = randomBytes(3 * MediaCopier.BUFFER_SIZE + 17);
+        File source = temporaryFolder.newFile("source.bin");
+        Files.write(source.toPath(), data);
+        File target = temporaryFolder.newFile("target.bin");
+
+        long copied;
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(target)) {
+            assertTrue(MediaCopier.isSeekable(in.getChannel()));
+            copied = MediaCopier.copy(in, out.getChannel());
+        }
+
+        assertEquals(data.length, copied);
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void copy_fromStream_usesPooledBufferAndCopiesAllBytes() throws IOException {
+        byte[] data = randomBytes(5 * MediaCopier.BUFFER_SIZE + 3);
+        File target = temporaryFolder.newFile("target.bin");
+
+        long copied;
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            copied = MediaCopier.copy(new ByteArrayInputStream(data), out.getChannel());
+        }
+
+        assertEquals(data.length, copied);
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void copy_emptySource_copiesNothing() throws IOException {
+        File source = temporaryFolder.newFile("empty.bin");
+        File target = temporaryFolder.newFile("target.bin");
+
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(target)) {
+            assertEquals(0, MediaCopier.copy(in, out.getChannel()));
+        }
+        assertEquals(0, target.length());
+    }
+
+    @Test
+    public void copy_withProgress_reportsFinalByteCountAndTotal() throws IOException {
+        byte[] data = randomBytes(4 * MediaCopier.BUFFER_SIZE);
+        File target = temporaryFolder.newFile("target.bin");
+        List<long[]> updates = new ArrayList<>();
+        MediaCopier.Progress progress = new MediaCopier.Progress(data.length, -1,
+                (bytesCopied, totalBytes) -> updates.add(new long[]{bytesCopied, totalBytes}), 0);
+
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            MediaCopier.copy(new ByteArrayInputStream(data), out.getChannel(), progress);
+        }
+
+        assertFalse(updates.isEmpty());
+        long[] last = updates.get(updates.size() - 1);
+        assertEquals(data.length, last[0]);
+        assertEquals(data.length, last[1]);
+    }
+
+    @Test
+    public void copy_overLimit_abortsAfterReadingOnlyTheLimit() throws IOException {
+        byte[] data = randomBytes(10 * MediaCopier.BUFFER_SIZE);
+        File source = temporaryFolder.newFile("source.bin");
+        Files.write(source.toPath(), data);
+        File target = temporaryFolder.newFile("target.bin");
+        long maxBytes = 2 * MediaCopier.BUFFER_SIZE + 5;
+        MediaCopier.Progress progress = new MediaCopier.Progress(-1, maxBytes, null, 0);
+
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(target)) {
+            MediaCopier.copy(in, out.getChannel(), progress);
+            fail("Expected FileTooLargeException");
+        } catch (FileTooLargeException e) {
+            assertEquals(maxBytes, e.getMaxBytes());
+        }
+        assertEquals(maxBytes + 1, progress.getBytesCopied());
+    }
+
+    @Test
+    public void copy_onInterruptedThread_isCancelled() throws IOException {
+        byte[] data = randomBytes(2 * MediaCopier.BUFFER_SIZE);
+        File target = temporaryFolder.newFile("target.bin");
+        MediaCopier.Progress progress = new MediaCopier.Progress(data.length, -1, null, 0);
+
+        Thread.currentThread().interrupt();
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            MediaCopier.copy(new ByteArrayInputStream(data), out.getChannel(), progress);
+            fail("Expected InterruptedIOException");
+        } catch (InterruptedIOException e) {
+            assertTrue(progress.getBytesCopied() < data.length);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void copy_withDigest_hashesContentWhileCopying() throws IOException, NoSuchAlgorithmException {
+        byte[] data = randomBytes(3 * MediaCopier.BUFFER_SIZE + 11);
+        File source = temporaryFolder.newFile("source.bin");
+        Files.write(source.toPath(), data);
+        File target = temporaryFolder.newFile("target.bin");
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(target)) {
+            MediaCopier.copy(in, out.getChannel(), new MediaCopier.Progress(-1, -1, null, 0).withDigest(digest));
+        }
+
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), digest.digest());
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
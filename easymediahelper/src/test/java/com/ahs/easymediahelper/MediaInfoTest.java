@@ -0,0 +1,52 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MediaInfo}.
+ */
+public class MediaInfoTest {
+
+    @Test
+    public void displaySize_ofRotatedImage_isSwapped() {
+        MediaInfo info = image(90);
+
+        assertEquals(4000, info.getWidth());
+        assertEquals(3000, info.getHeight());
+        assertEquals(3000, info.getDisplayWidth());
+        assertEquals(4000, info.getDisplayHeight());
+    }
+
+    @Test
+    public void displaySize_ofUpsideDownImage_isUnchanged() {
+        MediaInfo info = image(180);
+
+        assertEquals(4000, info.getDisplayWidth());
+        assertEquals(3000, info.getDisplayHeight());
+    }
+
+    @Test
+    public void kind_followsMimeType() {
+        assertTrue(image(0).isImage());
+        assertFalse(image(0).isVideo());
+
+        MediaInfo video = new MediaInfo(null, "clip.mp4", "video/mp4", 1 << 20, MediaInfo.UNKNOWN, 1920, 1080,
+                12_000, MediaInfo.UNKNOWN, 270);
+        assertTrue(video.isVideo());
+        assertFalse(video.isImage());
+        assertEquals(1080, video.getDisplayWidth());
+        assertEquals(12_000, video.getDurationMs());
+
+        MediaInfo unknown = new MediaInfo(null, null, null, MediaInfo.UNKNOWN, MediaInfo.UNKNOWN,
+                MediaInfo.UNKNOWN, MediaInfo.UNKNOWN, MediaInfo.UNKNOWN, MediaInfo.UNKNOWN, 0);
+        assertFalse(unknown.isImage());
+        assertFalse(unknown.isVideo());
+    }
+
+    private static MediaInfo image(int rotation) {
+        return new MediaInfo(null, "photo.jpg", "image/jpeg", 2048, 1_700_000_000_000L, 4000, 3000,
+                MediaInfo.UNKNOWN, MediaInfo.ORIENTATION_NORMAL, rotation);
+    }
+}
@@ -0,0 +1,166 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MediaJobQueue}, driven by a direct executor and a manual clock.
+ */
+public class MediaJobQueueTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void enqueue_runsJobAndRemovesRecord() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        LocalEnvironment environment = new LocalEnvironment();
+        MediaJobQueue queue = newQueue(directory, environment);
+        RecordingListener listener = new RecordingListener();
+        queue.addListener(listener);
+        queue.registerWorker("copy", job -> "/out/" + job.getParam("name"));
+
+        queue.enqueue("copy", Collections.singletonMap("name", "a.jpg"), false, false);
+
+        assertEquals(Collections.singletonList("/out/a.jpg"), listener.results);
+        assertEquals(0, queue.getJobCount());
+        assertTrue(new MediaJobStore(directory).loadAll().isEmpty());
+    }
+
+    @Test
+    public void failedJob_isRetriedWithBackoffAndGivenUp() throws IOException {
+        LocalEnvironment environment = new LocalEnvironment();
+        MediaJobQueue queue = newQueue(temporaryFolder.newFolder(), environment);
+        queue.setMaxAttempts(3);
+        RecordingListener listener = new RecordingListener();
+        queue.addListener(listener);
+        int[] runs = new int[1];
+        queue.registerWorker("flaky", job -> {
+            runs[0]++;
+            throw new IOException("Disk busy");
+        });
+
+        queue.enqueue("flaky", Collections.emptyMap(), false, false);
+        assertEquals(1, runs[0]);
+        assertEquals(MediaJobQueue.INITIAL_BACKOFF_MS, environment.scheduledDelay);
+
+        environment.advance(MediaJobQueue.INITIAL_BACKOFF_MS - 1);
+        queue.pump();
+        assertEquals(1, runs[0]);
+
+        environment.advance(1);
+        queue.pump();
+        assertEquals(2, runs[0]);
+        assertEquals(2 * MediaJobQueue.INITIAL_BACKOFF_MS, environment.scheduledDelay);
+
+        environment.advance(2 * MediaJobQueue.INITIAL_BACKOFF_MS);
+        queue.pump();
+        assertEquals(3, runs[0]);
+        assertEquals(1, listener.failures.size());
+        assertEquals(0, queue.getJobCount());
+    }
+
+    @Test
+    public void constrainedJob_waitsForCharging() throws IOException {
+        LocalEnvironment environment = new LocalEnvironment();
+        MediaJobQueue queue = newQueue(temporaryFolder.newFolder(), environment);
+        RecordingListener listener = new RecordingListener();
+        queue.addListener(listener);
+        queue.registerWorker("transcode", job -> "done");
+
+        queue.enqueue("transcode", Collections.emptyMap(), true, false);
+        assertTrue(listener.results.isEmpty());
+        assertEquals(1, queue.getJobCount());
+
+        environment.charging = true;
+        environment.constraintsChanged.run();
+        assertEquals(Collections.singletonList("done"), listener.results);
+    }
+
+    @Test
+    public void pendingJobs_surviveQueueRecreation() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        LocalEnvironment environment = new LocalEnvironment();
+        // No worker registered yet, as after process death before the app registered it
+        newQueue(directory, environment).enqueue("copy", Collections.singletonMap("name", "b.mp4"), false, false);
+
+        MediaJobQueue restored = newQueue(directory, environment);
+        RecordingListener listener = new RecordingListener();
+        restored.addListener(listener);
+        assertEquals(1, restored.getJobCount());
+        restored.registerWorker("copy", job -> job.getParam("name"));
+
+        assertEquals(Collections.singletonList("b.mp4"), listener.results);
+    }
+
+    @Test
+    public void backoff_doublesUpToMaximum() {
+        assertEquals(MediaJobQueue.INITIAL_BACKOFF_MS, MediaJobQueue.backoffMillis(1));
+        assertEquals(4 * MediaJobQueue.INITIAL_BACKOFF_MS, MediaJobQueue.backoffMillis(3));
+        assertEquals(MediaJobQueue.MAX_BACKOFF_MS, MediaJobQueue.backoffMillis(40));
+    }
+
+    private static MediaJobQueue newQueue(File directory, LocalEnvironment environment) {
+        return new MediaJobQueue(new MediaJobStore(directory), Runnable::run, environment, 2);
+    }
+
+    private static final class LocalEnvironment implements MediaJobQueue.Environment {
+        long now = 1_000_000;
+        boolean charging;
+        long scheduledDelay = -1;
+        Runnable constraintsChanged;
+
+        void advance(long millis) {
+            now += millis;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return charging;
+        }
+
+        @Override
+        public boolean isIdle() {
+            return false;
+        }
+
+        @Override
+        public void schedule(Runnable pump, long delayMillis) {
+            scheduledDelay = delayMillis;
+        }
+
+        @Override
+        public void watchConstraints(Runnable pump) {
+            constraintsChanged = pump;
+        }
+    }
+
+    private static final class RecordingListener implements MediaJobQueue.Listener {
+        final List<String> results = new ArrayList<>();
+        final List<Exception> failures = new ArrayList<>();
+
+        @Override
+        public void onJobSucceeded(MediaJob job, String result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onJobFailed(MediaJob job, Exception error) {
+            failures.add(error);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.ahs.easymediahelper;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the instrumentation surface.
+ */
+public class MediaMetricsAggregatorTest {
+
+    @After
+    public void tearDown() {
+        MediaMetrics.setListener(null);
+    }
+
+    @Test
+    public void begin_withoutListener_returnsSharedNoOpTrace() {
+        assertSame(MediaTrace.NONE, MediaMetrics.begin(MediaOperationMetrics.OPERATION_SAVE_MEDIA));
+    }
+
+    @Test
+    public void trace_reportsStagesBytesAndFailure() {
+        List<MediaOperationMetrics> reported = new ArrayList<>();
+        MediaMetrics.setListener(reported::add);
+
+        MediaTrace trace = MediaMetrics.begin(MediaOperationMetrics.OPERATION_SAVE_MEDIA);
+        trace.stage(MediaOperationMetrics.STAGE_OPEN);
+        trace.stage(MediaOperationMetrics.STAGE_COPY);
+        trace.addBytes(1024);
+        trace.fail(new IOException("disk full"));
+        trace.end();
+        trace.end();
+
+        assertEquals(1, reported.size());
+        MediaOperationMetrics metrics = reported.get(0);
+        assertEquals(MediaOperationMetrics.OPERATION_SAVE_MEDIA, metrics.getOperation());
+        assertEquals(2, metrics.getStageNanos().size());
+        assertTrue(metrics.getStageNanos().containsKey(MediaOperationMetrics.STAGE_COPY));
+        assertEquals(1024, metrics.getBytes());
+        assertFalse(metrics.isSuccessful());
+    }
+
+    @Test
+    public void aggregator_buildsHistogramsAndFailureCounts() {
+        MediaMetricsAggregator aggregator = new MediaMetricsAggregator();
+        MediaMetrics.setListener(aggregator);
+
+        for (int i = 0; i < 10; i++) {
+            MediaTrace trace = MediaMetrics.begin(MediaOperationMetrics.OPERATION_SAVE_FILE_FROM_URI);
+            trace.stage(MediaOperationMetrics.STAGE_COPY);
+            trace.addBytes(100);
+            if (i == 0) trace.fail(new FileTooLargeException(50));
+            trace.end();
+        }
+
+        MediaMetricsAggregator.Histogram copy = aggregator.getHistogram(
+                MediaOperationMetrics.OPERATION_SAVE_FILE_FROM_URI, MediaOperationMetrics.STAGE_COPY);
+        assertNotNull(copy);
+        assertEquals(10, copy.getCount());
+        assertTrue(copy.getPercentileNanos(99) <= copy.getMaxNanos());
+        assertEquals(1000, aggregator.getTotalBytes(MediaOperationMetrics.OPERATION_SAVE_FILE_FROM_URI));
+        assertEquals(Long.valueOf(1), aggregator.getFailureCounts().get("saveFileFromUri:FileTooLargeException"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the revalidation of memoized {@link MediaProber} results.
+ */
+public class MediaProberTest {
+
+    private static final long SIZE = 4096;
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @Test
+    public void entry_withUnchangedSizeAndModificationTime_isFresh() {
+        MediaProber.Entry entry = new MediaProber.Entry(info(SIZE, LAST_MODIFIED), 1_000);
+
+        assertTrue(entry.isFresh(SIZE, LAST_MODIFIED, 1_000));
+        // A known modification time is trusted however old the result is
+        assertTrue(entry.isFresh(SIZE, LAST_MODIFIED, 1_000 + 24 * 60 * 60 * 1000L));
+    }
+
+    @Test
+    public void entry_withChangedContent_isStale() {
+        MediaProber.Entry entry = new MediaProber.Entry(info(SIZE, LAST_MODIFIED), 1_000);
+
+        assertFalse(entry.isFresh(SIZE + 1, LAST_MODIFIED, 1_000));
+        assertFalse(entry.isFresh(SIZE, LAST_MODIFIED + 1, 1_000));
+        assertFalse(entry.isFresh(MediaInfo.UNKNOWN, LAST_MODIFIED, 1_000));
+    }
+
+    @Test
+    public void entry_withoutModificationTime_expires() {
+        MediaProber.Entry entry = new MediaProber.Entry(info(SIZE, MediaInfo.UNKNOWN), 1_000);
+
+        assertTrue(entry.isFresh(SIZE, MediaInfo.UNKNOWN, 1_000 + MediaProber.UNVERIFIED_MAX_AGE_MS - 1));
+        assertFalse(entry.isFresh(SIZE, MediaInfo.UNKNOWN, 1_000 + MediaProber.UNVERIFIED_MAX_AGE_MS));
+    }
+
+    @Test
+    public void entry_withNothingToCompare_expires() {
+        MediaProber.Entry entry = new MediaProber.Entry(info(MediaInfo.UNKNOWN, MediaInfo.UNKNOWN), 0);
+
+        assertTrue(entry.isFresh(MediaInfo.UNKNOWN, MediaInfo.UNKNOWN, 0));
+        assertFalse(entry.isFresh(MediaInfo.UNKNOWN, MediaInfo.UNKNOWN, MediaProber.UNVERIFIED_MAX_AGE_MS));
+    }
+
+    private static MediaInfo info(long size, long lastModified) {
+        return new MediaInfo(null, "photo.jpg", "image/jpeg", size, lastModified, 4000, 3000,
+                MediaInfo.UNKNOWN, MediaInfo.ORIENTATION_NORMAL, 0);
+    }
+}
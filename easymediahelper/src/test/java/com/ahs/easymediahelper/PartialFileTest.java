@@ -0,0 +1,126 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PartialFile} and crash-safe copies through {@link MediaCopier}.
+ */
+public class PartialFileTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void copy_movesTargetIntoPlaceOnlyWhenComplete() throws IOException {
+        byte[] data = randomBytes(2 * MediaCopier.BUFFER_SIZE + 5);
+        File directory = temporaryFolder.newFolder();
+        File target = new File(directory, "target.bin");
+
+        long copied = MediaCopier.copy(new ByteArrayInputStream(data), PartialFile.create(target), target, null);
+
+        assertEquals(data.length, copied);
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        assertArrayEquals(new String[]{"target.bin"}, directory.list());
+    }
+
+    @Test
+    public void copy_overLimit_leavesNoFileBehind() throws IOException {
+        byte[] data = randomBytes(2 * MediaCopier.BUFFER_SIZE);
+        File directory = temporaryFolder.newFolder();
+        File target = new File(directory, "target.bin");
+
+        try {
+            MediaCopier.copy(new ByteArrayInputStream(data), PartialFile.create(target), target,
+                    new MediaCopier.Progress(-1, MediaCopier.BUFFER_SIZE, null, 0));
+            fail("Expected FileTooLargeException");
+        } catch (FileTooLargeException expected) {
+            // The limit applies as usual
+        }
+
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void copy_resumesFromLastCheckpoint() throws IOException, NoSuchAlgorithmException {
+        byte[] data = randomBytes(3 * MediaCopier.BUFFER_SIZE + 9);
+        File source = temporaryFolder.newFile("source.bin");
+        Files.write(source.toPath(), data);
+        File partialDir = temporaryFolder.newFolder();
+        File target = new File(temporaryFolder.getRoot(), "target.bin");
+        int checkpoint = MediaCopier.BUFFER_SIZE + 1;
+
+        // A first attempt synced part of the file, wrote some more and was killed
+        PartialFile interrupted = PartialFile.resumable(partialDir, "content://source", "source-key");
+        assertEquals(0, interrupted.open(true));
+        interrupted.channel().write(ByteBuffer.wrap(data, 0, checkpoint));
+        interrupted.checkpoint(checkpoint);
+        interrupted.channel().write(ByteBuffer.wrap(new byte[100]));
+        interrupted.suspend();
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        MediaCopier.Progress progress = new MediaCopier.Progress(-1, -1, null, 0).withDigest(digest);
+        long copied;
+        try (FileInputStream in = new FileInputStream(source)) {
+            copied = MediaCopier.copy(in, PartialFile.resumable(partialDir, "content://source", "source-key"),
+                    target, progress);
+        }
+
+        assertEquals(data.length, copied);
+        assertEquals(data.length, progress.getBytesCopied());
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), digest.digest());
+        assertEquals(0, partialDir.list().length);
+    }
+
+    @Test
+    public void open_withDifferentKey_discardsOldCopy() throws IOException {
+        File partialDir = temporaryFolder.newFolder();
+        PartialFile first = PartialFile.resumable(partialDir, "content://source", "source-key");
+        first.open(true);
+        first.channel().write(ByteBuffer.wrap(new byte[10]));
+        first.checkpoint(10);
+        first.suspend();
+
+        PartialFile resumed = PartialFile.resumable(partialDir, "content://source", "source-key");
+        assertEquals(10, resumed.open(true));
+        resumed.suspend();
+
+        // The source changed, e.g. a new size or modification time
+        PartialFile changed = PartialFile.resumable(partialDir, "content://source", "changed-key");
+        assertEquals(0, changed.open(true));
+        assertEquals(0, changed.channel().size());
+        changed.suspend();
+        // The same two files, now holding the new copy only
+        assertEquals(2, partialDir.list().length);
+        for (File file : partialDir.listFiles()) {
+            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            assertFalse(content, content.contains("source-key"));
+        }
+
+        PartialFile old = PartialFile.resumable(partialDir, "content://source", "source-key");
+        assertEquals(0, old.open(true));
+        old.abort();
+        assertEquals(0, partialDir.list().length);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
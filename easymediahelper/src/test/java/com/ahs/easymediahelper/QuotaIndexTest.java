@@ -0,0 +1,162 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link QuotaIndex}, the bookkeeping of {@link StorageQuotaManager}.
+ */
+public class QuotaIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void evict_overCap_removesLeastRecentlyUsedFirst() throws IOException {
+        File root = temporaryFolder.newFolder();
+        QuotaIndex index = new QuotaIndex(root);
+        index.recordWrite("images/a.jpg", 100, 1_000);
+        index.recordWrite("images/b.jpg", 100, 2_000);
+        index.recordWrite("videos/c.mp4", 100, 3_000);
+        index.recordWrite("videos/d.mp4", 100, 4_000);
+        // Reading the oldest file makes it the most recently used one
+        assertTrue(index.recordAccess("images/a.jpg", 5_000));
+
+        List<File> victims = index.evict(250, -1, 6_000);
+
+        assertEquals(Arrays.asList(new File(root, "images/b.jpg"), new File(root, "videos/c.mp4")), victims);
+        assertEquals(200, index.getTotalBytes());
+        assertEquals(2, index.getFileCount());
+        assertEquals(Long.valueOf(100), index.getUsage().get("images"));
+        assertEquals(Long.valueOf(100), index.getUsage().get("videos"));
+    }
+
+    @Test
+    public void evict_withinCap_keepsEverything() {
+        QuotaIndex index = new QuotaIndex(temporaryFolder.getRoot());
+        index.recordWrite("images/a.jpg", 100, 1_000);
+        index.recordWrite("images/b.jpg", 100, 2_000);
+
+        assertEquals(Collections.emptyList(), index.evict(200, -1, 3_000));
+        assertEquals(2, index.getFileCount());
+    }
+
+    @Test
+    public void evict_capSmallerThanNewFile_keepsTheNewFile() throws IOException {
+        File root = temporaryFolder.newFolder();
+        QuotaIndex index = new QuotaIndex(root);
+        index.recordWrite("images/old.jpg", 100, 1_000);
+        index.recordWrite("videos/new.mp4", 500, 2_000);
+
+        List<File> victims = index.evict(300, -1, 3_000);
+
+        assertEquals(Collections.singletonList(new File(root, "images/old.jpg")), victims);
+        assertEquals(500, index.getTotalBytes());
+        // Once a newer file is written it is evicted like any other
+        index.recordWrite("images/next.jpg", 10, 4_000);
+        assertEquals(Collections.singletonList(new File(root, "videos/new.mp4")), index.evict(300, -1, 5_000));
+    }
+
+    @Test
+    public void evict_tooOld_removesRegardlessOfCap() {
+        QuotaIndex index = new QuotaIndex(temporaryFolder.getRoot());
+        index.recordWrite("images/a.jpg", 100, 1_000);
+        index.recordWrite("images/b.jpg", 100, 9_000);
+
+        List<File> victims = index.evict(-1, 5_000, 10_000);
+
+        assertEquals(1, victims.size());
+        assertEquals("a.jpg", victims.get(0).getName());
+    }
+
+    @Test
+    public void recordWrite_sameFileTwice_replacesItsSize() {
+        QuotaIndex index = new QuotaIndex(temporaryFolder.getRoot());
+        index.recordWrite("images/a.jpg", 100, 1_000);
+        index.recordWrite("images/a.jpg", 40, 2_000);
+
+        assertEquals(40, index.getTotalBytes());
+        assertEquals(1, index.getFileCount());
+        assertTrue(index.remove("images/a.jpg"));
+        assertFalse(index.remove("images/a.jpg"));
+        assertEquals(0, index.getTotalBytes());
+    }
+
+    @Test
+    public void write_thenRead_restoresEntriesInLruOrder() throws IOException {
+        File root = temporaryFolder.newFolder();
+        QuotaIndex index = new QuotaIndex(root);
+        index.recordWrite("images/a.jpg", 100, 1_000);
+        index.recordWrite("images/b.jpg", 200, 2_000);
+        index.recordWrite("videos/c.mp4", 300, 3_000);
+        index.recordAccess("images/a.jpg", 4_000);
+        index.write(index.toLines());
+
+        QuotaIndex restored = new QuotaIndex(root);
+        assertTrue(restored.read());
+
+        assertEquals(600, restored.getTotalBytes());
+        assertEquals(3, restored.getFileCount());
+        assertEquals(Long.valueOf(300), restored.getUsage().get("images"));
+        assertEquals(index.toLines(), restored.toLines());
+        // a.jpg was used last before saving, so it is evicted last after reading too
+        assertEquals(Collections.singletonList(new File(root, "images/b.jpg")), restored.evict(500, -1, 5_000));
+        assertEquals(Collections.singletonList(new File(root, "videos/c.mp4")), restored.evict(100, -1, 5_000));
+        assertEquals(100, restored.getTotalBytes());
+    }
+
+    @Test
+    public void read_withoutIndex_returnsFalseAndScanFindsFiles() throws IOException {
+        File root = temporaryFolder.newFolder();
+        File images = new File(root, "images");
+        assertTrue(images.mkdirs());
+        Files.write(new File(images, "a.jpg").toPath(), new byte[25]);
+        Files.write(new File(root, ".hidden").toPath(), new byte[99]);
+        QuotaIndex index = new QuotaIndex(root);
+
+        assertFalse(index.read());
+        index.scan();
+
+        assertEquals(1, index.getFileCount());
+        assertEquals(25, index.getTotalBytes());
+    }
+
+    @Test
+    public void read_corruptIndex_throwsAndLeavesIndexEmpty() throws IOException {
+        File root = temporaryFolder.newFolder();
+        Files.write(new File(root, QuotaIndex.INDEX_FILE).toPath(),
+                "images/a.jpg\t100\t1000\nimages/b.jpg\tnot-a-size\t2000\n".getBytes());
+        QuotaIndex index = new QuotaIndex(root);
+
+        try {
+            index.read();
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // The manager rebuilds the index by scanning
+        }
+        assertEquals(0, index.getFileCount());
+        assertEquals(0, index.getTotalBytes());
+    }
+
+    @Test
+    public void keyFor_skipsHiddenAndOutsideFiles() throws IOException {
+        File root = temporaryFolder.newFolder("media");
+        QuotaIndex index = new QuotaIndex(root);
+
+        assertEquals("images/a.jpg", index.keyFor(new File(root, "images/a.jpg")));
+        assertNull(index.keyFor(new File(root, ".thumbnails/a.jpg")));
+        assertNull(index.keyFor(new File(root, "images/.partial/a.part")));
+        assertNull(index.keyFor(new File(temporaryFolder.getRoot(), "other/a.jpg")));
+        assertNull(index.keyFor(null));
+    }
+}
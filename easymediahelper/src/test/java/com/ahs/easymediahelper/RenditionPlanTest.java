@@ -0,0 +1,76 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RenditionPlan}.
+ */
+public class RenditionPlanTest {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    private static ResizePlan plan(int size, ResizeMode mode) {
+        return ResizePlan.compute(WIDTH, HEIGHT, size, size, mode, false);
+    }
+
+    @Test
+    public void drawsLargestFirstAndChainsSmallerRenditions() {
+        RenditionPlan plan = new RenditionPlan(new ResizePlan[]{
+                plan(200, ResizeMode.MAX_DIMENSION),
+                plan(2000, ResizeMode.MAX_DIMENSION),
+                plan(1000, ResizeMode.MAX_DIMENSION),
+        }, WIDTH, HEIGHT);
+
+        assertArrayEquals(new int[]{1, 2, 0}, plan.drawOrder());
+        assertEquals(RenditionPlan.DECODED, plan.sourceOf(1));
+        assertEquals(1, plan.sourceOf(2));
+        assertEquals(2, plan.sourceOf(0));
+        assertTrue(plan.isSource(2));
+        assertFalse(plan.isSource(0));
+    }
+
+    @Test
+    public void decodesAtLargestNeededScale() {
+        RenditionPlan plan = new RenditionPlan(new ResizePlan[]{
+                plan(200, ResizeMode.MAX_DIMENSION),
+                plan(1000, ResizeMode.MAX_DIMENSION),
+        }, WIDTH, HEIGHT);
+
+        assertEquals(0.25, plan.decodeScaleX(), 1e-3);
+        assertEquals(0.25, plan.decodeScaleY(), 1e-3);
+    }
+
+    @Test
+    public void centerCropDerivesFromUncroppedRendition() {
+        RenditionPlan plan = new RenditionPlan(new ResizePlan[]{
+                plan(1000, ResizeMode.MAX_DIMENSION),
+                plan(200, ResizeMode.CENTER_CROP),
+        }, WIDTH, HEIGHT);
+
+        assertEquals(0, plan.sourceOf(1));
+    }
+
+    @Test
+    public void croppedRenditionIsNeverASource() {
+        RenditionPlan plan = new RenditionPlan(new ResizePlan[]{
+                plan(1000, ResizeMode.CENTER_CROP),
+                plan(200, ResizeMode.MAX_DIMENSION),
+        }, WIDTH, HEIGHT);
+
+        assertEquals(RenditionPlan.DECODED, plan.sourceOf(1));
+    }
+
+    @Test
+    public void fullSizeRenditionDecodesWithoutSampling() {
+        RenditionPlan plan = new RenditionPlan(new ResizePlan[]{
+                plan(8000, ResizeMode.MAX_DIMENSION),
+                plan(200, ResizeMode.MAX_DIMENSION),
+        }, WIDTH, HEIGHT);
+
+        assertEquals(1, plan.decodeScaleX(), 1e-9);
+        assertEquals(0, plan.sourceOf(1));
+    }
+}
@@ -0,0 +1,69 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ResizePlan}.
+ */
+public class ResizePlanTest {
+
+    @Test
+    public void fill_stretchesToRequestedSize() {
+        ResizePlan plan = ResizePlan.compute(3000, 4000, 800, 600, ResizeMode.FILL, true);
+        assertEquals(800, plan.width);
+        assertEquals(600, plan.height);
+        assertFalse(plan.isCropped());
+    }
+
+    @Test
+    public void fit_keepsAspectRatioWithinBox() {
+        ResizePlan plan = ResizePlan.compute(3000, 4000, 800, 600, ResizeMode.FIT, true);
+        assertEquals(450, plan.width);
+        assertEquals(600, plan.height);
+        assertFalse(plan.isCropped());
+    }
+
+    @Test
+    public void maxDimension_limitsLongerSide() {
+        ResizePlan portrait = ResizePlan.compute(3000, 4000, 800, 600, ResizeMode.MAX_DIMENSION, true);
+        assertEquals(600, portrait.width);
+        assertEquals(800, portrait.height);
+        ResizePlan landscape = ResizePlan.compute(4000, 3000, 800, 600, ResizeMode.MAX_DIMENSION, true);
+        assertEquals(800, landscape.width);
+        assertEquals(600, landscape.height);
+    }
+
+    @Test
+    public void centerCrop_cropsCenteredRegionOfTargetAspect() {
+        ResizePlan plan = ResizePlan.compute(4000, 2000, 800, 600, ResizeMode.CENTER_CROP, true);
+        assertEquals(800, plan.width);
+        assertEquals(600, plan.height);
+        assertTrue(plan.isCropped());
+        assertEquals(2667, plan.cropWidth());
+        assertEquals(2000, plan.cropHeight());
+        assertEquals(666, plan.cropLeft);
+        assertEquals(0, plan.cropTop);
+    }
+
+    @Test
+    public void noUpscale_keepsSmallImagesAtTheirSize() {
+        ResizePlan fit = ResizePlan.compute(400, 300, 800, 600, ResizeMode.FIT, false);
+        assertEquals(400, fit.width);
+        assertEquals(300, fit.height);
+
+        ResizePlan fill = ResizePlan.compute(400, 300, 800, 600, ResizeMode.FILL, false);
+        assertEquals(400, fill.width);
+        assertEquals(300, fill.height);
+
+        ResizePlan crop = ResizePlan.compute(400, 200, 800, 600, ResizeMode.CENTER_CROP, false);
+        assertEquals(267, crop.width);
+        assertEquals(200, crop.height);
+        assertEquals(66, crop.cropLeft);
+
+        ResizePlan upscaled = ResizePlan.compute(400, 300, 800, 600, ResizeMode.FIT, true);
+        assertEquals(800, upscaled.width);
+        assertEquals(600, upscaled.height);
+    }
+}
@@ -0,0 +1,160 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ChunkWriter} and {@link ResumableUpload}, against an in-process
+ * {@link FakeUploadServer}.
+ */
+public class ResumableUploadTest {
+
+    private static final int CHUNK_SIZE = 100 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void copy_withChunks_emitsChunksAndManifestWhileWriting() throws IOException {
+        byte[] data = randomBytes(3 * CHUNK_SIZE + 17);
+        File target = new File(temporaryFolder.getRoot(), "video.mp4");
+        List<UploadChunk> chunks = new ArrayList<>();
+        UploadManifest[] completed = new UploadManifest[1];
+        ChunkListener listener = new ChunkListener() {
+            @Override
+            public void onChunk(UploadChunk chunk) {
+                assertFalse("Chunks arrive before the file is complete", target.exists());
+                chunks.add(chunk);
+            }
+
+            @Override
+            public void onComplete(UploadManifest manifest) {
+                completed[0] = manifest;
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                fail(error.toString());
+            }
+        };
+
+        copy(data, target, new ChunkWriter(target, CHUNK_SIZE, listener));
+
+        assertEquals(4, chunks.size());
+        assertEquals(3L * CHUNK_SIZE, chunks.get(3).getOffset());
+        assertEquals(17, chunks.get(3).getLength());
+        UploadManifest manifest = UploadManifest.read(target);
+        assertEquals(data.length, manifest.getSize());
+        assertEquals(4, manifest.getChunkCount());
+        assertEquals(chunks.get(2).getChecksum(), manifest.getChunkChecksum(2));
+        assertEquals(manifest.getChecksum(), completed[0].getChecksum());
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void start_uploadsWhileCopyingAndRetriesTransientFailures() throws Exception {
+        byte[] data = randomBytes(5 * CHUNK_SIZE + 3);
+        File target = new File(temporaryFolder.getRoot(), "photo.jpg");
+        FakeUploadServer server = new FakeUploadServer();
+        server.failNextChunkUploads(2);
+        ResumableUpload upload = ResumableUpload.start(server, 3, 1);
+
+        copy(data, target, new ChunkWriter(target, CHUNK_SIZE, upload));
+
+        String uploadId = upload.getResult().get(5, TimeUnit.SECONDS);
+        assertArrayEquals(data, server.getCompletedFile(uploadId));
+        assertEquals(6, server.getChunkUploadCount());
+    }
+
+    @Test
+    public void resume_uploadsOnlyMissingChunks() throws Exception {
+        byte[] data = randomBytes(4 * CHUNK_SIZE);
+        File target = new File(temporaryFolder.getRoot(), "scan.pdf");
+        FakeUploadServer server = new FakeUploadServer();
+        // The connection drops for good after two chunks
+        ResumableUpload first = ResumableUpload.start(server, 1, 1);
+        ChunkListener dropping = new ChunkListener() {
+            @Override
+            public void onChunk(UploadChunk chunk) {
+                if (chunk.getIndex() == 2) {
+                    awaitChunkUploads(server, 2);
+                    server.setDown(true);
+                }
+                first.onChunk(chunk);
+            }
+
+            @Override
+            public void onComplete(UploadManifest manifest) {
+                first.onComplete(manifest);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                first.onFailure(error);
+            }
+        };
+        copy(data, target, new ChunkWriter(target, CHUNK_SIZE, dropping));
+        try {
+            first.getResult().get(5, TimeUnit.SECONDS);
+            fail("Expected the upload to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        server.setDown(false);
+        ResumableUpload resumed = ResumableUpload.resume(server, target, first.getUploadId(), 3, 1);
+
+        assertEquals(first.getUploadId(), resumed.getResult().get(5, TimeUnit.SECONDS));
+        assertArrayEquals(data, server.getCompletedFile(first.getUploadId()));
+        assertEquals(4, server.getChunkUploadCount());
+    }
+
+    @Test
+    public void resume_ofChangedFile_fails() throws Exception {
+        byte[] data = randomBytes(2 * CHUNK_SIZE);
+        File target = new File(temporaryFolder.getRoot(), "audio.m4a");
+        copy(data, target, new ChunkWriter(target, CHUNK_SIZE, null));
+        data[CHUNK_SIZE + 1]++;
+        Files.write(target.toPath(), data);
+
+        ResumableUpload upload = ResumableUpload.resume(new FakeUploadServer(), target, null, 1, 1);
+
+        try {
+            upload.getResult().get(5, TimeUnit.SECONDS);
+            fail("Expected the upload to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().contains("Chunk 1"));
+        }
+    }
+
+    private static void copy(byte[] data, File target, ChunkWriter chunks) throws IOException {
+        MediaCopier.copy(new ByteArrayInputStream(data), PartialFile.create(target), target,
+                new MediaCopier.Progress(-1, -1, null, 0).withChunks(chunks));
+    }
+
+    private static void awaitChunkUploads(FakeUploadServer server, int count) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getChunkUploadCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
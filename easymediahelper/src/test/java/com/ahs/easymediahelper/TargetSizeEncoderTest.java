@@ -0,0 +1,48 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the quality search of {@link TargetSizeEncoder}.
+ */
+public class TargetSizeEncoderTest {
+
+    // Encoded size grows linearly with quality: 1000 bytes per quality step
+    private static final TargetSizeEncoder.QualityProbe LINEAR = quality -> quality * 1000L;
+
+    @Test
+    public void searchQuality_returnsMaxWhenItFits() throws IOException {
+        assertEquals(80, TargetSizeEncoder.searchQuality(10, 80, 100_000, LINEAR));
+    }
+
+    @Test
+    public void searchQuality_findsHighestQualityWithinBudget() throws IOException {
+        assertEquals(42, TargetSizeEncoder.searchQuality(10, 80, 42_500, LINEAR));
+    }
+
+    @Test
+    public void searchQuality_fallsBackToMinWhenNothingFits() throws IOException {
+        assertEquals(10, TargetSizeEncoder.searchQuality(10, 80, 500, LINEAR));
+    }
+
+    @Test
+    public void searchQuality_usesLogarithmicNumberOfEncodes() throws IOException {
+        List<Integer> probes = new ArrayList<>();
+        TargetSizeEncoder.searchQuality(0, 100, 37_000, quality -> {
+            probes.add(quality);
+            return quality * 1000L;
+        });
+        assertTrue("Too many encodes: " + probes, probes.size() <= 8);
+    }
+
+    @Test
+    public void searchQuality_reportsEncoderFailure() throws IOException {
+        assertEquals(-1, TargetSizeEncoder.searchQuality(10, 80, 1000, quality -> -1));
+    }
+}
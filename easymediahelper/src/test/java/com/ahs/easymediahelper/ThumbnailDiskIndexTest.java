@@ -0,0 +1,107 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ThumbnailDiskIndex}, the disk tier bookkeeping of {@link ThumbnailCache}.
+ */
+public class ThumbnailDiskIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void recordWrite_sameKeyTwice_countsTheThumbnailOnce() throws IOException {
+        ThumbnailDiskIndex index = new ThumbnailDiskIndex(temporaryFolder.newFolder(), 1_000);
+        File file = index.fileFor("video|/a.mp4|1|96x0");
+
+        index.recordWrite(file, 300);
+        index.recordWrite(file, 120);
+
+        assertEquals(120, index.getTotalBytes());
+        assertEquals(1, index.getCount());
+        assertTrue(index.remove(file));
+        assertFalse(index.remove(file));
+        assertEquals(0, index.getTotalBytes());
+    }
+
+    @Test
+    public void trim_overMaximum_removesLeastRecentlyUsedFirst() throws IOException {
+        ThumbnailDiskIndex index = new ThumbnailDiskIndex(temporaryFolder.newFolder(), 250);
+        File a = index.fileFor("a");
+        File b = index.fileFor("b");
+        File c = index.fileFor("c");
+        index.recordWrite(a, 100);
+        index.recordWrite(b, 100);
+        // Reading the oldest thumbnail makes it the most recently used one
+        assertTrue(index.recordAccess(a));
+        index.recordWrite(c, 100);
+
+        assertEquals(Collections.singletonList(b), index.trim());
+        assertEquals(200, index.getTotalBytes());
+
+        index.setMaxBytes(100);
+        assertEquals(Collections.singletonList(a), index.trim());
+        assertEquals(Collections.emptyList(), index.trim());
+        assertEquals(100, index.getTotalBytes());
+    }
+
+    @Test
+    public void scan_countsThumbnailsOldestFirstAndDeletesLeftoverTempFiles() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        File older = write(directory, "older.jpg", 40, 1_000_000);
+        File newer = write(directory, "newer.jpg", 60, 2_000_000);
+        File temp = write(directory, "thumb123.tmp", 500, 3_000_000);
+        ThumbnailDiskIndex index = new ThumbnailDiskIndex(directory, 1_000);
+
+        index.scan();
+
+        assertEquals(100, index.getTotalBytes());
+        assertEquals(2, index.getCount());
+        assertFalse(temp.exists());
+        index.setMaxBytes(0);
+        assertEquals(Arrays.asList(older, newer), index.trim());
+    }
+
+    @Test
+    public void trim_neverReturnsATempFileBeingWritten() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        ThumbnailDiskIndex index = new ThumbnailDiskIndex(directory, 0);
+        index.scan();
+        File inFlight = File.createTempFile("thumb", ThumbnailDiskIndex.TEMP_EXTENSION, directory);
+        File thumbnail = index.fileFor("a");
+        index.recordWrite(thumbnail, 10);
+
+        assertEquals(Collections.singletonList(thumbnail), index.trim());
+        assertTrue(inFlight.exists());
+        assertEquals(0, index.getTotalBytes());
+    }
+
+    @Test
+    public void fileFor_isStablePerKeyAndInsideTheDirectory() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        ThumbnailDiskIndex index = new ThumbnailDiskIndex(directory, 1_000);
+
+        assertEquals(index.fileFor("a"), index.fileFor("a"));
+        assertNotEquals(index.fileFor("a"), index.fileFor("b"));
+        assertEquals(directory, index.fileFor("a").getParentFile());
+        assertTrue(index.fileFor("a").getName().endsWith(ThumbnailDiskIndex.EXTENSION));
+    }
+
+    private static File write(File directory, String name, int size, long lastModified) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), new byte[size]);
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+}
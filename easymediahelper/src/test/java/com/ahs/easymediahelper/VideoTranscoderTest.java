@@ -0,0 +1,39 @@
+package com.ahs.easymediahelper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the planning logic of {@link VideoTranscoder}.
+ */
+public class VideoTranscoderTest {
+
+    @Test
+    public void scaleToFit_keepsAspectRatioWithEvenSides() {
+        assertArrayEquals(new int[]{1280, 720}, VideoTranscoder.scaleToFit(1920, 1080, 1280));
+        assertArrayEquals(new int[]{720, 1280}, VideoTranscoder.scaleToFit(2160, 3840, 1280));
+        assertArrayEquals(new int[]{1280, 962}, VideoTranscoder.scaleToFit(4000, 3008, 1280));
+    }
+
+    @Test
+    public void scaleToFit_neverUpscales() {
+        assertArrayEquals(new int[]{640, 480}, VideoTranscoder.scaleToFit(640, 480, 1280));
+        assertArrayEquals(new int[]{176, 144}, VideoTranscoder.scaleToFit(177, 145, 1280));
+    }
+
+    @Test
+    public void shouldPassThrough_onlyWhenSizeAndBitrateFit() {
+        assertTrue(VideoTranscoder.shouldPassThrough(1280, 720, 2_200_000, 1280, 2_000_000));
+        assertFalse(VideoTranscoder.shouldPassThrough(1920, 1080, 1_000_000, 1280, 2_000_000));
+        assertFalse(VideoTranscoder.shouldPassThrough(1280, 720, 12_000_000, 1280, 2_000_000));
+        assertFalse(VideoTranscoder.shouldPassThrough(1280, 720, -1, 1280, 2_000_000));
+    }
+
+    @Test
+    public void estimateBitrate_fromLengthAndDuration() {
+        assertEquals(8_000_000, VideoTranscoder.estimateBitrate(10_000_000, 10_000_000));
+        assertEquals(-1, VideoTranscoder.estimateBitrate(10_000_000, -1));
+        assertEquals(-1, VideoTranscoder.estimateBitrate(-1, 10_000_000));
+    }
+}
@@ -27,3 +27,4 @@ dependencyResolutionManagement {
 rootProject.name = "EasyMediaHelper"
 include(":app")
 include(":easymediahelper")
+include(":benchmark")